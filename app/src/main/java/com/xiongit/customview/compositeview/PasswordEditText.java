@@ -2,9 +2,12 @@ package com.xiongit.customview.compositeview;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.Nullable;
 import android.text.Editable;
+import android.text.InputFilter;
 import android.text.SpannableStringBuilder;
 import android.text.TextUtils;
 import android.text.TextWatcher;
@@ -18,7 +21,11 @@ import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+
 import com.xiongit.customview.R;
+import com.xiongit.customview.metrics.WidgetMetrics;
 
 /**
  * Created by Michael on 2016/6/12.
@@ -28,6 +35,17 @@ import com.xiongit.customview.R;
  */
 public class PasswordEditText extends LinearLayout {
 
+    /**
+     * 默认最大输入长度，与布局中的maxLength一致
+     */
+    public static final int DEFAULT_MAX_LENGTH = 18;
+
+    /**
+     * 强度条各等级的颜色，下标为等级
+     */
+    private static final int[] STRENGTH_COLORS = {0x00000000, 0xFFE53935, 0xFFFB8C00, 0xFF7CB342, 0xFF43A047};
+    private static final int STRENGTH_TRACK_COLOR = 0xFFE0E0E0;
+
     /**
      * 密码输入框
      */
@@ -56,6 +74,54 @@ public class PasswordEditText extends LinearLayout {
      * 输入框提示语
      */
     private String mHint;
+    /**
+     * 布局中设置的密码可见性，复用时恢复
+     */
+    private boolean mInitialShowPwd;
+    /**
+     * 外部添加的输入监听，复用时全部移除
+     */
+    private final ArrayList<TextWatcher> mTextWatchers = new ArrayList<TextWatcher>();
+    /**
+     * 密码的定长缓冲区，取密码时不产生String
+     */
+    private SecurePasswordBuffer mPasswordBuffer;
+    /**
+     * 离开窗口时是否清除密码，默认清除
+     */
+    private boolean mClearOnDetach = true;
+    /**
+     * 增量式强度分析，始终统计，强度条开启时才绘制
+     */
+    private final PasswordStrengthAnalyzer mStrengthAnalyzer = new PasswordStrengthAnalyzer();
+    private PasswordStrengthAnalyzer.OnStrengthChangedListener mStrengthListener;
+    /**
+     * 是否在底部绘制强度条
+     */
+    private boolean mStrengthMeterEnabled;
+    private final Paint mStrengthPaint = new Paint();
+    private int mStrengthBarHeight = dp2px(3);
+    /**
+     * 输入校验流水线，为null时不校验
+     */
+    private PasswordValidationPipeline mValidationPipeline;
+    private final TextWatcher mValidationWatcher = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            PasswordValidationPipeline pipeline = mValidationPipeline;
+            if (pipeline != null) {
+                pipeline.submit(s);
+            }
+        }
+    };
 
     private int mDefaultWidth = dp2px(270);
     private int mDefaultHeight = dp2px(40);
@@ -81,6 +147,20 @@ public class PasswordEditText extends LinearLayout {
         mPwdEdit.setFocusableInTouchMode(true);
 
         mEyeImg = (ImageView) view.findViewById(R.id.pwd_eye_view);
+        mPwdEdit.addTextChangedListener(mStrengthAnalyzer);
+        mPwdEdit.addTextChangedListener(mValidationWatcher);
+        mStrengthAnalyzer.setOnStrengthChangedListener(new PasswordStrengthAnalyzer.OnStrengthChangedListener() {
+            @Override
+            public void onStrengthChanged(int level, int score) {
+                if (mStrengthMeterEnabled) {
+                    invalidate(0, getHeight() - mStrengthBarHeight, getWidth(), getHeight());
+                }
+                if (mStrengthListener != null) {
+                    mStrengthListener.onStrengthChanged(level, score);
+                }
+            }
+        });
+        setPasswordBuffer(new SecurePasswordBuffer(DEFAULT_MAX_LENGTH));
 
         TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.PasswordEditText);
         int count = typedArray.getIndexCount();
@@ -108,8 +188,13 @@ public class PasswordEditText extends LinearLayout {
                     setHint(mHint);
                     break;
 
+                case R.styleable.PasswordEditText_strengthMeter:
+                    setStrengthMeterEnabled(typedArray.getBoolean(attr, false));
+                    break;
+
                 case R.styleable.PasswordEditText_passwordVisible:
                     mShowPwd = typedArray.getBoolean(attr, false);
+                    mInitialShowPwd = mShowPwd;
                     setEyeState(mShowPwd);
                     break;
 
@@ -160,12 +245,14 @@ public class PasswordEditText extends LinearLayout {
     public void addTextChangedListener(TextWatcher watcher) {
         if (mPwdEdit != null) {
             mPwdEdit.addTextChangedListener(watcher);
+            mTextWatchers.add(watcher);
         }
     }
 
     public void removeTextChangedListener(TextWatcher watcher) {
         if (mPwdEdit != null) {
             mPwdEdit.removeTextChangedListener(watcher);
+            mTextWatchers.remove(watcher);
         }
     }
 
@@ -182,6 +269,168 @@ public class PasswordEditText extends LinearLayout {
         return mPwdEdit.getText();
     }
 
+    /**
+     * 恢复到刚创建时的样子，供复用：移除输入监听，清空输入内容，恢复小眼睛状态
+     */
+    public void resetForReuse() {
+        mStrengthListener = null;
+        setValidationPipeline(null);
+        if (mPwdEdit == null) return;
+
+        for (int i = mTextWatchers.size() - 1; i >= 0; i--) {
+            mPwdEdit.removeTextChangedListener(mTextWatchers.get(i));
+        }
+        mTextWatchers.clear();
+        clearPassword();
+        mPwdEdit.setError(null);
+        setEyeState(mInitialShowPwd);
+    }
+
+    /**
+     * 设置最大输入长度，密码缓冲区按这个长度分配，已输入的内容会被清除
+     *
+     * @param maxLength
+     */
+    public void setMaxLength(int maxLength) {
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("非法参数：最大长度必须大于0.max length must be greater than 0.");
+        }
+        if (mPwdEdit == null) return;
+
+        clearPassword();
+        mPwdEdit.removeTextChangedListener(mPasswordBuffer);
+        mPwdEdit.setFilters(new InputFilter[]{new InputFilter.LengthFilter(maxLength)});
+        setPasswordBuffer(new SecurePasswordBuffer(maxLength));
+    }
+
+    public int getMaxLength() {
+        return mPasswordBuffer == null ? 0 : mPasswordBuffer.getCapacity();
+    }
+
+    private void setPasswordBuffer(SecurePasswordBuffer buffer) {
+        mPasswordBuffer = buffer;
+        mPwdEdit.setEditableFactory(buffer.getEditableFactory());
+        // 用新的Editable.Factory重新创建输入框内容
+        mPwdEdit.setText(null);
+        mPwdEdit.addTextChangedListener(buffer);
+    }
+
+    /**
+     * 把密码复制到调用方的数组中，不产生String，调用方用完后应自己用0覆盖
+     *
+     * @param dest 长度不小于{@link #getPasswordLength()}
+     * @return 密码长度
+     */
+    public int getPassword(char[] dest) {
+        if (mPasswordBuffer == null) return 0;
+
+        return mPasswordBuffer.getChars(dest);
+    }
+
+    /**
+     * 直接指向内部密码缓冲区的只读视图，不复制；内容随输入变化，需要保留时用{@link #getPassword(char[])}
+     *
+     * @return
+     */
+    public CharBuffer getPasswordBuffer() {
+        if (mPasswordBuffer == null) {
+            return CharBuffer.allocate(0);
+        }
+        return mPasswordBuffer.getView();
+    }
+
+    public int getPasswordLength() {
+        return mPasswordBuffer == null ? 0 : mPasswordBuffer.length();
+    }
+
+    /**
+     * 用0覆盖输入框和密码缓冲区中的内容后清空
+     */
+    public void clearPassword() {
+        if (mPwdEdit == null || mPasswordBuffer == null) return;
+
+        mPasswordBuffer.wipe(mPwdEdit.getText());
+        if (mValidationPipeline != null) {
+            mValidationPipeline.cancel();
+        }
+    }
+
+    /**
+     * 设置输入校验流水线：输入去抖后在后台线程校验，只回调最新输入的结果，校验器和回调在流水线上设置
+     * 替换或设为null时会取消旧流水线中还没完成的校验，流水线的线程由调用方负责关闭
+     *
+     * @param pipeline
+     */
+    public void setValidationPipeline(PasswordValidationPipeline pipeline) {
+        if (mValidationPipeline != null) {
+            mValidationPipeline.cancel();
+        }
+        mValidationPipeline = pipeline;
+    }
+
+    public PasswordValidationPipeline getValidationPipeline() {
+        return mValidationPipeline;
+    }
+
+    /**
+     * 设置离开窗口时是否自动清除密码，默认清除
+     *
+     * @param clearOnDetach
+     */
+    public void setClearOnDetach(boolean clearOnDetach) {
+        mClearOnDetach = clearOnDetach;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mClearOnDetach) {
+            clearPassword();
+        } else if (mValidationPipeline != null) {
+            mValidationPipeline.cancel();
+        }
+    }
+
+    /**
+     * 设置是否在底部绘制密码强度条，强度条直接绘制，不增加子View，占用底部内边距
+     *
+     * @param enabled
+     */
+    public void setStrengthMeterEnabled(boolean enabled) {
+        if (mStrengthMeterEnabled == enabled) return;
+
+        mStrengthMeterEnabled = enabled;
+        int bottom = getPaddingBottom() + (enabled ? mStrengthBarHeight : -mStrengthBarHeight);
+        setPadding(getPaddingLeft(), getPaddingTop(), getPaddingRight(), bottom);
+        invalidate();
+    }
+
+    public boolean isStrengthMeterEnabled() {
+        return mStrengthMeterEnabled;
+    }
+
+    /**
+     * 当前密码强度等级
+     *
+     * @return {@link PasswordStrengthAnalyzer#LEVEL_NONE}~{@link PasswordStrengthAnalyzer#LEVEL_VERY_STRONG}
+     */
+    public int getStrengthLevel() {
+        return mStrengthAnalyzer.getLevel();
+    }
+
+    /**
+     * 当前密码强度分数
+     *
+     * @return 0~{@link PasswordStrengthAnalyzer#MAX_SCORE}
+     */
+    public int getStrengthScore() {
+        return mStrengthAnalyzer.getScore();
+    }
+
+    public void setOnStrengthChangedListener(PasswordStrengthAnalyzer.OnStrengthChangedListener listener) {
+        mStrengthListener = listener;
+    }
+
     public void setHint(CharSequence hint) {
         if (TextUtils.isEmpty(hint)) return;
 
@@ -214,6 +463,7 @@ public class PasswordEditText extends LinearLayout {
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        long start = WidgetMetrics.ENABLED ? System.nanoTime() : 0;
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
         int widthSpecMode = MeasureSpec.getMode(widthMeasureSpec);
         int widthSpecSize = MeasureSpec.getSize(widthMeasureSpec);
@@ -229,6 +479,41 @@ public class PasswordEditText extends LinearLayout {
         } else if (heightSpecMode == MeasureSpec.AT_MOST) {
             setMeasuredDimension(widthSpecSize, mDefaultHeight);
         }
+        if (WidgetMetrics.ENABLED) {
+            WidgetMetrics.recordTime(WidgetMetrics.WIDGET_PASSWORD_EDIT_TEXT, WidgetMetrics.METRIC_MEASURES,
+                    WidgetMetrics.METRIC_MEASURE_TIME_NS, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        long start = WidgetMetrics.ENABLED ? System.nanoTime() : 0;
+        super.dispatchDraw(canvas);
+        if (mStrengthMeterEnabled) {
+            drawStrengthBar(canvas);
+        }
+        if (WidgetMetrics.ENABLED) {
+            WidgetMetrics.recordTime(WidgetMetrics.WIDGET_PASSWORD_EDIT_TEXT, WidgetMetrics.METRIC_DRAWS,
+                    WidgetMetrics.METRIC_DRAW_TIME_NS, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 在底部内边距中绘制强度条：灰色底，按等级填充对应颜色
+     *
+     * @param canvas
+     */
+    private void drawStrengthBar(Canvas canvas) {
+        int width = getWidth();
+        int bottom = getHeight();
+        int top = bottom - mStrengthBarHeight;
+        mStrengthPaint.setColor(STRENGTH_TRACK_COLOR);
+        canvas.drawRect(0, top, width, bottom, mStrengthPaint);
+        int level = mStrengthAnalyzer.getLevel();
+        if (level == PasswordStrengthAnalyzer.LEVEL_NONE) return;
+
+        mStrengthPaint.setColor(STRENGTH_COLORS[level]);
+        canvas.drawRect(0, top, width * level / PasswordStrengthAnalyzer.LEVEL_VERY_STRONG, bottom, mStrengthPaint);
     }
 
     private int dp2px(int dp) {
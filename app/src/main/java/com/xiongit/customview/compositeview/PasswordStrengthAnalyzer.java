@@ -0,0 +1,223 @@
+package com.xiongit.customview.compositeview;
+
+import android.text.Editable;
+import android.text.TextWatcher;
+
+/**
+ * 增量式密码强度分析
+ * 统计各类字符（小写、大写、数字、符号）的数量、相邻重复字符（"aa"）和相邻连续字符（"ab"、"21"）的对数
+ * 作为TextWatcher挂在输入框上：删除前减去被删字符及其相邻字符对的贡献，插入后加上新字符及其相邻字符对的贡献，
+ * 每个字符的增删只做常数次计算，不分配对象，在任意位置编辑都一样
+ */
+public final class PasswordStrengthAnalyzer implements TextWatcher {
+
+    /**
+     * 强度等级
+     */
+    public static final int LEVEL_NONE = 0;// 未输入
+    public static final int LEVEL_WEAK = 1;
+    public static final int LEVEL_MEDIUM = 2;
+    public static final int LEVEL_STRONG = 3;
+    public static final int LEVEL_VERY_STRONG = 4;
+
+    public static final int MAX_SCORE = 100;
+
+    private static final int CLASS_LOWER = 0;
+    private static final int CLASS_UPPER = 1;
+    private static final int CLASS_DIGIT = 2;
+    private static final int CLASS_SYMBOL = 3;
+
+    /**
+     * 计分：长度最多计16位，每位4分；每多一类字符加8分；每对重复或连续字符扣3分
+     */
+    private static final int MAX_SCORED_LENGTH = 16;
+    private static final int POINTS_PER_CHAR = 4;
+    private static final int POINTS_PER_CLASS = 8;
+    private static final int PENALTY_PER_PAIR = 3;
+
+    private final int[] mClassCounts = new int[4];
+    private int mLength;
+    private int mRepeatPairs;// 相邻重复的字符对数
+    private int mSequencePairs;// 相邻连续的字符对数
+    private int mNotifiedLevel;// 上次回调的等级
+    private OnStrengthChangedListener mListener;
+
+    /**
+     * 强度等级变化监听
+     */
+    public interface OnStrengthChangedListener {
+        void onStrengthChanged(int level, int score);
+    }
+
+    public void setOnStrengthChangedListener(OnStrengthChangedListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 从头统计一遍，用于初始化或和增量结果对比
+     *
+     * @param s
+     */
+    public void analyze(CharSequence s) {
+        reset();
+        added(s, 0, s.length());
+    }
+
+    public void reset() {
+        for (int i = 0; i < mClassCounts.length; i++) {
+            mClassCounts[i] = 0;
+        }
+        mLength = 0;
+        mRepeatPairs = 0;
+        mSequencePairs = 0;
+    }
+
+    @Override
+    public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        removed(s, start, count);
+    }
+
+    @Override
+    public void onTextChanged(CharSequence s, int start, int before, int count) {
+        added(s, start, count);
+        int level = getLevel();
+        if (level != mNotifiedLevel) {
+            mNotifiedLevel = level;
+            if (mListener != null) {
+                mListener.onStrengthChanged(level, getScore());
+            }
+        }
+    }
+
+    @Override
+    public void afterTextChanged(Editable s) {
+    }
+
+    /**
+     * [start, start + count)即将被删除（count为0表示即将在start处插入），s为删除前的内容
+     * 减去这些字符，以及与它们相邻的字符对；插入点两边原来相邻的一对也会被拆开，一并减去
+     */
+    void removed(CharSequence s, int start, int count) {
+        for (int i = start; i < start + count; i++) {
+            mClassCounts[classOf(s.charAt(i))]--;
+        }
+        mLength -= count;
+        updatePairs(s, start, start + count, -1);
+    }
+
+    /**
+     * [start, start + count)刚刚插入（count为0表示start处刚刚删除过内容），s为插入后的内容
+     * 加上这些字符，以及与它们相邻的字符对；删除点两边新形成的一对也一并加上
+     */
+    void added(CharSequence s, int start, int count) {
+        for (int i = start; i < start + count; i++) {
+            mClassCounts[classOf(s.charAt(i))]++;
+        }
+        mLength += count;
+        updatePairs(s, start, start + count, 1);
+    }
+
+    /**
+     * 第j对指(s[j - 1], s[j])，处理from到to（含）之间的每一对
+     */
+    private void updatePairs(CharSequence s, int from, int to, int delta) {
+        int first = Math.max(1, from);
+        int last = Math.min(s.length() - 1, to);
+        for (int j = first; j <= last; j++) {
+            char previous = s.charAt(j - 1);
+            char current = s.charAt(j);
+            if (previous == current) {
+                mRepeatPairs += delta;
+            } else if ((current - previous == 1 || previous - current == 1)
+                    && classOf(previous) == classOf(current) && classOf(current) != CLASS_SYMBOL) {
+                mSequencePairs += delta;
+            }
+        }
+    }
+
+    private static int classOf(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return CLASS_LOWER;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return CLASS_UPPER;
+        }
+        if (c >= '0' && c <= '9') {
+            return CLASS_DIGIT;
+        }
+        if (Character.isLowerCase(c)) {
+            return CLASS_LOWER;
+        }
+        if (Character.isUpperCase(c)) {
+            return CLASS_UPPER;
+        }
+        if (Character.isDigit(c)) {
+            return CLASS_DIGIT;
+        }
+        return CLASS_SYMBOL;
+    }
+
+    public int getLength() {
+        return mLength;
+    }
+
+    public int getRepeatPairs() {
+        return mRepeatPairs;
+    }
+
+    public int getSequencePairs() {
+        return mSequencePairs;
+    }
+
+    /**
+     * 出现过的字符类别数，0~4
+     *
+     * @return
+     */
+    public int getClassCount() {
+        int classes = 0;
+        for (int count : mClassCounts) {
+            if (count > 0) {
+                classes++;
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * 强度分数，0~{@link #MAX_SCORE}
+     *
+     * @return
+     */
+    public int getScore() {
+        if (mLength == 0) {
+            return 0;
+        }
+        int score = Math.min(mLength, MAX_SCORED_LENGTH) * POINTS_PER_CHAR
+                + (getClassCount() - 1) * POINTS_PER_CLASS
+                - (mRepeatPairs + mSequencePairs) * PENALTY_PER_PAIR;
+        return Math.max(0, Math.min(MAX_SCORE, score));
+    }
+
+    /**
+     * 强度等级
+     *
+     * @return {@link #LEVEL_NONE}~{@link #LEVEL_VERY_STRONG}
+     */
+    public int getLevel() {
+        if (mLength == 0) {
+            return LEVEL_NONE;
+        }
+        int score = getScore();
+        if (score < 30) {
+            return LEVEL_WEAK;
+        }
+        if (score < 55) {
+            return LEVEL_MEDIUM;
+        }
+        if (score < 75) {
+            return LEVEL_STRONG;
+        }
+        return LEVEL_VERY_STRONG;
+    }
+}
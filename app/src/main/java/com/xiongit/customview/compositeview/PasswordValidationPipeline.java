@@ -0,0 +1,270 @@
+package com.xiongit.customview.compositeview;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 密码校验流水线
+ * 1.输入后先去抖，停止输入一段时间后才校验
+ * 2.校验在后台线程上进行，校验的是输入当时的一份快照，校验完用0覆盖
+ * 3.有新输入时取消还没完成的校验；每次输入有一个递增的序号，只有最新序号的结果才会回调，过期或乱序到达的结果直接丢弃
+ * 4.所有校验器的结果合成一次回调，在回调线程（默认主线程）上执行
+ */
+public class PasswordValidationPipeline {
+
+    /**
+     * 默认去抖时间:ms
+     */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 300;
+
+    /**
+     * 校验器，在后台线程调用
+     */
+    public interface Validator {
+        /**
+         * @param password 只读快照，只在本次调用期间有效
+         * @return 错误提示，通过时返回null
+         * @throws InterruptedException 有新输入时线程会被中断，耗时的校验应及时响应
+         */
+        String validate(CharSequence password) throws InterruptedException;
+    }
+
+    /**
+     * 校验结果回调，在回调线程上执行，只会收到最新输入的结果
+     */
+    public interface OnValidatedListener {
+        void onValidated(Result result);
+    }
+
+    /**
+     * 一次输入的全部校验结果
+     */
+    public static final class Result {
+
+        private final int mGeneration;
+        private final List<String> mErrors;
+
+        Result(int generation, List<String> errors) {
+            mGeneration = generation;
+            mErrors = Collections.unmodifiableList(errors);
+        }
+
+        /**
+         * 对应输入的序号，递增
+         *
+         * @return
+         */
+        public int getGeneration() {
+            return mGeneration;
+        }
+
+        /**
+         * 未通过的校验器给出的提示，按添加校验器的顺序
+         *
+         * @return
+         */
+        public List<String> getErrors() {
+            return mErrors;
+        }
+
+        public boolean isValid() {
+            return mErrors.isEmpty();
+        }
+    }
+
+    private final ScheduledExecutorService mScheduler;
+    private final Executor mCallbackExecutor;
+    private final long mDebounceMillis;
+    private final CopyOnWriteArrayList<Validator> mValidators = new CopyOnWriteArrayList<Validator>();
+    private final AtomicInteger mGeneration = new AtomicInteger();// 最新输入的序号
+    private final Object mLock = new Object();// 保护mPending和mPendingSnapshot
+    private Future<?> mPending;// 最新输入的去抖或校验任务
+    private char[] mPendingSnapshot;// mPending校验的快照，任务被取消时可能永远不会执行，由这里负责清零
+    private volatile OnValidatedListener mListener;
+
+    /**
+     * 使用单独的后台线程校验，结果回调到主线程
+     */
+    public PasswordValidationPipeline() {
+        this(newDefaultScheduler(), new Executor() {
+            private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+            @Override
+            public void execute(Runnable command) {
+                mHandler.post(command);
+            }
+        }, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * @param scheduler        去抖和校验所在的线程池
+     * @param callbackExecutor 回调结果所在的线程
+     * @param debounceMillis   去抖时间:ms
+     */
+    public PasswordValidationPipeline(ScheduledExecutorService scheduler, Executor callbackExecutor, long debounceMillis) {
+        if (debounceMillis < 0) {
+            throw new IllegalArgumentException("非法参数：去抖时间不能为负.debounce must not be negative.");
+        }
+        mScheduler = scheduler;
+        mCallbackExecutor = callbackExecutor;
+        mDebounceMillis = debounceMillis;
+    }
+
+    private static ScheduledExecutorService newDefaultScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "password-validation");
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    public void addValidator(Validator validator) {
+        mValidators.addIfAbsent(validator);
+    }
+
+    public void removeValidator(Validator validator) {
+        mValidators.remove(validator);
+    }
+
+    public void setOnValidatedListener(OnValidatedListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 提交一次输入，之前还没完成的校验会被取消
+     *
+     * @param password 输入内容，会复制一份快照，调用后可以立即修改或清零
+     * @param length   有效长度
+     * @return 本次输入的序号
+     */
+    public int submit(char[] password, int length) {
+        return submitSnapshot(Arrays.copyOf(password, length));
+    }
+
+    /**
+     * 提交一次输入，逐个字符复制快照，不经过String，可以直接传入输入框的Editable
+     *
+     * @param password
+     * @return 本次输入的序号
+     */
+    public int submit(CharSequence password) {
+        char[] snapshot = new char[password.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = password.charAt(i);
+        }
+        return submitSnapshot(snapshot);
+    }
+
+    private int submitSnapshot(final char[] snapshot) {
+        final int generation = mGeneration.incrementAndGet();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    validate(generation, snapshot);
+                } finally {
+                    Arrays.fill(snapshot, '\0');
+                }
+            }
+        };
+        synchronized (mLock) {
+            cancelPendingLocked();
+            mPendingSnapshot = snapshot;
+            mPending = mScheduler.schedule(task, mDebounceMillis, TimeUnit.MILLISECONDS);
+        }
+        return generation;
+    }
+
+    /**
+     * 取消最新的任务并清零它的快照；正在校验的任务此时序号已经过期，读到的0不会被回调
+     */
+    private void cancelPendingLocked() {
+        if (mPending != null) {
+            mPending.cancel(true);
+            mPending = null;
+        }
+        if (mPendingSnapshot != null) {
+            Arrays.fill(mPendingSnapshot, '\0');
+            mPendingSnapshot = null;
+        }
+    }
+
+    char[] getPendingSnapshot() {
+        synchronized (mLock) {
+            return mPendingSnapshot;
+        }
+    }
+
+    /**
+     * 取消还没完成的校验，之前提交的输入都不会再回调，例如清空输入或离开页面时调用
+     */
+    public void cancel() {
+        mGeneration.incrementAndGet();
+        synchronized (mLock) {
+            cancelPendingLocked();
+        }
+    }
+
+    /**
+     * 停止后台线程，之后不能再提交
+     */
+    public void shutdown() {
+        cancel();
+        mScheduler.shutdownNow();
+    }
+
+    private void validate(final int generation, char[] snapshot) {
+        CharSequence password = CharBuffer.wrap(snapshot).asReadOnlyBuffer();
+        final List<String> errors = new ArrayList<String>();
+        for (Validator validator : mValidators) {
+            if (isStale(generation)) {
+                return;
+            }
+            try {
+                String error = validator.validate(password);
+                if (error != null) {
+                    errors.add(error);
+                }
+            } catch (InterruptedException e) {
+                // 有新输入，放弃本次校验
+                return;
+            }
+        }
+        if (isStale(generation)) {
+            return;
+        }
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // 回调线程上再检查一次：排队期间可能又有新输入，旧结果不能覆盖新结果
+                OnValidatedListener listener = mListener;
+                if (!isStale(generation) && listener != null) {
+                    listener.onValidated(new Result(generation, errors));
+                }
+            }
+        });
+    }
+
+    private boolean isStale(int generation) {
+        return generation != mGeneration.get() || Thread.currentThread().isInterrupted();
+    }
+}
@@ -0,0 +1,114 @@
+package com.xiongit.customview.compositeview;
+
+import android.text.Editable;
+import android.text.InputFilter;
+import android.text.SpannableStringBuilder;
+import android.text.TextWatcher;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * 密码的定长缓冲区
+ * 1.跟随输入框内容同步一份char[]，取密码时不产生String
+ * 2.给输入框提供容量固定的Editable，输入过程中不会扩容，旧数组里不会残留密码
+ * 3.清除时先用0覆盖输入框和缓冲区里的字符，再清空
+ */
+final class SecurePasswordBuffer implements TextWatcher {
+
+    private static final InputFilter[] NO_FILTERS = new InputFilter[0];
+
+    private final char[] mChars;// 密码，只有前mLength个有效
+    private final char[] mZeros;// 用来覆盖输入框内容
+    private final CharBuffer mView;// 对外暴露的只读视图，复用
+    private int mLength;
+
+    private final Editable.Factory mEditableFactory = new Editable.Factory() {
+        @Override
+        public Editable newEditable(CharSequence source) {
+            // 先用容量大小的占位内容撑开内部数组，之后的编辑都不会再扩容
+            SpannableStringBuilder editable = new SpannableStringBuilder(CharBuffer.wrap(mZeros));
+            editable.replace(0, editable.length(), source);
+            return editable;
+        }
+    };
+
+    SecurePasswordBuffer(int capacity) {
+        mChars = new char[capacity];
+        mZeros = new char[capacity];
+        mView = CharBuffer.wrap(mChars).asReadOnlyBuffer();
+    }
+
+    int getCapacity() {
+        return mChars.length;
+    }
+
+    int length() {
+        return mLength;
+    }
+
+    Editable.Factory getEditableFactory() {
+        return mEditableFactory;
+    }
+
+    /**
+     * 把密码复制到调用方的数组中，调用方用完后自己清零
+     *
+     * @param dest
+     * @return 密码长度
+     */
+    int getChars(char[] dest) {
+        if (dest.length < mLength) {
+            throw new IllegalArgumentException("非法参数：数组长度不足.dest length " + dest.length + " < " + mLength);
+        }
+        System.arraycopy(mChars, 0, dest, 0, mLength);
+        return mLength;
+    }
+
+    /**
+     * 直接指向内部缓冲区的只读视图，内容随输入变化，每次调用复用同一个对象
+     *
+     * @return
+     */
+    CharBuffer getView() {
+        mView.limit(mLength).position(0);
+        return mView;
+    }
+
+    /**
+     * 用0覆盖输入框内容后清空，缓冲区随之清零
+     * Editable内部是间隙缓冲区，删掉的字符还留在数组里，只覆盖当前长度不够：
+     * 内容最多capacity个字符，只可能落在数组头部或尾部capacity个位置上，
+     * 先写满capacity个0覆盖头部，再在开头插入一个0把间隙移到最前，内容整体挪到尾部覆盖尾部
+     *
+     * @param editable
+     */
+    void wipe(Editable editable) {
+        InputFilter[] filters = editable.getFilters();
+        editable.setFilters(NO_FILTERS);
+        editable.replace(0, editable.length(), CharBuffer.wrap(mZeros));
+        editable.insert(0, CharBuffer.wrap(mZeros, 0, 1));
+        editable.clear();
+        editable.setFilters(filters);
+        Arrays.fill(mChars, '\0');
+        mLength = 0;
+    }
+
+    @Override
+    public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+    }
+
+    @Override
+    public void onTextChanged(CharSequence s, int start, int before, int count) {
+    }
+
+    @Override
+    public void afterTextChanged(Editable s) {
+        int length = Math.min(s.length(), mChars.length);
+        s.getChars(0, length, mChars, 0);
+        if (length < mLength) {
+            Arrays.fill(mChars, length, mLength, '\0');
+        }
+        mLength = length;
+    }
+}
@@ -0,0 +1,38 @@
+package com.xiongit.customview.download;
+
+import java.io.IOException;
+
+/**
+ * 断点续传信息的存储，记录文件总长度和每段已下载的长度
+ * 实现需要线程安全，同一任务的多个分段线程会并发调用save
+ */
+public interface CheckpointStore {
+
+    /**
+     * 读取断点
+     *
+     * @param task
+     * @param length       服务器返回的文件长度
+     * @param segmentCount 分段数
+     * @return 每段已下载的长度；没有断点或断点与长度、分段数不符时返回null
+     * @throws IOException
+     */
+    long[] load(DownloadTask task, long length, int segmentCount) throws IOException;
+
+    /**
+     * 保存断点
+     *
+     * @param task
+     * @param length           文件长度
+     * @param segmentProgress 每段已下载的长度
+     * @throws IOException
+     */
+    void save(DownloadTask task, long length, long[] segmentProgress) throws IOException;
+
+    /**
+     * 下载完成后清除断点
+     *
+     * @param task
+     */
+    void clear(DownloadTask task);
+}
@@ -0,0 +1,57 @@
+package com.xiongit.customview.download;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.xiongit.customview.view.DownloadButton;
+
+/**
+ * 把下载任务的状态和分段进度发布到DownloadButton上
+ * 状态变化切换到主线程设置；进度直接绑定分段进度模型，由按钮自己按帧刷新
+ */
+public class DownloadButtonBinder implements DownloadListener {
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final DownloadButton mButton;
+    private final boolean mShowSegments;
+
+    private DownloadButtonBinder(DownloadButton button, boolean showSegments) {
+        mButton = button;
+        mShowSegments = showSegments;
+    }
+
+    /**
+     * 绑定任务和按钮
+     *
+     * @param task
+     * @param button
+     * @param showSegments 是否逐段绘制进度条
+     * @return 用于解除绑定：task.removeListener(binder)
+     */
+    public static DownloadButtonBinder bind(DownloadTask task, DownloadButton button, boolean showSegments) {
+        DownloadButtonBinder binder = new DownloadButtonBinder(button, showSegments);
+        task.addListener(binder);
+        return binder;
+    }
+
+    @Override
+    public void onPrepared(final DownloadTask task) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mButton.setSegmentedProgress(task.getProgress(), mShowSegments);
+            }
+        });
+    }
+
+    @Override
+    public void onStateChanged(DownloadTask task, final DownloadButton.DownloadState state) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // 已完成的任务重新下载时按钮先重置，其他不合法的切换丢弃
+                mButton.syncDownloadState(state);
+            }
+        });
+    }
+}
@@ -0,0 +1,375 @@
+package com.xiongit.customview.download;
+
+import com.xiongit.customview.view.DownloadButton;
+import com.xiongit.customview.view.SegmentedProgress;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多线程分段下载引擎
+ * 1.先用HEAD请求获取文件长度和是否支持Range
+ * 2.预分配目标文件，按字节区间分段，每段在有界线程池中用一个线程下载
+ * 3.每段用FileChannel按位置直接写入文件，互不干扰
+ * 4.定期把每段已下载的长度写入{@link CheckpointStore}，暂停或失败后再次开始时从断点续传
+ * 状态和进度通过{@link DownloadListener}发布，可以用{@link DownloadButtonBinder}绑定到DownloadButton上
+ * 需要控制同时下载的任务数、优先级和总带宽时，通过{@link DownloadScheduler}排队启动
+ */
+public class DownloadEngine {
+
+    /**
+     * 每段每下载这么多字节保存一次断点
+     */
+    private static final long CHECKPOINT_INTERVAL = 512 * 1024;
+    private static final int CONNECT_TIMEOUT = 15000;
+    private static final int READ_TIMEOUT = 30000;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final CheckpointStore mCheckpointStore;
+
+    /**
+     * @param maxThreads 同时下载的最大线程数，所有任务的所有分段共用
+     */
+    public DownloadEngine(int maxThreads) {
+        this(maxThreads, new FileCheckpointStore());
+    }
+
+    public DownloadEngine(int maxThreads, CheckpointStore checkpointStore) {
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("非法参数：线程数必须大于0.max threads must be greater than 0.");
+        }
+        mCheckpointStore = checkpointStore;
+        mExecutor = new ThreadPoolExecutor(maxThreads, maxThreads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "download-" + mCount.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public DownloadTask newTask(String url, File file) {
+        return new DownloadTask(url, file);
+    }
+
+    /**
+     * 开始或继续下载，线程池忙时任务处于等待中
+     *
+     * @param task
+     */
+    public void start(final DownloadTask task) {
+        DownloadButton.DownloadState state = task.getState();
+        if (state == DownloadButton.DownloadState.STARTED || state == DownloadButton.DownloadState.WAITING) {
+            return;
+        }
+        submit(task);
+    }
+
+    /**
+     * 不检查当前状态直接提交任务，供{@link DownloadScheduler}启动已在排队的任务
+     *
+     * @param task
+     */
+    void submit(final DownloadTask task) {
+        task.setPaused(false);
+        task.setRequeued(false);
+        task.setError(null);
+        task.setState(DownloadButton.DownloadState.WAITING);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                prepare(task);
+            }
+        });
+    }
+
+    /**
+     * 暂停下载，正在下载的分段会在读完当前缓冲区后保存断点并停止
+     *
+     * @param task
+     */
+    public void pause(DownloadTask task) {
+        task.setPaused(true);
+    }
+
+    /**
+     * 停止所有下载线程，不再接受新任务
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    private void prepare(DownloadTask task) {
+        if (task.isPaused()) {
+            task.setState(pausedState(task));
+            return;
+        }
+        task.setState(DownloadButton.DownloadState.STARTED);
+        try {
+            long length;
+            boolean acceptRanges;
+            HttpURLConnection conn = openConnection(task.getUrl());
+            try {
+                conn.setRequestMethod("HEAD");
+                int code = conn.getResponseCode();
+                if (code != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("HEAD " + task.getUrl() + " returned " + code);
+                }
+                length = parseLength(conn.getHeaderField("Content-Length"));
+                acceptRanges = "bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges"));
+            } finally {
+                conn.disconnect();
+            }
+            if (length <= 0) {
+                throw new IOException("unknown content length: " + task.getUrl());
+            }
+
+            int segmentCount = acceptRanges ? (int) Math.min(task.getSegmentCount(), length) : 1;
+            SegmentedProgress progress = task.getProgress();
+            if (progress == null || progress.getLength() != length || progress.getSegmentCount() != segmentCount) {
+                progress = SegmentedProgress.split(length, segmentCount);
+                long[] checkpoint = acceptRanges ? mCheckpointStore.load(task, length, segmentCount) : null;
+                if (checkpoint != null && task.getFile().length() == length) {
+                    for (int i = 0; i < segmentCount; i++) {
+                        progress.setSegmentProgress(i, checkpoint[i]);
+                    }
+                }
+                task.setProgress(progress);
+            }
+
+            // 预分配文件，各分段按位置写入
+            RandomAccessFile raf = new RandomAccessFile(task.getFile(), "rw");
+            try {
+                if (raf.length() != length) {
+                    raf.setLength(length);
+                }
+            } catch (IOException e) {
+                // 例如空间不足，关闭文件后按下载失败处理
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+                throw e;
+            }
+            Download download = new Download(task, progress, raf);
+            for (int i = 0; i < segmentCount; i++) {
+                final int segment = i;
+                final Download d = download;
+                try {
+                    mExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            d.runSegment(segment);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // 引擎已经停止，没能提交的分段直接算作结束，由最后结束的分段收尾
+                    task.setError(e);
+                    task.setPaused(true);
+                    d.skipSegment();
+                }
+            }
+        } catch (IOException e) {
+            task.setError(e);
+            task.setState(DownloadButton.DownloadState.ERROR);
+        }
+    }
+
+    /**
+     * 暂停后的状态：被调度器抢占的任务回到等待中，其他为已暂停
+     */
+    private static DownloadButton.DownloadState pausedState(DownloadTask task) {
+        return task.isRequeued() ? DownloadButton.DownloadState.WAITING : DownloadButton.DownloadState.STOPPED;
+    }
+
+    private static long parseLength(String contentLength) {
+        if (contentLength == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static HttpURLConnection openConnection(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT);
+        conn.setReadTimeout(READ_TIMEOUT);
+        conn.setRequestProperty("Accept-Encoding", "identity");
+        return conn;
+    }
+
+    /**
+     * 一次下载过程：共享的文件通道和剩余分段计数，最后一个结束的分段负责收尾
+     */
+    private class Download {
+
+        private final DownloadTask mTask;
+        private final SegmentedProgress mProgress;
+        private final RandomAccessFile mFile;
+        private final FileChannel mChannel;
+        private final AtomicInteger mRemaining;
+
+        Download(DownloadTask task, SegmentedProgress progress, RandomAccessFile file) {
+            mTask = task;
+            mProgress = progress;
+            mFile = file;
+            mChannel = file.getChannel();
+            mRemaining = new AtomicInteger(progress.getSegmentCount());
+        }
+
+        void runSegment(int segment) {
+            try {
+                downloadSegment(segment);
+            } catch (IOException e) {
+                mTask.setError(e);
+                mTask.setPaused(true);// 让其他分段尽快停下
+            } finally {
+                if (mRemaining.decrementAndGet() == 0) {
+                    finish();
+                }
+            }
+        }
+
+        void skipSegment() {
+            if (mRemaining.decrementAndGet() == 0) {
+                finish();
+            }
+        }
+
+        private void downloadSegment(int segment) throws IOException {
+            final long segmentStart = segmentStart(segment);
+            final long segmentLength = mProgress.getSegmentLength(segment);
+            long done = mProgress.getSegmentProgress(segment);
+            if (done >= segmentLength || mTask.isPaused()) {
+                return;
+            }
+
+            HttpURLConnection conn = openConnection(mTask.getUrl());
+            InputStream in = null;
+            try {
+                if (mProgress.getSegmentCount() > 1 || done > 0) {
+                    conn.setRequestProperty("Range", "bytes=" + (segmentStart + done) + "-" + (segmentStart + segmentLength - 1));
+                }
+                int code = conn.getResponseCode();
+                boolean partial = code == HttpURLConnection.HTTP_PARTIAL;
+                if (!partial && !(code == HttpURLConnection.HTTP_OK && segmentStart + done == 0)) {
+                    throw new IOException("GET " + mTask.getUrl() + " returned " + code);
+                }
+                in = conn.getInputStream();
+
+                final byte[] buffer = new byte[mTask.getBufferSize()];
+                final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+                long sinceCheckpoint = 0;
+                int n;
+                while (done < segmentLength && !mTask.isPaused() && (n = in.read(buffer)) != -1) {
+                    // 服务器多给的数据不属于本段
+                    n = (int) Math.min(n, segmentLength - done);
+                    byteBuffer.clear();
+                    byteBuffer.limit(n);
+                    long position = segmentStart + done;
+                    while (byteBuffer.hasRemaining()) {
+                        position += mChannel.write(byteBuffer, position);
+                    }
+                    done += n;
+                    mProgress.addProgress(segment, n);
+                    throttle(n);
+
+                    sinceCheckpoint += n;
+                    if (sinceCheckpoint >= CHECKPOINT_INTERVAL) {
+                        sinceCheckpoint = 0;
+                        saveCheckpoint();
+                    }
+                }
+                if (done < segmentLength && !mTask.isPaused()) {
+                    throw new IOException("connection closed early, segment " + segment + " at " + done + "/" + segmentLength);
+                }
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+                conn.disconnect();
+            }
+        }
+
+        /**
+         * 按调度器分配给任务的带宽等待，没有分配时不限速
+         */
+        private void throttle(int bytes) throws IOException {
+            TokenBucket bucket = mTask.getTokenBucket();
+            if (bucket == null) {
+                return;
+            }
+            try {
+                bucket.acquire(bytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("download interrupted: " + mTask.getUrl());
+            }
+        }
+
+        private long segmentStart(int segment) {
+            long start = 0;
+            for (int i = 0; i < segment; i++) {
+                start += mProgress.getSegmentLength(i);
+            }
+            return start;
+        }
+
+        private void saveCheckpoint() {
+            long[] segmentProgress = new long[mProgress.getSegmentCount()];
+            for (int i = 0; i < segmentProgress.length; i++) {
+                segmentProgress[i] = mProgress.getSegmentProgress(i);
+            }
+            try {
+                mCheckpointStore.save(mTask, mProgress.getLength(), segmentProgress);
+            } catch (IOException e) {
+                // 断点保存失败不影响下载本身，最多重新下载这一部分
+            }
+        }
+
+        private void finish() {
+            try {
+                mFile.close();
+            } catch (IOException e) {
+                if (mTask.getError() == null) {
+                    mTask.setError(e);
+                }
+            }
+            if (mProgress.getProgress() == mProgress.getLength() && mTask.getError() == null) {
+                mCheckpointStore.clear(mTask);
+                mTask.setState(DownloadButton.DownloadState.FINISHED);
+                return;
+            }
+            saveCheckpoint();
+            if (mTask.getError() != null) {
+                mTask.setState(DownloadButton.DownloadState.ERROR);
+            } else {
+                mTask.setState(pausedState(mTask));
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.xiongit.customview.download;
+
+import com.xiongit.customview.view.DownloadButton;
+
+/**
+ * 下载任务的回调，均在下载线程中调用，实现方需要自己切换到主线程
+ */
+public interface DownloadListener {
+
+    /**
+     * 文件长度已知，分段进度模型创建完毕（断点续传时已恢复已下载的进度）
+     *
+     * @param task
+     */
+    void onPrepared(DownloadTask task);
+
+    /**
+     * 任务状态变化
+     *
+     * @param task
+     * @param state
+     */
+    void onStateChanged(DownloadTask task, DownloadButton.DownloadState state);
+}
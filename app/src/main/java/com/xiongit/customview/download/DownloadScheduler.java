@@ -0,0 +1,439 @@
+package com.xiongit.customview.download;
+
+import com.xiongit.customview.view.DownloadButton;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 下载调度器：决定处于等待中的任务什么时候开始
+ * 1.加入的任务进入等待中，按优先级排队，同一优先级先加入的先开始
+ * 2.同时下载的任务数不超过maxConcurrent，任务结束、失败或暂停后从队列中补上
+ * 3.总带宽平均分给正在下载的任务，每个任务一个令牌桶，分段再多的大文件也只占一份，不会让其他任务饿死
+ * 4.屏幕上可见的任务排到普通任务前面；用户点击的任务可以抢占优先级最低的正在下载的任务，被抢占的任务保存断点后回到等待中
+ * 状态变化都通过DownloadTask发布，用{@link DownloadButtonBinder}绑定的按钮会随之从等待中切换到下载中
+ */
+public class DownloadScheduler implements DownloadListener {
+
+    /**
+     * 优先级：后台任务，例如自动更新
+     */
+    public static final int PRIORITY_LOW = 0;
+    /**
+     * 优先级：普通任务
+     */
+    public static final int PRIORITY_NORMAL = 1;
+    /**
+     * 优先级：在屏幕上可见，排在普通任务前面，但不抢占正在下载的任务
+     */
+    public static final int PRIORITY_VISIBLE = 2;
+    /**
+     * 优先级：用户点击，没有空闲名额时抢占优先级最低的正在下载的任务
+     */
+    public static final int PRIORITY_USER = 3;
+
+    private static final int QUEUED = 0;// 排队中
+    private static final int ACTIVE = 1;// 正在下载
+    private static final int PREEMPTED = 2;// 被抢占，等引擎停下后回到队列
+
+    private final DownloadEngine mEngine;
+    private final int mMaxConcurrent;
+    private long mBandwidth;// 总带宽:byte/s，0表示不限速
+
+    private final HashMap<DownloadTask, Entry> mEntries = new HashMap<DownloadTask, Entry>();
+    private final PriorityQueue<Entry> mQueue = new PriorityQueue<Entry>();
+    private final ArrayList<Entry> mActive = new ArrayList<Entry>();
+    private long mSequence;
+    private int mPreemptCount;
+
+    /**
+     * @param engine        执行下载的引擎
+     * @param maxConcurrent 同时下载的最大任务数
+     * @param bandwidth     所有任务共用的总带宽:byte/s，0表示不限速
+     */
+    public DownloadScheduler(DownloadEngine engine, int maxConcurrent, long bandwidth) {
+        if (engine == null) {
+            throw new IllegalArgumentException("非法参数：下载引擎不能为空.engine must not be null.");
+        }
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("非法参数：同时下载数必须大于0.max concurrent must be greater than 0.");
+        }
+        if (bandwidth < 0) {
+            throw new IllegalArgumentException("非法参数：带宽不能为负数.bandwidth must not be negative.");
+        }
+        mEngine = engine;
+        mMaxConcurrent = maxConcurrent;
+        mBandwidth = bandwidth;
+    }
+
+    /**
+     * 以普通优先级加入队列
+     *
+     * @param task
+     */
+    public void enqueue(DownloadTask task) {
+        enqueue(task, PRIORITY_NORMAL);
+    }
+
+    /**
+     * 加入队列，任务立即变成等待中；已在队列中或正在下载的任务只更新优先级
+     * 已完成的任务和不经过调度器直接用{@link DownloadEngine#start(DownloadTask)}启动的任务被忽略
+     *
+     * @param task
+     * @param priority {@link #PRIORITY_LOW}~{@link #PRIORITY_USER}
+     */
+    public void enqueue(DownloadTask task, int priority) {
+        checkPriority(priority);
+        // 检查、切换状态、入队和启动在同一个临界区内完成，并发的pause要么发生在之前，要么看到已经入队的任务
+        synchronized (this) {
+            DownloadButton.DownloadState state = task.getState();
+            if (state == DownloadButton.DownloadState.FINISHED) {
+                return;
+            }
+            Entry entry = mEntries.get(task);
+            if (entry == null) {
+                if (state == DownloadButton.DownloadState.STARTED || state == DownloadButton.DownloadState.WAITING) {
+                    // 已经直接交给引擎的任务不再排队
+                    return;
+                }
+                entry = new Entry(task, priority);
+                mEntries.put(task, entry);
+                task.setPaused(false);
+                task.setError(null);
+                task.setState(DownloadButton.DownloadState.WAITING);
+                task.addListener(this);
+                entry.mSequence = mSequence++;
+                mQueue.add(entry);
+            } else {
+                if (entry.mPaused && entry.mState == ACTIVE) {
+                    // 正在停下的任务又被加入，停下后回到队列
+                    requeueLocked(entry);
+                }
+                entry.mPaused = false;
+                setPriorityLocked(entry, Math.max(entry.mPriority, priority));
+            }
+            schedule();
+        }
+    }
+
+    /**
+     * 用户点击：提到最高优先级，没有空闲名额时抢占优先级最低的正在下载的任务
+     * 不在调度器中的任务会被加入
+     *
+     * @param task
+     */
+    public void promote(DownloadTask task) {
+        enqueue(task, PRIORITY_USER);
+    }
+
+    /**
+     * 任务在屏幕上出现或消失时调用，可见的任务至少按{@link #PRIORITY_VISIBLE}排队
+     * 只调整排队顺序，不影响正在下载的任务
+     *
+     * @param task
+     * @param visible
+     */
+    public void setVisible(DownloadTask task, boolean visible) {
+        synchronized (this) {
+            Entry entry = mEntries.get(task);
+            if (entry == null || entry.mVisible == visible) {
+                return;
+            }
+            entry.mVisible = visible;
+            setPriorityLocked(entry, entry.mPriority);
+        }
+        schedule();
+    }
+
+    /**
+     * 暂停任务：排队中的直接变成已暂停，正在下载的保存断点后变成已暂停，空出的名额由后面的任务补上
+     *
+     * @param task
+     */
+    public void pause(DownloadTask task) {
+        synchronized (this) {
+            Entry entry = mEntries.get(task);
+            if (entry == null) {
+                return;
+            }
+            entry.mPaused = true;
+            if (entry.mState == QUEUED) {
+                // 和enqueue一样在临界区内切换状态，不会覆盖随后重新加入队列时的等待中
+                mQueue.remove(entry);
+                mEntries.remove(task);
+                task.removeListener(this);
+                task.setState(DownloadButton.DownloadState.STOPPED);
+                return;
+            }
+        }
+        mEngine.pause(task);
+    }
+
+    /**
+     * 修改总带宽，立即重新分配给正在下载的任务
+     *
+     * @param bandwidth byte/s，0表示不限速
+     */
+    public synchronized void setBandwidth(long bandwidth) {
+        if (bandwidth < 0) {
+            throw new IllegalArgumentException("非法参数：带宽不能为负数.bandwidth must not be negative.");
+        }
+        mBandwidth = bandwidth;
+        rebalanceLocked();
+    }
+
+    public synchronized long getBandwidth() {
+        return mBandwidth;
+    }
+
+    public int getMaxConcurrent() {
+        return mMaxConcurrent;
+    }
+
+    public synchronized int getActiveCount() {
+        return mActive.size();
+    }
+
+    /**
+     * @return 排队中的任务数，不包括被抢占后还没停下的任务
+     */
+    public synchronized int getWaitingCount() {
+        return mQueue.size();
+    }
+
+    /**
+     * @return 累计抢占次数
+     */
+    public synchronized int getPreemptCount() {
+        return mPreemptCount;
+    }
+
+    /**
+     * @param task
+     * @return 任务当前的排队优先级，不在调度器中时返回-1
+     */
+    public synchronized int getPriority(DownloadTask task) {
+        Entry entry = mEntries.get(task);
+        return entry == null ? -1 : entry.effectivePriority();
+    }
+
+    @Override
+    public void onPrepared(DownloadTask task) {
+    }
+
+    @Override
+    public void onStateChanged(DownloadTask task, DownloadButton.DownloadState state) {
+        boolean stopped = false;
+        boolean removed = false;
+        synchronized (this) {
+            Entry entry = mEntries.get(task);
+            if (entry == null) {
+                return;
+            }
+            switch (state) {
+                case WAITING:
+                    // 被抢占的任务已经停下，回到队列；停下前又被暂停的直接变成已暂停
+                    if (entry.mState != PREEMPTED) {
+                        return;
+                    }
+                    if (entry.mPaused) {
+                        mEntries.remove(task);
+                        removed = true;
+                        stopped = true;
+                    } else {
+                        entry.mState = QUEUED;
+                        mQueue.add(entry);
+                    }
+                    break;
+                case STOPPED:
+                case ERROR:
+                case FINISHED:
+                    if (entry.mState == QUEUED) {
+                        // 绕过调度器直接操作了引擎，不再排队
+                        mQueue.remove(entry);
+                    } else if (entry.mState == ACTIVE) {
+                        mActive.remove(entry);
+                        task.setTokenBucket(null);
+                        rebalanceLocked();
+                    }
+                    mEntries.remove(task);
+                    removed = true;
+                    break;
+                default:
+                    return;
+            }
+        }
+        if (removed) {
+            task.removeListener(this);
+        }
+        if (stopped) {
+            task.setState(DownloadButton.DownloadState.STOPPED);
+        }
+        schedule();
+    }
+
+    /**
+     * 按优先级补满空闲名额，必要时抢占
+     * 在锁内提交给引擎，保证提交和随后的暂停、抢占按顺序生效；引擎只把任务放进线程池，不会在当前线程下载
+     * 引擎已经停止时，尚未开始的任务全部失败
+     */
+    private void schedule() {
+        List<DownloadTask> rejected = null;
+        RejectedExecutionException error = null;
+        synchronized (this) {
+            List<Entry> admitted = null;
+            while (!mQueue.isEmpty()) {
+                Entry head = mQueue.peek();
+                if (mActive.size() >= mMaxConcurrent && !preemptLocked(head.effectivePriority())) {
+                    break;
+                }
+                mQueue.poll();
+                head.mState = ACTIVE;
+                mActive.add(head);
+                if (admitted == null) {
+                    admitted = new ArrayList<Entry>();
+                }
+                admitted.add(head);
+            }
+            if (admitted == null) {
+                return;
+            }
+            rebalanceLocked();
+            int submitted = 0;
+            try {
+                for (; submitted < admitted.size(); submitted++) {
+                    mEngine.submit(admitted.get(submitted).mTask);
+                }
+            } catch (RejectedExecutionException e) {
+                error = e;
+                rejected = new ArrayList<DownloadTask>();
+                for (Entry entry : admitted.subList(submitted, admitted.size())) {
+                    mActive.remove(entry);
+                    rejected.add(entry.mTask);
+                }
+                while (!mQueue.isEmpty()) {
+                    rejected.add(mQueue.poll().mTask);
+                }
+                for (DownloadTask task : rejected) {
+                    task.setTokenBucket(null);
+                    mEntries.remove(task);
+                }
+                rebalanceLocked();
+            }
+        }
+        if (rejected != null) {
+            for (DownloadTask task : rejected) {
+                task.removeListener(this);
+                task.setError(error);
+                task.setState(DownloadButton.DownloadState.ERROR);
+            }
+        }
+    }
+
+    /**
+     * 为用户点击的任务空出一个名额：选优先级最低、最晚开始的正在下载的任务，让它保存断点后回到等待中
+     *
+     * @return 是否空出了名额
+     */
+    private boolean preemptLocked(int priority) {
+        if (priority < PRIORITY_USER) {
+            return false;
+        }
+        Entry victim = null;
+        for (Entry entry : mActive) {
+            if (entry.effectivePriority() < priority && !entry.mPaused
+                    && (victim == null || entry.effectivePriority() <= victim.effectivePriority())) {
+                victim = entry;
+            }
+        }
+        if (victim == null) {
+            return false;
+        }
+        requeueLocked(victim);
+        mEngine.pause(victim.mTask);
+        mPreemptCount++;
+        return true;
+    }
+
+    /**
+     * 让正在下载的任务停下后回到等待中，重新排队，名额立即空出
+     */
+    private void requeueLocked(Entry entry) {
+        mActive.remove(entry);
+        entry.mState = PREEMPTED;
+        entry.mTask.setTokenBucket(null);
+        entry.mTask.setRequeued(true);
+        rebalanceLocked();
+    }
+
+    /**
+     * 总带宽平均分给正在下载的任务
+     */
+    private void rebalanceLocked() {
+        if (mActive.isEmpty()) {
+            return;
+        }
+        long share = mBandwidth / mActive.size();
+        for (Entry entry : mActive) {
+            DownloadTask task = entry.mTask;
+            if (mBandwidth == 0) {
+                task.setTokenBucket(null);
+                continue;
+            }
+            TokenBucket bucket = task.getTokenBucket();
+            if (bucket == null) {
+                task.setTokenBucket(new TokenBucket(Math.max(1, share)));
+            } else {
+                bucket.setRate(Math.max(1, share));
+            }
+        }
+    }
+
+    private void setPriorityLocked(Entry entry, int priority) {
+        boolean queued = entry.mState == QUEUED && mQueue.remove(entry);
+        entry.mPriority = priority;
+        if (queued) {
+            mQueue.add(entry);
+        }
+    }
+
+    private static void checkPriority(int priority) {
+        if (priority < PRIORITY_LOW || priority > PRIORITY_USER) {
+            throw new IllegalArgumentException("非法参数：未知的优先级.unknown priority: " + priority);
+        }
+    }
+
+    /**
+     * 调度器中的一个任务，按有效优先级从高到低、加入顺序从早到晚排序
+     */
+    private static final class Entry implements Comparable<Entry> {
+
+        final DownloadTask mTask;
+        int mPriority;
+        boolean mVisible;
+        boolean mPaused;// 已请求暂停，停下后不再排队
+        int mState = QUEUED;
+        long mSequence;
+
+        Entry(DownloadTask task, int priority) {
+            mTask = task;
+            mPriority = priority;
+        }
+
+        int effectivePriority() {
+            return mVisible ? Math.max(mPriority, PRIORITY_VISIBLE) : mPriority;
+        }
+
+        @Override
+        public int compareTo(Entry another) {
+            int priority = another.effectivePriority() - effectivePriority();
+            if (priority != 0) {
+                return priority;
+            }
+            return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.xiongit.customview.download;
+
+import com.xiongit.customview.view.DownloadButton;
+import com.xiongit.customview.view.SegmentedProgress;
+
+import java.io.File;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 一个下载任务：地址、保存位置、分段数、缓冲区大小，以及运行时的状态和分段进度
+ * 由{@link DownloadEngine#newTask(String, File)}创建
+ */
+public class DownloadTask {
+
+    /**
+     * 默认分段数
+     */
+    public static final int DEFAULT_SEGMENT_COUNT = 3;
+    /**
+     * 默认读写缓冲区大小:byte
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+    private final String mUrl;
+    private final File mFile;
+    private int mSegmentCount = DEFAULT_SEGMENT_COUNT;
+    private int mBufferSize = DEFAULT_BUFFER_SIZE;
+
+    private volatile DownloadButton.DownloadState mState = DownloadButton.DownloadState.STOPPED;
+    private volatile SegmentedProgress mProgress;// 文件长度已知后才创建
+    private volatile boolean mPaused;
+    private volatile boolean mRequeued;// 被调度器抢占，停下后回到等待中而不是暂停
+    private volatile Throwable mError;
+    private volatile TokenBucket mTokenBucket;// 调度器分配的带宽，null表示不限速
+
+    private final CopyOnWriteArrayList<DownloadListener> mListeners = new CopyOnWriteArrayList<DownloadListener>();
+
+    DownloadTask(String url, File file) {
+        if (url == null || file == null) {
+            throw new IllegalArgumentException("非法参数：下载地址和保存文件不能为空.url and file must not be null.");
+        }
+        mUrl = url;
+        mFile = file;
+    }
+
+    public String getUrl() {
+        return mUrl;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * 设置分段数，开始下载前设置有效；服务器不支持Range时只用一段
+     *
+     * @param segmentCount
+     * @return
+     */
+    public DownloadTask setSegmentCount(int segmentCount) {
+        if (segmentCount <= 0) {
+            throw new IllegalArgumentException("非法参数：分段数必须大于0.segment count must be greater than 0.");
+        }
+        mSegmentCount = segmentCount;
+        return this;
+    }
+
+    public int getSegmentCount() {
+        return mSegmentCount;
+    }
+
+    /**
+     * 设置每个分段线程的读写缓冲区大小，开始下载前设置有效
+     *
+     * @param bufferSize
+     * @return
+     */
+    public DownloadTask setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("非法参数：缓冲区大小必须大于0.buffer size must be greater than 0.");
+        }
+        mBufferSize = bufferSize;
+        return this;
+    }
+
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    public DownloadButton.DownloadState getState() {
+        return mState;
+    }
+
+    /**
+     * 分段进度，文件长度未知前为null
+     *
+     * @return
+     */
+    public SegmentedProgress getProgress() {
+        return mProgress;
+    }
+
+    /**
+     * 最近一次失败的原因
+     *
+     * @return
+     */
+    public Throwable getError() {
+        return mError;
+    }
+
+    public void addListener(DownloadListener listener) {
+        mListeners.addIfAbsent(listener);
+        SegmentedProgress progress = mProgress;
+        if (progress != null) {
+            listener.onPrepared(this);
+        }
+        listener.onStateChanged(this, mState);
+    }
+
+    public void removeListener(DownloadListener listener) {
+        mListeners.remove(listener);
+    }
+
+    boolean isPaused() {
+        return mPaused;
+    }
+
+    void setPaused(boolean paused) {
+        mPaused = paused;
+    }
+
+    boolean isRequeued() {
+        return mRequeued;
+    }
+
+    void setRequeued(boolean requeued) {
+        mRequeued = requeued;
+    }
+
+    TokenBucket getTokenBucket() {
+        return mTokenBucket;
+    }
+
+    void setTokenBucket(TokenBucket tokenBucket) {
+        mTokenBucket = tokenBucket;
+    }
+
+    void setError(Throwable error) {
+        mError = error;
+    }
+
+    void setProgress(SegmentedProgress progress) {
+        mProgress = progress;
+        for (DownloadListener listener : mListeners) {
+            listener.onPrepared(this);
+        }
+    }
+
+    void setState(DownloadButton.DownloadState state) {
+        if (state == mState) {
+            return;
+        }
+        mState = state;
+        for (DownloadListener listener : mListeners) {
+            listener.onStateChanged(this, state);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.xiongit.customview.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * 把断点写到目标文件旁边的"文件名.ckpt"中
+ * 格式：魔数、文件长度、分段数、每段已下载的长度，均为定长的大端整数
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+    private static final int MAGIC = 0x44424350;// "DBCP"
+    private static final String SUFFIX = ".ckpt";
+
+    @Override
+    public long[] load(DownloadTask task, long length, int segmentCount) throws IOException {
+        File file = checkpointFile(task);
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() != 16 + 8L * segmentCount
+                    || raf.readInt() != MAGIC
+                    || raf.readLong() != length
+                    || raf.readInt() != segmentCount) {
+                return null;
+            }
+            long[] progress = new long[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                progress[i] = raf.readLong();
+            }
+            return progress;
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Override
+    public synchronized void save(DownloadTask task, long length, long[] segmentProgress) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(checkpointFile(task), "rw");
+        try {
+            raf.setLength(16 + 8L * segmentProgress.length);
+            raf.writeInt(MAGIC);
+            raf.writeLong(length);
+            raf.writeInt(segmentProgress.length);
+            for (long progress : segmentProgress) {
+                raf.writeLong(progress);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Override
+    public void clear(DownloadTask task) {
+        File file = checkpointFile(task);
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private static File checkpointFile(DownloadTask task) {
+        return new File(task.getFile().getPath() + SUFFIX);
+    }
+}
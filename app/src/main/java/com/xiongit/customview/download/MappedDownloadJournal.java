@@ -0,0 +1,540 @@
+package com.xiongit.customview.download;
+
+import com.xiongit.customview.view.DownloadButton;
+import com.xiongit.customview.view.SegmentedProgress;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 内存映射的下载日志，记录每个下载的状态、文件长度和每段已下载的长度
+ * 1.文件由定长记录组成，整个映射到内存（MappedByteBuffer），保存断点只是几次内存写入，没有系统调用和序列化
+ * 2.每条记录有A、B两份，轮流写入：先写数据和校验和，最后写递增的序号；读取时取校验通过且序号较大的一份，
+ * 写到一半进程被杀或文件被截断时，另一份仍是上一次完整的内容
+ * 3.进程被杀后写入仍在系统页缓存中，不会丢失；需要防止断电丢失时调用{@link #sync()}
+ * 可以直接作为{@link DownloadEngine}的{@link CheckpointStore}；{@link #track(DownloadTask)}在启动时把日志中的状态和进度恢复到任务上，
+ * 再通过{@link DownloadButtonBinder}显示到按钮上；不经过下载引擎的按钮可以用{@link #restore(DownloadButton, long)}直接恢复
+ * 线程安全
+ */
+public class MappedDownloadJournal implements CheckpointStore, DownloadListener {
+
+    /**
+     * 每条记录最多保存的分段数，超过时不保存断点
+     */
+    public static final int MAX_SEGMENTS = 8;
+    /**
+     * 默认记录数
+     */
+    public static final int DEFAULT_CAPACITY = 512;
+
+    private static final int MAGIC = 0x44424a4c;// "DBJL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;// 魔数、版本、记录数、记录大小
+
+    // 一份记录的布局
+    private static final int OFFSET_SEQUENCE = 0;// int，0表示从未写过
+    private static final int OFFSET_CHECKSUM = 4;// int
+    private static final int OFFSET_KEY = 8;// long
+    private static final int OFFSET_LENGTH = 16;// long
+    private static final int OFFSET_STATE = 24;// int，DownloadState.ordinal()，STATE_REMOVED表示已删除
+    private static final int OFFSET_SEGMENT_COUNT = 28;// int，0表示没有断点
+    private static final int OFFSET_SEGMENTS = 32;// long[MAX_SEGMENTS]
+    private static final int COPY_SIZE = OFFSET_SEGMENTS + 8 * MAX_SEGMENTS;
+    private static final int RECORD_SIZE = 2 * COPY_SIZE;
+
+    private static final int STATE_REMOVED = -1;
+    private static final long EMPTY_KEY = 0;
+    private static final DownloadButton.DownloadState[] STATES = DownloadButton.DownloadState.values();
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+    private final int mCapacity;
+
+    // 内存中的镜像，只在打开时从文件读取一次
+    private final long[] mKeys;// 每条记录的key，EMPTY_KEY表示空位
+    private final int[] mSequences;// 当前有效那份的序号
+    private final int[] mActiveCopies;// 当前有效的是第几份：0或1
+    private final int[] mStates;
+    private final long[] mLengths;
+    private final int[] mSegmentCounts;
+    private final long[] mSegments;// 每条记录MAX_SEGMENTS个
+    private int mRecovered;// 打开时读到的有效记录数
+    private int mDiscarded;// 打开时两份都校验失败而丢弃的记录数
+
+    public MappedDownloadJournal(File file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 打开或创建日志文件，文件已存在时按文件中的记录数打开
+     *
+     * @param file
+     * @param capacity 新建时的记录数，即最多记录多少个下载
+     * @throws IOException
+     */
+    public MappedDownloadJournal(File file, int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("非法参数：记录数必须大于0.capacity must be greater than 0.");
+        }
+        mFile = new RandomAccessFile(file, "rw");
+        try {
+            capacity = readCapacity(mFile, capacity);
+            long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+            boolean fresh = mFile.length() < HEADER_SIZE;
+            if (mFile.length() != size) {
+                // 新文件，或者文件被截断：截掉的部分补0，对应的那份记录校验失败，从另一份恢复
+                mFile.setLength(size);
+            }
+            mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mCapacity = capacity;
+            if (fresh) {
+                mBuffer.putInt(0, MAGIC);
+                mBuffer.putInt(4, VERSION);
+                mBuffer.putInt(8, capacity);
+                mBuffer.putInt(12, RECORD_SIZE);
+            }
+        } catch (IOException e) {
+            mFile.close();
+            throw e;
+        }
+        mKeys = new long[mCapacity];
+        mSequences = new int[mCapacity];
+        mActiveCopies = new int[mCapacity];
+        mStates = new int[mCapacity];
+        mLengths = new long[mCapacity];
+        mSegmentCounts = new int[mCapacity];
+        mSegments = new long[mCapacity * MAX_SEGMENTS];
+        for (int slot = 0; slot < mCapacity; slot++) {
+            readRecord(slot);
+        }
+    }
+
+    /**
+     * 读取文件头中的记录数，文件头不完整或不是本格式时清空文件，按新文件处理
+     */
+    private static int readCapacity(RandomAccessFile file, int capacity) throws IOException {
+        if (file.length() >= HEADER_SIZE) {
+            file.seek(0);
+            int magic = file.readInt();
+            int version = file.readInt();
+            int fileCapacity = file.readInt();
+            int recordSize = file.readInt();
+            if (magic == MAGIC && version == VERSION && recordSize == RECORD_SIZE && fileCapacity > 0) {
+                return fileCapacity;
+            }
+        }
+        file.setLength(0);
+        return capacity;
+    }
+
+    /**
+     * 从A、B两份中选出校验通过且序号较大的一份
+     */
+    private void readRecord(int slot) {
+        int best = -1;
+        int bestSequence = 0;
+        for (int copy = 0; copy < 2; copy++) {
+            int base = copyOffset(slot, copy);
+            int sequence = mBuffer.getInt(base + OFFSET_SEQUENCE);
+            if (sequence != 0 && mBuffer.getInt(base + OFFSET_CHECKSUM) == checksumAt(base, sequence)
+                    && (best < 0 || sequence - bestSequence > 0)) {
+                best = copy;
+                bestSequence = sequence;
+            }
+        }
+        if (best < 0) {
+            if (mBuffer.getInt(copyOffset(slot, 0)) != 0 || mBuffer.getInt(copyOffset(slot, 1)) != 0) {
+                mDiscarded++;
+            }
+            return;
+        }
+        int base = copyOffset(slot, best);
+        mKeys[slot] = mBuffer.getLong(base + OFFSET_KEY);
+        mSequences[slot] = bestSequence;
+        mActiveCopies[slot] = best;
+        mLengths[slot] = mBuffer.getLong(base + OFFSET_LENGTH);
+        mStates[slot] = mBuffer.getInt(base + OFFSET_STATE);
+        mSegmentCounts[slot] = mBuffer.getInt(base + OFFSET_SEGMENT_COUNT);
+        for (int i = 0; i < MAX_SEGMENTS; i++) {
+            mSegments[slot * MAX_SEGMENTS + i] = mBuffer.getLong(base + OFFSET_SEGMENTS + 8 * i);
+        }
+        if (mStates[slot] != STATE_REMOVED) {
+            mRecovered++;
+        }
+    }
+
+    private int checksumAt(int base, int sequence) {
+        int segmentCount = mBuffer.getInt(base + OFFSET_SEGMENT_COUNT);
+        long hash = mix(mix(mix(mix(sequence, mBuffer.getLong(base + OFFSET_KEY)),
+                mBuffer.getLong(base + OFFSET_LENGTH)), mBuffer.getInt(base + OFFSET_STATE)), segmentCount);
+        for (int i = 0; i < MAX_SEGMENTS; i++) {
+            hash = mix(hash, mBuffer.getLong(base + OFFSET_SEGMENTS + 8 * i));
+        }
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private int checksumOf(int slot, int sequence) {
+        long hash = mix(mix(mix(mix(sequence, mKeys[slot]), mLengths[slot]), mStates[slot]), mSegmentCounts[slot]);
+        for (int i = 0; i < MAX_SEGMENTS; i++) {
+            hash = mix(hash, mSegments[slot * MAX_SEGMENTS + i]);
+        }
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static int copyOffset(int slot, int copy) {
+        return HEADER_SIZE + slot * RECORD_SIZE + copy * COPY_SIZE;
+    }
+
+    /**
+     * 把内存镜像写到当前不用的那一份，序号最后写，写完后这一份才生效
+     */
+    private void writeRecord(int slot) {
+        int copy = 1 - mActiveCopies[slot];
+        int sequence = mSequences[slot] + 1;
+        if (sequence == 0) {
+            sequence = 1;
+        }
+        int base = copyOffset(slot, copy);
+        mBuffer.putInt(base + OFFSET_SEQUENCE, 0);
+        mBuffer.putLong(base + OFFSET_KEY, mKeys[slot]);
+        mBuffer.putLong(base + OFFSET_LENGTH, mLengths[slot]);
+        mBuffer.putInt(base + OFFSET_STATE, mStates[slot]);
+        mBuffer.putInt(base + OFFSET_SEGMENT_COUNT, mSegmentCounts[slot]);
+        for (int i = 0; i < MAX_SEGMENTS; i++) {
+            mBuffer.putLong(base + OFFSET_SEGMENTS + 8 * i, mSegments[slot * MAX_SEGMENTS + i]);
+        }
+        mBuffer.putInt(base + OFFSET_CHECKSUM, checksumOf(slot, sequence));
+        mBuffer.putInt(base + OFFSET_SEQUENCE, sequence);
+        mSequences[slot] = sequence;
+        mActiveCopies[slot] = copy;
+    }
+
+    /**
+     * 下载的key，由保存路径计算
+     *
+     * @param task
+     * @return
+     */
+    public static long keyOf(DownloadTask task) {
+        return keyOf(task.getFile().getPath());
+    }
+
+    /**
+     * 由任意字符串（例如保存路径、应用包名）计算key，不会为0
+     *
+     * @param id
+     * @return
+     */
+    public static long keyOf(String id) {
+        // FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == EMPTY_KEY ? 1 : hash;
+    }
+
+    /**
+     * 开放寻址查找key所在的记录，已删除的记录保留key，不会打断查找
+     *
+     * @param key
+     * @param create 不存在时是否占用一条新记录
+     * @return 记录下标，不存在且不创建时返回-1
+     */
+    private int findSlot(long key, boolean create) throws IOException {
+        int home = (int) ((mix(0, key) >>> 1) % mCapacity);
+        int reusable = -1;
+        for (int i = 0; i < mCapacity; i++) {
+            int slot = home + i < mCapacity ? home + i : home + i - mCapacity;
+            long slotKey = mKeys[slot];
+            if (slotKey == key) {
+                return slot;
+            }
+            if (slotKey == EMPTY_KEY) {
+                if (reusable < 0) {
+                    reusable = slot;
+                }
+                break;
+            }
+            if (reusable < 0 && mStates[slot] == STATE_REMOVED) {
+                reusable = slot;
+            }
+        }
+        if (!create) {
+            return -1;
+        }
+        if (reusable < 0) {
+            throw new IOException("journal full, capacity " + mCapacity);
+        }
+        // 新占用的记录先按已删除处理，调用方设置内容后写入
+        mKeys[reusable] = key;
+        mStates[reusable] = STATE_REMOVED;
+        mLengths[reusable] = 0;
+        mSegmentCounts[reusable] = 0;
+        return reusable;
+    }
+
+    private int findExisting(long key) {
+        try {
+            int slot = findSlot(key, false);
+            return slot >= 0 && mStates[slot] != STATE_REMOVED ? slot : -1;
+        } catch (IOException e) {
+            // 不创建时不会抛出
+            return -1;
+        }
+    }
+
+    @Override
+    public synchronized long[] load(DownloadTask task, long length, int segmentCount) throws IOException {
+        int slot = findExisting(keyOf(task));
+        if (slot < 0 || mLengths[slot] != length || mSegmentCounts[slot] != segmentCount) {
+            return null;
+        }
+        long[] progress = new long[segmentCount];
+        System.arraycopy(mSegments, slot * MAX_SEGMENTS, progress, 0, segmentCount);
+        return progress;
+    }
+
+    @Override
+    public synchronized void save(DownloadTask task, long length, long[] segmentProgress) throws IOException {
+        if (segmentProgress.length > MAX_SEGMENTS) {
+            throw new IOException("too many segments: " + segmentProgress.length + " > " + MAX_SEGMENTS);
+        }
+        int slot = findSlot(keyOf(task), true);
+        if (mStates[slot] == STATE_REMOVED) {
+            mStates[slot] = DownloadButton.DownloadState.STOPPED.ordinal();
+        }
+        mLengths[slot] = length;
+        mSegmentCounts[slot] = segmentProgress.length;
+        int offset = slot * MAX_SEGMENTS;
+        System.arraycopy(segmentProgress, 0, mSegments, offset, segmentProgress.length);
+        for (int i = segmentProgress.length; i < MAX_SEGMENTS; i++) {
+            mSegments[offset + i] = 0;
+        }
+        writeRecord(slot);
+    }
+
+    /**
+     * 下载完成时由引擎调用，只清除分段断点，保留文件长度和状态，重启后按钮仍显示已完成
+     *
+     * @param task
+     */
+    @Override
+    public synchronized void clear(DownloadTask task) {
+        int slot = findExisting(keyOf(task));
+        if (slot < 0 || mSegmentCounts[slot] == 0) {
+            return;
+        }
+        mSegmentCounts[slot] = 0;
+        writeRecord(slot);
+    }
+
+    /**
+     * 记录状态
+     *
+     * @param key
+     * @param state
+     * @throws IOException 记录已满
+     */
+    public synchronized void putState(long key, DownloadButton.DownloadState state) throws IOException {
+        int slot = findSlot(key, true);
+        if (mStates[slot] == state.ordinal()) {
+            return;
+        }
+        mStates[slot] = state.ordinal();
+        writeRecord(slot);
+    }
+
+    /**
+     * 删除一个下载的全部记录
+     *
+     * @param key
+     */
+    public synchronized void remove(long key) {
+        int slot = findExisting(key);
+        if (slot < 0) {
+            return;
+        }
+        mStates[slot] = STATE_REMOVED;
+        mLengths[slot] = 0;
+        mSegmentCounts[slot] = 0;
+        writeRecord(slot);
+    }
+
+    /**
+     * 记录的状态，没有记录时返回null
+     *
+     * @param key
+     * @return
+     */
+    public synchronized DownloadButton.DownloadState getState(long key) {
+        int slot = findExisting(key);
+        return slot < 0 ? null : STATES[mStates[slot]];
+    }
+
+    /**
+     * 文件长度，未知时为0
+     *
+     * @param key
+     * @return
+     */
+    public synchronized long getLength(long key) {
+        int slot = findExisting(key);
+        return slot < 0 ? 0 : mLengths[slot];
+    }
+
+    /**
+     * 已下载的字节数，已完成时为文件长度
+     *
+     * @param key
+     * @return
+     */
+    public synchronized long getDownloadedBytes(long key) {
+        int slot = findExisting(key);
+        if (slot < 0) {
+            return 0;
+        }
+        if (mStates[slot] == DownloadButton.DownloadState.FINISHED.ordinal()) {
+            return mLengths[slot];
+        }
+        long downloaded = 0;
+        for (int i = 0; i < mSegmentCounts[slot]; i++) {
+            downloaded += mSegments[slot * MAX_SEGMENTS + i];
+        }
+        return downloaded;
+    }
+
+    /**
+     * 启动时恢复任务：状态和分段进度从日志中读出设置到任务上，之后任务的状态变化都会记录下来
+     * 保存的文件不存在或长度不对时，进度不恢复，已完成的任务恢复为暂停
+     * 需要在开始下载和绑定按钮之前调用
+     *
+     * @param task
+     */
+    public void track(DownloadTask task) {
+        DownloadButton.DownloadState state;
+        SegmentedProgress progress = null;
+        synchronized (this) {
+            int slot = findExisting(keyOf(task));
+            state = slot < 0 ? DownloadButton.DownloadState.STOPPED : restoredState(STATES[mStates[slot]]);
+            long length = slot < 0 ? 0 : mLengths[slot];
+            if (length > 0 && task.getFile().length() == length) {
+                if (state == DownloadButton.DownloadState.FINISHED) {
+                    progress = SegmentedProgress.split(length, 1);
+                    progress.setSegmentProgress(0, length);
+                } else if (mSegmentCounts[slot] > 0) {
+                    progress = SegmentedProgress.split(length, mSegmentCounts[slot]);
+                    for (int i = 0; i < mSegmentCounts[slot]; i++) {
+                        progress.setSegmentProgress(i, mSegments[slot * MAX_SEGMENTS + i]);
+                    }
+                }
+            } else if (state == DownloadButton.DownloadState.FINISHED) {
+                state = DownloadButton.DownloadState.STOPPED;
+            }
+        }
+        if (progress != null) {
+            task.setProgress(progress);
+        }
+        task.setState(state);
+        task.addListener(this);
+    }
+
+    /**
+     * 直接把日志中的状态和进度设置到按钮上，用于不经过下载引擎的按钮，只能在主线程调用
+     * 按钮应该是新建的或者{@link DownloadButton#resetForReuse()}过的，不合法的状态切换会被丢弃
+     *
+     * @param button
+     * @param key
+     * @return 是否有记录
+     */
+    public boolean restore(DownloadButton button, long key) {
+        DownloadButton.DownloadState state;
+        long length;
+        long downloaded;
+        synchronized (this) {
+            int slot = findExisting(key);
+            if (slot < 0) {
+                return false;
+            }
+            state = restoredState(STATES[mStates[slot]]);
+            length = mLengths[slot];
+            downloaded = getDownloadedBytes(key);
+        }
+        button.syncDownloadState(state);
+        if (length > 0) {
+            button.setProgress((int) (downloaded * button.getMaxProgress() / length));
+        }
+        return true;
+    }
+
+    /**
+     * 进程被杀时正在下载或等待的任务，重启后已经不在运行，显示为暂停
+     */
+    private static DownloadButton.DownloadState restoredState(DownloadButton.DownloadState state) {
+        if (state == DownloadButton.DownloadState.STARTED || state == DownloadButton.DownloadState.WAITING) {
+            return DownloadButton.DownloadState.STOPPED;
+        }
+        return state;
+    }
+
+    @Override
+    public void onPrepared(DownloadTask task) {
+    }
+
+    @Override
+    public void onStateChanged(DownloadTask task, DownloadButton.DownloadState state) {
+        try {
+            putState(keyOf(task), state);
+        } catch (IOException e) {
+            // 记录已满，只影响重启后的恢复
+        }
+    }
+
+    /**
+     * 打开时恢复的有效记录数
+     *
+     * @return
+     */
+    public int getRecoveredCount() {
+        return mRecovered;
+    }
+
+    /**
+     * 打开时两份都损坏而丢弃的记录数
+     *
+     * @return
+     */
+    public int getDiscardedCount() {
+        return mDiscarded;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * 把写入刷到存储设备上，防止断电丢失，会阻塞，不要在主线程频繁调用
+     */
+    public synchronized void sync() {
+        mBuffer.force();
+    }
+
+    /**
+     * 关闭文件，之后不能再使用；映射的内存在被回收时才释放
+     *
+     * @throws IOException
+     */
+    public synchronized void close() throws IOException {
+        mBuffer.force();
+        mFile.close();
+    }
+}
@@ -0,0 +1,67 @@
+package com.xiongit.customview.download;
+
+/**
+ * 令牌桶限速：每秒补充rate个令牌（字节），最多积攒0.1秒的量
+ * 先取后还：一次可以取超过桶容量的令牌，令牌变成负数后等到补回0再返回，所以读多大的缓冲区都能按平均速率限速
+ * 同一任务的各分段线程共用一个令牌桶
+ */
+final class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private long mRate;// 每秒补充的令牌数
+    private double mCapacity;// 最多积攒的令牌数
+    private double mTokens;
+    private long mLastRefillTime;
+
+    /**
+     * @param rate 每秒补充的令牌数，必须大于0
+     */
+    TokenBucket(long rate) {
+        mLastRefillTime = System.nanoTime();
+        setRate(rate);
+        mTokens = mCapacity;
+    }
+
+    /**
+     * 修改速率，正在等待的线程按新的速率重新计算等待时间
+     *
+     * @param rate
+     */
+    synchronized void setRate(long rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("非法参数：速率必须大于0.rate must be greater than 0.");
+        }
+        refill(System.nanoTime());
+        mRate = rate;
+        mCapacity = Math.max(1, rate / 10.0);
+        mTokens = Math.min(mTokens, mCapacity);
+        notifyAll();
+    }
+
+    synchronized long getRate() {
+        return mRate;
+    }
+
+    /**
+     * 取走permits个令牌，不够时阻塞到补足为止
+     *
+     * @param permits
+     * @throws InterruptedException
+     */
+    synchronized void acquire(int permits) throws InterruptedException {
+        refill(System.nanoTime());
+        mTokens -= permits;
+        while (mTokens < 0) {
+            long waitNanos = (long) Math.ceil(-mTokens * NANOS_PER_SECOND / mRate);
+            wait(waitNanos / NANOS_PER_MILLI, (int) (waitNanos % NANOS_PER_MILLI));
+            refill(System.nanoTime());
+        }
+    }
+
+    private void refill(long now) {
+        mTokens = Math.min(mCapacity, mTokens + (now - mLastRefillTime) * (double) mRate / NANOS_PER_SECOND);
+        mLastRefillTime = now;
+    }
+}
@@ -0,0 +1,202 @@
+package com.xiongit.customview.metrics;
+
+import com.xiongit.customview.BuildConfig;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 自定义控件热点路径的计数器：绘制次数和耗时、测量次数和耗时、请求与实际执行的刷新次数、被合并的进度更新次数、监听回调延迟
+ * 计数器按线程分条存放，写入时只做一次无竞争的原子加，读取时把各条相加
+ * 开关是编译期常量{@link #ENABLED}（BuildConfig.WIDGET_METRICS），关闭时控件里用它包住的统计代码会被编译器整段去掉
+ * 统计结果通过{@link #snapshot()}读取，或者设置{@link Sink}后调用{@link #flush()}发布到自己的监控系统
+ */
+public final class WidgetMetrics {
+
+    /**
+     * 是否开启统计，由gradle中的buildConfigField "WIDGET_METRICS"决定
+     */
+    public static final boolean ENABLED = BuildConfig.WIDGET_METRICS;
+
+    /**
+     * 控件
+     */
+    public static final int WIDGET_DOWNLOAD_BUTTON = 0;
+    public static final int WIDGET_PASSWORD_EDIT_TEXT = 1;
+    private static final int WIDGET_COUNT = 2;
+
+    /**
+     * 指标
+     */
+    public static final int METRIC_DRAWS = 0;// 绘制次数
+    public static final int METRIC_DRAW_TIME_NS = 1;// 绘制总耗时:ns
+    public static final int METRIC_MEASURES = 2;// 测量次数
+    public static final int METRIC_MEASURE_TIME_NS = 3;// 测量总耗时:ns
+    public static final int METRIC_INVALIDATES_REQUESTED = 4;// 请求刷新的次数
+    public static final int METRIC_INVALIDATES_PERFORMED = 5;// 实际调用invalidate的次数
+    public static final int METRIC_UPDATES_COALESCED = 6;// 被合并到同一帧的进度更新次数
+    public static final int METRIC_LISTENER_DISPATCHES = 7;// 监听回调次数
+    public static final int METRIC_LISTENER_LATENCY_NS = 8;// 从状态变化到回调的总延迟:ns
+    private static final int METRIC_COUNT = 9;
+
+    private static final String[] WIDGET_NAMES = {"download_button", "password_edit_text"};
+    private static final String[] METRIC_NAMES = {"draws", "draw_time_ns", "measures", "measure_time_ns",
+            "invalidates_requested", "invalidates_performed", "updates_coalesced",
+            "listener_dispatches", "listener_latency_ns"};
+
+    private static final int COUNTER_COUNT = WIDGET_COUNT * METRIC_COUNT;
+    /**
+     * 分条数，2的幂
+     */
+    private static final int STRIPES = 8;
+    /**
+     * 每条占用的long数，末尾留出一个缓存行的空位，避免相邻两条伪共享
+     */
+    private static final int STRIPE_SIZE = (COUNTER_COUNT + 7) / 8 * 8 + 8;
+
+    private static final AtomicLongArray sCounters = new AtomicLongArray(STRIPES * STRIPE_SIZE);
+    private static volatile Sink sSink;
+
+    private WidgetMetrics() {
+    }
+
+    /**
+     * 接收统计结果，可以转发到自己的监控系统
+     */
+    public interface Sink {
+        void onSnapshot(Snapshot snapshot);
+    }
+
+    public static void setSink(Sink sink) {
+        sSink = sink;
+    }
+
+    public static void increment(int widget, int metric) {
+        add(widget, metric, 1);
+    }
+
+    public static void add(int widget, int metric, long delta) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        sCounters.getAndAdd(stripe * STRIPE_SIZE + widget * METRIC_COUNT + metric, delta);
+    }
+
+    /**
+     * 记录一次耗时操作：次数加一，耗时累加
+     *
+     * @param widget
+     * @param countMetric 次数指标
+     * @param timeMetric  耗时指标
+     * @param nanos       本次耗时:ns
+     */
+    public static void recordTime(int widget, int countMetric, int timeMetric, long nanos) {
+        add(widget, countMetric, 1);
+        add(widget, timeMetric, nanos);
+    }
+
+    /**
+     * 读取当前所有计数器的和，不清零
+     *
+     * @return
+     */
+    public static Snapshot snapshot() {
+        long[] values = new long[COUNTER_COUNT];
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            int base = stripe * STRIPE_SIZE;
+            for (int i = 0; i < COUNTER_COUNT; i++) {
+                values[i] += sCounters.get(base + i);
+            }
+        }
+        return new Snapshot(values);
+    }
+
+    /**
+     * 读取并清零，统计期间的计数不会丢失也不会重复
+     *
+     * @return
+     */
+    public static Snapshot snapshotAndReset() {
+        long[] values = new long[COUNTER_COUNT];
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            int base = stripe * STRIPE_SIZE;
+            for (int i = 0; i < COUNTER_COUNT; i++) {
+                values[i] += sCounters.getAndSet(base + i, 0);
+            }
+        }
+        return new Snapshot(values);
+    }
+
+    public static void reset() {
+        snapshotAndReset();
+    }
+
+    /**
+     * 把上次发布以来的统计结果发给{@link Sink}并清零，没有设置Sink时什么都不做
+     */
+    public static void flush() {
+        Sink sink = sSink;
+        if (sink != null) {
+            sink.onSnapshot(snapshotAndReset());
+        }
+    }
+
+    /**
+     * 某一时刻所有计数器的值
+     */
+    public static final class Snapshot {
+
+        private final long[] mValues;
+
+        private Snapshot(long[] values) {
+            mValues = values;
+        }
+
+        public long get(int widget, int metric) {
+            return mValues[widget * METRIC_COUNT + metric];
+        }
+
+        /**
+         * 平均耗时:ns，没有记录时返回0
+         *
+         * @param widget
+         * @param countMetric
+         * @param timeMetric
+         * @return
+         */
+        public long getAverage(int widget, int countMetric, int timeMetric) {
+            long count = get(widget, countMetric);
+            return count == 0 ? 0 : get(widget, timeMetric) / count;
+        }
+
+        public static int getWidgetCount() {
+            return WIDGET_COUNT;
+        }
+
+        public static int getMetricCount() {
+            return METRIC_COUNT;
+        }
+
+        /**
+         * 指标名，例如"download_button.draws"，可以直接作为上报的key
+         *
+         * @param widget
+         * @param metric
+         * @return
+         */
+        public static String getName(int widget, int metric) {
+            return WIDGET_NAMES[widget] + "." + METRIC_NAMES[metric];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (int widget = 0; widget < WIDGET_COUNT; widget++) {
+                for (int metric = 0; metric < METRIC_COUNT; metric++) {
+                    if (builder.length() > 0) {
+                        builder.append(", ");
+                    }
+                    builder.append(getName(widget, metric)).append('=').append(get(widget, metric));
+                }
+            }
+            return builder.toString();
+        }
+    }
+}
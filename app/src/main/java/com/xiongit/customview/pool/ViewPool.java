@@ -0,0 +1,210 @@
+package com.xiongit.customview.pool;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+
+import com.xiongit.customview.compositeview.PasswordEditText;
+import com.xiongit.customview.view.DownloadButton;
+
+import java.util.ArrayList;
+
+/**
+ * 有上限的控件池
+ * 可以在主线程空闲时（IdleHandler）预先创建控件，打开页面时直接取用，省去obtainStyledAttributes、资源查找和布局inflate
+ * 归还时先把控件重置到刚创建时的样子，超出上限的直接丢弃
+ * 池中的控件使用创建池时传入的Context（通常是Activity，带主题），池的生命周期应与它一致
+ * 只能在主线程使用
+ *
+ * @param <T>
+ */
+public final class ViewPool<T extends View> {
+
+    /**
+     * 创建新控件
+     */
+    public interface Factory<T extends View> {
+        T create(Context context);
+    }
+
+    /**
+     * 把归还的控件重置到刚创建时的样子
+     */
+    public interface Resetter<T extends View> {
+        void reset(T view);
+    }
+
+    private final Context mContext;
+    private final int mCapacity;
+    private final Factory<T> mFactory;
+    private final Resetter<T> mResetter;
+    private final ArrayList<T> mViews;
+
+    private int mPrewarmTarget;// 空闲时预创建到多少个
+    private boolean mIdleHandlerAdded;
+    private final MessageQueue.IdleHandler mIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            // 每次空闲只创建一个，避免占用太长时间影响后面的消息
+            if (mViews.size() < mPrewarmTarget) {
+                mViews.add(mFactory.create(mContext));
+                mCreatedCount++;
+            }
+            mIdleHandlerAdded = mViews.size() < mPrewarmTarget;
+            return mIdleHandlerAdded;
+        }
+    };
+
+    private int mHitCount;// 从池中取到的次数
+    private int mMissCount;// 池空需要现场创建的次数
+    private int mCreatedCount;// 空闲时预创建的数量
+    private int mDroppedCount;// 归还时池已满而丢弃的数量
+
+    /**
+     * @param context  创建控件用的Context
+     * @param capacity 池中最多保留的控件数
+     * @param factory
+     * @param resetter
+     */
+    public ViewPool(Context context, int capacity, Factory<T> factory, Resetter<T> resetter) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("非法参数：容量必须大于0.capacity must be greater than 0.");
+        }
+        if (factory == null || resetter == null) {
+            throw new IllegalArgumentException("非法参数：factory和resetter不能为空.factory and resetter must not be null.");
+        }
+        mContext = context;
+        mCapacity = capacity;
+        mFactory = factory;
+        mResetter = resetter;
+        mViews = new ArrayList<T>(capacity);
+    }
+
+    /**
+     * DownloadButton池，归还时调用{@link DownloadButton#resetForReuse()}
+     *
+     * @param context
+     * @param capacity
+     * @return
+     */
+    public static ViewPool<DownloadButton> forDownloadButtons(Context context, int capacity) {
+        return new ViewPool<DownloadButton>(context, capacity, new Factory<DownloadButton>() {
+            @Override
+            public DownloadButton create(Context context) {
+                return new DownloadButton(context);
+            }
+        }, new Resetter<DownloadButton>() {
+            @Override
+            public void reset(DownloadButton view) {
+                view.resetForReuse();
+            }
+        });
+    }
+
+    /**
+     * PasswordEditText池，归还时调用{@link PasswordEditText#resetForReuse()}
+     *
+     * @param context
+     * @param capacity
+     * @return
+     */
+    public static ViewPool<PasswordEditText> forPasswordEditTexts(Context context, int capacity) {
+        return new ViewPool<PasswordEditText>(context, capacity, new Factory<PasswordEditText>() {
+            @Override
+            public PasswordEditText create(Context context) {
+                return new PasswordEditText(context);
+            }
+        }, new Resetter<PasswordEditText>() {
+            @Override
+            public void reset(PasswordEditText view) {
+                view.resetForReuse();
+            }
+        });
+    }
+
+    /**
+     * 在主线程空闲时逐个预创建控件，直到池中有count个（不超过容量）
+     *
+     * @param count
+     */
+    public void prewarm(int count) {
+        mPrewarmTarget = Math.min(count, mCapacity);
+        if (mViews.size() >= mPrewarmTarget || mIdleHandlerAdded) {
+            return;
+        }
+        mIdleHandlerAdded = true;
+        Looper.myQueue().addIdleHandler(mIdleHandler);
+    }
+
+    /**
+     * 取一个控件，池空时现场创建
+     *
+     * @return
+     */
+    public T acquire() {
+        int size = mViews.size();
+        if (size > 0) {
+            mHitCount++;
+            return mViews.remove(size - 1);
+        }
+        mMissCount++;
+        return mFactory.create(mContext);
+    }
+
+    /**
+     * 归还控件：从父布局中移除并重置，池满时丢弃
+     *
+     * @param view
+     */
+    public void release(T view) {
+        ViewParent parent = view.getParent();
+        if (parent instanceof ViewGroup) {
+            ((ViewGroup) parent).removeView(view);
+        }
+        if (mViews.size() >= mCapacity) {
+            mDroppedCount++;
+            return;
+        }
+        mResetter.reset(view);
+        mViews.add(view);
+    }
+
+    /**
+     * 清空池并停止预创建，例如在onTrimMemory或页面销毁时调用
+     */
+    public void clear() {
+        mViews.clear();
+        mPrewarmTarget = 0;
+        if (mIdleHandlerAdded) {
+            Looper.myQueue().removeIdleHandler(mIdleHandler);
+            mIdleHandlerAdded = false;
+        }
+    }
+
+    public int size() {
+        return mViews.size();
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    public int getCreatedCount() {
+        return mCreatedCount;
+    }
+
+    public int getDroppedCount() {
+        return mDroppedCount;
+    }
+}
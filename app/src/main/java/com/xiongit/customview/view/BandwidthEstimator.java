@@ -0,0 +1,147 @@
+package com.xiongit.customview.view;
+
+/**
+ * 下载速度和剩余时间估算
+ * 用定长的基本类型环形缓冲区记录最近几次（已下载字节数, 时间）采样，
+ * 窗口内的平均速度再做指数加权移动平均，采样过程不产生对象分配
+ * 非线程安全，应在同一个线程（通常是主线程）中采样和读取
+ */
+public class BandwidthEstimator {
+
+    /**
+     * 默认窗口大小：采样个数
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 8;
+    /**
+     * 总字节数已知但速度太低、无法估算剩余时间时{@link #getEtaSeconds()}的返回值
+     */
+    public static final long ETA_UNKNOWN = -2;
+    /**
+     * 速度下限:byte/s，低于它按0处理，下载停滞时速度不会无限接近0而让剩余时间无限增长
+     */
+    private static final double MIN_BYTES_PER_SECOND = 100;
+    /**
+     * 两次采样的最小间隔:ns，更密集的采样直接忽略
+     */
+    private static final long MIN_SAMPLE_INTERVAL = 100000000L;
+    /**
+     * 指数加权移动平均中新值的权重
+     */
+    private static final double ALPHA = 0.3;
+
+    private final long[] mTimes;// 采样时间:ns
+    private final long[] mBytes;// 采样时已下载的字节数
+    private int mHead;// 最新一个采样的位置
+    private int mCount;// 已有的采样数
+
+    private double mBytesPerSecond;// 平滑后的速度
+    private boolean mHasRate;
+    private long mTotalBytes = -1;// 总字节数，未知为-1
+
+    public BandwidthEstimator() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    public BandwidthEstimator(int windowSize) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("非法参数：窗口至少需要2个采样.window size must be at least 2.");
+        }
+        mTimes = new long[windowSize];
+        mBytes = new long[windowSize];
+    }
+
+    /**
+     * 设置总字节数，用于计算剩余时间
+     *
+     * @param totalBytes 未知时传-1
+     */
+    public void setTotalBytes(long totalBytes) {
+        mTotalBytes = totalBytes;
+    }
+
+    public long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    /**
+     * 添加一个采样
+     *
+     * @param downloadedBytes 到目前为止已下载的总字节数
+     * @param timeNanos       采样时间，例如System.nanoTime()
+     * @return 采样是否被采用，距离上次采样太近时返回false
+     */
+    public boolean addSample(long downloadedBytes, long timeNanos) {
+        if (mCount > 0) {
+            long lastTime = mTimes[mHead];
+            if (timeNanos - lastTime < MIN_SAMPLE_INTERVAL) {
+                return false;
+            }
+            if (downloadedBytes < mBytes[mHead]) {
+                // 进度回退（例如重新下载），重新开始统计
+                reset();
+            }
+        }
+        mHead = mCount == 0 ? 0 : (mHead + 1) % mTimes.length;
+        mTimes[mHead] = timeNanos;
+        mBytes[mHead] = downloadedBytes;
+        if (mCount < mTimes.length) {
+            mCount++;
+        }
+        if (mCount < 2) {
+            return true;
+        }
+
+        // 窗口内最旧的采样
+        int oldest = (mHead - mCount + 1 + mTimes.length) % mTimes.length;
+        long elapsed = timeNanos - mTimes[oldest];
+        double windowRate = (downloadedBytes - mBytes[oldest]) * 1e9 / elapsed;
+        if (mHasRate) {
+            mBytesPerSecond = ALPHA * windowRate + (1 - ALPHA) * mBytesPerSecond;
+        } else {
+            mBytesPerSecond = windowRate;
+            mHasRate = true;
+        }
+        if (mBytesPerSecond < MIN_BYTES_PER_SECOND) {
+            mBytesPerSecond = 0;
+        }
+        return true;
+    }
+
+    /**
+     * 没有新的进度时按上次的字节数再采样一次，下载停滞时速度随之下降
+     *
+     * @param timeNanos 采样时间
+     * @return 采样是否被采用，还没有采样或距离上次采样太近时返回false
+     */
+    public boolean addIdleSample(long timeNanos) {
+        return mCount > 0 && addSample(mBytes[mHead], timeNanos);
+    }
+
+    /**
+     * @return 平滑后的下载速度:byte/s，采样不足或低于下限时为0
+     */
+    public double getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    /**
+     * @return 剩余时间:s，总字节数未知时为-1，速度为0时为{@link #ETA_UNKNOWN}
+     */
+    public long getEtaSeconds() {
+        if (mTotalBytes < 0) {
+            return -1;
+        }
+        if (mCount == 0 || mBytesPerSecond <= 0) {
+            return ETA_UNKNOWN;
+        }
+        long remaining = Math.max(0, mTotalBytes - mBytes[mHead]);
+        return (long) Math.ceil(remaining / mBytesPerSecond);
+    }
+
+    public void reset() {
+        mHead = 0;
+        mCount = 0;
+        mBytesPerSecond = 0;
+        mHasRate = false;
+    }
+}
@@ -5,17 +5,24 @@ import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.LinearGradient;
-import android.graphics.Paint;
-import android.graphics.RectF;
-import android.graphics.Shader;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Handler;
 import android.os.Looper;
+import android.text.TextPaint;
+import android.view.Choreographer;
 import android.support.v4.content.ContextCompat;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.widget.TextView;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 import com.xiongit.customview.R;
+import com.xiongit.customview.metrics.WidgetMetrics;
 
 /**
  * Created by michael on 2016/8/23.
@@ -27,27 +34,109 @@ public class DownloadButton extends TextView {
 
     private static final String TAG = DownloadButton.class.getSimpleName();
 
-    private int mProgress = 0;// 当前进度
+    /**
+     * 进度更新模式：每次setProgress都立即刷新（默认）
+     */
+    public static final int UPDATE_MODE_IMMEDIATE = 0;
+    /**
+     * 进度更新模式：只记录最新进度，每个显示帧最多刷新一次
+     */
+    public static final int UPDATE_MODE_FRAME = 1;
+    /**
+     * 进度更新模式：在UPDATE_MODE_FRAME的基础上，由共享的{@link ProgressAnimationTicker}平滑过渡到最新进度
+     */
+    public static final int UPDATE_MODE_ANIMATED = 2;
+
+    /**
+     * 各状态下显示的文字
+     */
+    static final String TEXT_WAITING = "等待中";
+    static final String TEXT_PAUSED = "暂停中";
+    static final String TEXT_RETRY = "点击重试";
+    static final String TEXT_OPEN = "点击打开";
+
+    /**
+     * 下载中文字模式：显示百分比（默认）
+     */
+    public static final int TEXT_MODE_PERCENT = 0;
+    /**
+     * 下载中文字模式：显示速度和剩余时间，例如"2.3 MB/s · 剩余40秒"
+     */
+    public static final int TEXT_MODE_SPEED = 1;
+
+    /**
+     * 测量模式：按TextView的方式测量（默认），wrap_content时固定为240x100px
+     */
+    public static final int MEASURE_MODE_TEXT_VIEW = 0;
+    /**
+     * 测量模式：按已知的几种文字和内边距计算尺寸，不经过TextView的文字排版，结果缓存到字号、字体、文字或内边距变化
+     */
+    public static final int MEASURE_MODE_LABELS = 1;
+
+    /**
+     * MEASURE_MODE_LABELS模式下的最小尺寸:dp
+     */
+    private static final int MIN_LABELS_WIDTH_DP = 80;
+    private static final int MIN_LABELS_HEIGHT_DP = 32;
+    /**
+     * 速度文字模式下用来估算宽度的样例，接近常见的最长文字
+     */
+    private static final String SPEED_TEXT_SAMPLE = "1023.9 KB/s · 剩余59分59秒";
+
+    /**
+     * 局部刷新时左右多刷新的像素，覆盖抗锯齿边缘
+     */
+    private static final int DIRTY_SLOP = 2;
+    /**
+     * 平滑进度动画的时间常数:ns，约经过这么久追上目标进度的63%
+     */
+    private static final long ANIMATION_TIME_CONSTANT = 120000000L;
+    /**
+     * 没有上一帧时间时假定的帧间隔:ns
+     */
+    private static final long DEFAULT_FRAME_INTERVAL = 16000000L;
+    /**
+     * 速度模式下的低频刷新间隔:ms，下载停滞、没有进度回调时速度文字也会随之下降
+     */
+    private static final long SPEED_REFRESH_INTERVAL = 500;
+
+    private static final AtomicReferenceFieldUpdater<DownloadButton, DownloadState> STATE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DownloadButton.class, DownloadState.class, "mState");
+    /**
+     * 允许的状态切换，[from.ordinal()][to.ordinal()]
+     */
+    private static final boolean[][] TRANSITIONS = buildTransitions();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private volatile int mProgress = 0;// 当前进度，可能由下载线程写入
     private int mMaxProgress = 100;// 默认最大值
 
-    private DownloadState mState = DownloadState.STOPPED;// 当前状态
+    private volatile DownloadState mState = DownloadState.STOPPED;// 当前状态，CAS更新
+    private DownloadState mAppliedState = DownloadState.STOPPED;// 主线程上外观已经对应的状态
+    private final ConcurrentLinkedQueue<DownloadState> mPendingStates = new ConcurrentLinkedQueue<DownloadState>();// 待回调的状态变化
+    private final AtomicBoolean mStateDispatchScheduled = new AtomicBoolean(false);// 是否已经提交了主线程分发
+    private volatile long mStateDispatchTime;// 提交主线程分发的时间:ns，用于统计回调延迟
+    private final Runnable mStateDispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyStateChanges();
+        }
+    };
+    private Drawable mGrayBackground;// 等待中、失败时的背景，初始化时加载一次
+    private Drawable mDownloadBackground;// 其他状态的背景
+    private Drawable mInitialBackground;// 布局中设置的背景，复用时恢复
 
-    private Paint mProgressPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-    private Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final DownloadProgressDrawable mProgressDrawable = new DownloadProgressDrawable();// 负责进度条和文字的绘制
 
     private int mRadius;// 背景圆角半径
     private int mBackgroundColor;
     private int mProgressColor;// 进度条颜色
 
     private int mProgressTextColor;// 文字进度颜色
-    private RectF mProgressRectf;// button的边缘
     private String mDefaultText;// 默认文字
 
     private String mProgressText;// 进度|状态 文字
     Context context;
-    private LinearGradient mProgressBgGradient;
-    private float mProgressPercent;
-    private LinearGradient mProgressTextGradient;
     private int mTextCoverColor = Color.WHITE;
     private int mTextErrorColor;
     private int mTextWaitingColor;
@@ -55,6 +144,65 @@ public class DownloadButton extends TextView {
 
     private OnDownloadStateChangedListener mStateChangedListener;
 
+    private int mUpdateMode = UPDATE_MODE_IMMEDIATE;// 进度更新模式
+    private final AtomicBoolean mFrameScheduled = new AtomicBoolean(false);// 是否已经预约了下一帧刷新
+    private Choreographer mChoreographer;// API16及以上可用，在主线程创建控件时获取
+    private Choreographer.FrameCallback mFrameCallback;
+    private final Runnable mFrameRunnable = new Runnable() {// 没有Choreographer时的替代方案
+        @Override
+        public void run() {
+            onFrameUpdate();
+        }
+    };
+    private float mAnimatedProgress;// UPDATE_MODE_ANIMATED模式下正在显示的进度
+    private long mLastAnimationFrameTime;// 上一次推进动画的帧时间:ns，0表示刚开始
+
+    private SegmentedProgress mSegmentedProgress;// 绑定的分段进度
+    private boolean mShowSegments;// 是否逐段绘制
+    private final SegmentedProgress.OnSegmentProgressChangedListener mSegmentListener =
+            new SegmentedProgress.OnSegmentProgressChangedListener() {
+                @Override
+                public void onSegmentProgressChanged(SegmentedProgress progress) {
+                    // 下载线程中回调，只换算总进度并预约下一帧，不加锁
+                    long length = progress.getLength();
+                    mProgress = (int) (progress.getProgress() * mMaxProgress / length);
+                    scheduleFrameUpdate();
+                }
+            };
+
+    private int mTextMode = TEXT_MODE_PERCENT;// 下载中文字模式
+    private BandwidthEstimator mBandwidthEstimator;// TEXT_MODE_SPEED模式下的速度来源
+    private final char[] mSpeedChars = new char[SpeedTextFormatter.BUFFER_SIZE];// 当前显示的速度文字
+    private int mSpeedCharCount;
+    private final char[] mSpeedScratch = new char[SpeedTextFormatter.BUFFER_SIZE];// 格式化用的临时缓冲区
+    private boolean mSpeedRefreshScheduled;// 是否已经预约了速度文字的低频刷新，只在主线程访问
+    private final Runnable mSpeedRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mSpeedRefreshScheduled = false;
+            if (!shouldRefreshSpeed()) {
+                return;
+            }
+            // 没有新进度时也按上次的字节数采样，停滞时速度逐渐下降
+            if (sampleSpeed(true) && formatSpeedText()) {
+                invalidate();
+                countInvalidate();
+            }
+            mSpeedRefreshScheduled = true;
+            MAIN_HANDLER.postDelayed(this, SPEED_REFRESH_INTERVAL);
+        }
+    };
+
+    private int mMeasureMode = MEASURE_MODE_TEXT_VIEW;
+    private int mIntrinsicWidth = -1;// MEASURE_MODE_LABELS模式下缓存的内容尺寸，-1表示需要重新计算
+    private int mIntrinsicHeight;
+
+    private boolean mHardwareLayerWhenAnimating;// 动画期间是否使用硬件层
+    private int mLayerTypeBeforeAnimation = LAYER_TYPE_NONE;
+    private int mRunningAnimations;// 正在进行的View动画和平滑进度动画数
+    private boolean mAnimationLayerApplied;// 是否为动画临时换成了硬件层
+    private int mTickerIndex = -1;// 在ProgressAnimationTicker中的位置，-1表示没有注册
+
     public enum DownloadState {
         STOPPED,// 暂停中
         STARTED,// 下载中
@@ -86,6 +234,16 @@ public class DownloadButton extends TextView {
     }
 
     private void initView(Context context, AttributeSet set) {
+        // Choreographer与线程绑定，只能在主线程获取；之后可以在任意线程预约帧回调
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && isOnMainThread()) {
+            mChoreographer = Choreographer.getInstance();
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onFrameUpdate();
+                }
+            };
+        }
         TypedArray ta = context.obtainStyledAttributes(set, R.styleable.DownloadButton);
         mProgressColor = ta.getColor(R.styleable.DownloadButton_progress_color, Color.parseColor("#555555"));
         mProgressTextColor = ta.getColor(R.styleable.DownloadButton_progress_text_color, Color.GRAY);
@@ -95,21 +253,89 @@ public class DownloadButton extends TextView {
         mRadius = ta.getDimensionPixelSize(R.styleable.DownloadButton_progress_radius, 6);
         mDefaultText = ta.getString(R.styleable.DownloadButton_progress_default_text);
         setButtonText(mDefaultText);
+        setProgressUpdateMode(ta.getInt(R.styleable.DownloadButton_progress_update_mode, UPDATE_MODE_IMMEDIATE));
+        mHardwareLayerWhenAnimating = ta.getBoolean(R.styleable.DownloadButton_hardware_layer_when_animating, false);
+        setTextMode(ta.getInt(R.styleable.DownloadButton_progress_text_mode, TEXT_MODE_PERCENT));
+        setMeasureMode(ta.getInt(R.styleable.DownloadButton_measure_mode, MEASURE_MODE_TEXT_VIEW));
         ta.recycle();
 
-        //设置背景画笔
-        mProgressPaint = new Paint();
-        mProgressPaint.setAntiAlias(true);
-        mProgressPaint.setStyle(Paint.Style.FILL);
+        mProgressDrawable.setTextSize(getTextSize());
+        mProgressDrawable.setRadius(mRadius);
+
+        // 各状态用到的颜色和背景只解析一次，切换状态时不再访问资源
+        mTextWaitingColor = ContextCompat.getColor(context, R.color.text_gray_general);
+        mTextErrorColor = ContextCompat.getColor(context, R.color.text_vrgoods_price_red);
+        mTextFinishedColor = ContextCompat.getColor(context, R.color.text_login);
+        mGrayBackground = ContextCompat.getDrawable(context, R.drawable.btn_gray);
+        mDownloadBackground = ContextCompat.getDrawable(context, R.drawable.btn_download_game);
+        mInitialBackground = getBackground();
+        // 文字的双色效果已改用clipRect实现，不再依赖LinearGradient，硬件加速下也能正常绘制，无需软件层
+    }
+
+    /**
+     * 设置动画期间是否临时使用硬件层，动画结束后恢复原来的层类型
+     * 动画包括View动画和{@link #UPDATE_MODE_ANIMATED}模式下的平滑进度动画
+     *
+     * @param enabled
+     */
+    public void setHardwareLayerWhenAnimating(boolean enabled) {
+        mHardwareLayerWhenAnimating = enabled;
+    }
+
+    public boolean isHardwareLayerWhenAnimating() {
+        return mHardwareLayerWhenAnimating;
+    }
+
+    @Override
+    protected void onAnimationStart() {
+        super.onAnimationStart();
+        beginAnimationLayer();
+    }
+
+    @Override
+    protected void onAnimationEnd() {
+        super.onAnimationEnd();
+        endAnimationLayer();
+    }
+
+    /**
+     * 由{@link ProgressAnimationTicker}在开始驱动平滑进度动画时调用
+     */
+    void onProgressAnimationStart() {
+        beginAnimationLayer();
+    }
+
+    /**
+     * 由{@link ProgressAnimationTicker}在平滑进度动画到达目标或被注销时调用
+     */
+    void onProgressAnimationEnd() {
+        endAnimationLayer();
+    }
+
+    int getTickerIndex() {
+        return mTickerIndex;
+    }
+
+    void setTickerIndex(int index) {
+        mTickerIndex = index;
+    }
+
+    private void beginAnimationLayer() {
+        if (mRunningAnimations++ > 0 || !mHardwareLayerWhenAnimating
+                || Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return;
+        }
+        mLayerTypeBeforeAnimation = getLayerType();
+        mAnimationLayerApplied = true;
+        setLayerType(LAYER_TYPE_HARDWARE, null);
+    }
 
-        //设置文字画笔
-        mTextPaint = new Paint();
-        mTextPaint.setAntiAlias(true);
-        mTextPaint.setTextSize(getTextSize());
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-            //解决文字有时候画不出问题
-            setLayerType(LAYER_TYPE_SOFTWARE, mTextPaint);
+    private void endAnimationLayer() {
+        if (mRunningAnimations == 0 || --mRunningAnimations > 0 || !mAnimationLayerApplied) {
+            return;
         }
+        mAnimationLayerApplied = false;
+        setLayerType(mLayerTypeBeforeAnimation, null);
     }
 
     /**
@@ -121,19 +347,137 @@ public class DownloadButton extends TextView {
         mStateChangedListener = stateChangedListener;
     }
 
+    /**
+     * 设置进度更新模式
+     *
+     * @param mode {@link #UPDATE_MODE_IMMEDIATE}、{@link #UPDATE_MODE_FRAME}或{@link #UPDATE_MODE_ANIMATED}
+     */
+    public void setProgressUpdateMode(int mode) {
+        if (mode != UPDATE_MODE_IMMEDIATE && mode != UPDATE_MODE_FRAME && mode != UPDATE_MODE_ANIMATED) {
+            throw new IllegalArgumentException("非法参数：未知的进度更新模式.unknown update mode: " + mode);
+        }
+        mUpdateMode = mode;
+        mAnimatedProgress = mProgress;
+    }
+
+    public int getProgressUpdateMode() {
+        return mUpdateMode;
+    }
+
     /**
      * 设置下载进度
+     * 不加锁，任意线程都可以调用；{@link #UPDATE_MODE_FRAME}、{@link #UPDATE_MODE_ANIMATED}模式下频繁调用也只会在每帧刷新一次
      *
      * @param progress
      */
-    public synchronized void setProgress(int progress) {
+    public void setProgress(int progress) {
         if (progress > mMaxProgress || progress < 0) {
             return;
         }
+        if (WidgetMetrics.ENABLED) {
+            WidgetMetrics.increment(WidgetMetrics.WIDGET_DOWNLOAD_BUTTON, WidgetMetrics.METRIC_INVALIDATES_REQUESTED);
+        }
+        if (mUpdateMode != UPDATE_MODE_IMMEDIATE) {
+            mProgress = progress;
+            scheduleFrameUpdate();
+            return;
+        }
+        int oldProgress = mProgress;
         mProgress = progress;
+        if (mState == DownloadState.STARTED || mState == DownloadState.STOPPED) {
+            invalidateProgressRegion(coverLengthOf(oldProgress), coverLengthOf(progress),
+                    mState == DownloadState.STARTED && percentOf(oldProgress) != percentOf(progress));
+        } else {
+            invalidateDraw();
+        }
+    }
+
+    /**
+     * 绑定分段进度，下载线程直接更新各段计数器即可，按钮每帧最多刷新一次
+     *
+     * @param progress     分段进度，为null时解除绑定
+     * @param showSegments true逐段绘制进度条，false只绘制总进度
+     */
+    public void setSegmentedProgress(SegmentedProgress progress, boolean showSegments) {
+        if (mSegmentedProgress != null) {
+            mSegmentedProgress.setOnSegmentProgressChangedListener(null);
+        }
+        mSegmentedProgress = progress;
+        mShowSegments = progress != null && showSegments;
+        if (progress != null) {
+            progress.setOnSegmentProgressChangedListener(mSegmentListener);
+            mSegmentListener.onSegmentProgressChanged(progress);
+        }
+        invalidateDraw();
+    }
+
+    public SegmentedProgress getSegmentedProgress() {
+        return mSegmentedProgress;
+    }
+
+    /**
+     * 设置下载中显示的文字模式
+     * {@link #TEXT_MODE_SPEED}模式下，绑定了分段进度时按钮自己在主线程采样已下载字节数，
+     * 否则由调用方向{@link #getBandwidthEstimator()}中添加采样；
+     * 下载中并且在窗口中时每500ms刷新一次速度文字，没有新进度时按上次的字节数采样，停滞时速度逐渐下降
+     *
+     * @param mode {@link #TEXT_MODE_PERCENT}或{@link #TEXT_MODE_SPEED}
+     */
+    public void setTextMode(int mode) {
+        if (mode != TEXT_MODE_PERCENT && mode != TEXT_MODE_SPEED) {
+            throw new IllegalArgumentException("非法参数：未知的文字模式.unknown text mode: " + mode);
+        }
+        if (mode != mTextMode) {
+            mTextMode = mode;
+            onLabelsChanged();
+        }
+        if (mode == TEXT_MODE_SPEED && mBandwidthEstimator == null) {
+            mBandwidthEstimator = new BandwidthEstimator();
+        }
+        mSpeedCharCount = 0;
+        updateSpeedRefresh();
+        invalidateDraw();
+    }
+
+    public int getTextMode() {
+        return mTextMode;
+    }
+
+    /**
+     * 设置测量模式
+     * {@link #MEASURE_MODE_LABELS}：宽度取各状态文字、"0%"~"100%"、默认文字（速度模式下还有速度文字）中最宽的一个加左右内边距，
+     * 高度取一行文字加上下内边距，都不小于按屏幕密度换算的最小尺寸；通过setButtonText设置的其他文字不参与计算
+     *
+     * @param mode {@link #MEASURE_MODE_TEXT_VIEW}或{@link #MEASURE_MODE_LABELS}
+     */
+    public void setMeasureMode(int mode) {
+        if (mode != MEASURE_MODE_TEXT_VIEW && mode != MEASURE_MODE_LABELS) {
+            throw new IllegalArgumentException("非法参数：未知的测量模式.unknown measure mode: " + mode);
+        }
+        if (mode != mMeasureMode) {
+            mMeasureMode = mode;
+            requestLayout();
+        }
+    }
+
+    public int getMeasureMode() {
+        return mMeasureMode;
+    }
+
+    /**
+     * 替换速度估算器，例如多个控件共用同一个下载任务的估算结果
+     *
+     * @param estimator
+     */
+    public void setBandwidthEstimator(BandwidthEstimator estimator) {
+        mBandwidthEstimator = estimator;
         invalidateDraw();
     }
 
+    public BandwidthEstimator getBandwidthEstimator() {
+        return mBandwidthEstimator;
+    }
+
     /**
      * 获取当前进度
      *
@@ -148,7 +492,7 @@ public class DownloadButton extends TextView {
      *
      * @param s
      */
-    public synchronized void setButtonText(String s) {
+    public void setButtonText(String s) {
         mProgressText = s;
         invalidateDraw();
     }
@@ -158,7 +502,7 @@ public class DownloadButton extends TextView {
      *
      * @param stringResId
      */
-    public synchronized void setButtonText(int stringResId) {
+    public void setButtonText(int stringResId) {
         setButtonText(getResources().getString(stringResId));
     }
 
@@ -182,16 +526,175 @@ public class DownloadButton extends TextView {
     }
 
     /**
-     * 设置当前下载状态
+     * 切换下载状态，任意线程可调用
+     * 状态用CAS更新，不加锁；不合法的切换（见{@link #isTransitionAllowed(DownloadState, DownloadState)}）会被拒绝
+     * 监听回调和按钮外观的修改合并成一次提交到主线程执行，在主线程调用时立即执行
+     *
+     * @param state
+     * @return 是否切换成功，切换到当前状态也返回true
+     */
+    public boolean setDownloadState(DownloadState state) {
+        DownloadState current;
+        do {
+            current = mState;
+            if (current == state) {
+                return true;
+            }
+            if (!isTransitionAllowed(current, state)) {
+                Log.w(TAG, "illegal state transition: " + current + " -> " + state);
+                return false;
+            }
+        } while (!STATE_UPDATER.compareAndSet(this, current, state));
+        mPendingStates.offer(state);
+        dispatchStateChanges();
+        return true;
+    }
+
+    /**
+     * 按外部下载任务的状态切换，例如下载引擎或下载日志中的状态，任意线程可调用
+     * 只有重新下载（已完成或失败后开始下载）会先重置再切换，其他不合法的切换和{@link #setDownloadState(DownloadState)}一样被拒绝
      *
      * @param state
+     * @return 是否切换成功
+     */
+    public boolean syncDownloadState(DownloadState state) {
+        if (setDownloadState(state)) {
+            return true;
+        }
+        DownloadState current = mState;
+        if (state == DownloadState.STARTED
+                && (current == DownloadState.FINISHED || current == DownloadState.ERROR)) {
+            resetDownloadState();
+            return setDownloadState(state);
+        }
+        return false;
+    }
+
+    /**
+     * 重置为初始的暂停状态，进度清零，可以从任意状态（包括已完成）调用
+     */
+    public void resetDownloadState() {
+        DownloadState previous = STATE_UPDATER.getAndSet(this, DownloadState.STOPPED);
+        setProgress(0);
+        if (previous != DownloadState.STOPPED) {
+            mPendingStates.offer(DownloadState.STOPPED);
+        }
+        dispatchStateChanges();
+    }
+
+    public DownloadState getDownloadState() {
+        return mState;
+    }
+
+    /**
+     * 恢复到刚创建时的样子，供复用：暂停状态、进度清零、默认文字和背景，解除监听和分段进度绑定
+     * 还没分发的状态变化直接丢弃，不会回调。只能在主线程调用
+     */
+    public void resetForReuse() {
+        mStateChangedListener = null;
+        MAIN_HANDLER.removeCallbacks(mStateDispatchRunnable);
+        mStateDispatchScheduled.set(false);
+        mPendingStates.clear();
+        mState = DownloadState.STOPPED;
+        mAppliedState = DownloadState.STOPPED;
+
+        setSegmentedProgress(null, false);
+        if (mBandwidthEstimator != null) {
+            mBandwidthEstimator.reset();
+        }
+        mSpeedCharCount = 0;
+        updateSpeedRefresh();
+        ProgressAnimationTicker.getInstance().unregister(this);
+        mProgress = 0;
+        mAnimatedProgress = 0;
+        mLastAnimationFrameTime = 0;
+
+        setBackgroundCompat(mInitialBackground);
+        setButtonText(mDefaultText);
+    }
+
+    /**
+     * 状态切换表：已完成只能通过{@link #resetDownloadState()}离开，失败后不能直接变成已完成
+     *
+     * @param from
+     * @param to
+     * @return
+     */
+    public static boolean isTransitionAllowed(DownloadState from, DownloadState to) {
+        return from == to || TRANSITIONS[from.ordinal()][to.ordinal()];
+    }
+
+    private static boolean[][] buildTransitions() {
+        int count = DownloadState.values().length;
+        boolean[][] table = new boolean[count][count];
+        allow(table, DownloadState.STOPPED,
+                DownloadState.WAITING, DownloadState.STARTED, DownloadState.ERROR, DownloadState.FINISHED);
+        allow(table, DownloadState.WAITING,
+                DownloadState.STOPPED, DownloadState.STARTED, DownloadState.ERROR, DownloadState.FINISHED);
+        allow(table, DownloadState.STARTED,
+                DownloadState.STOPPED, DownloadState.WAITING, DownloadState.ERROR, DownloadState.FINISHED);
+        allow(table, DownloadState.ERROR,
+                DownloadState.STOPPED, DownloadState.WAITING, DownloadState.STARTED);
+        return table;
+    }
+
+    private static void allow(boolean[][] table, DownloadState from, DownloadState... to) {
+        for (DownloadState state : to) {
+            table[from.ordinal()][state.ordinal()] = true;
+        }
+    }
+
+    /**
+     * 在主线程执行已排队的状态变化，其他线程只提交一次，后续变化在同一次执行里处理
      */
-    public synchronized void setDownloadState(DownloadState state) {
-        if (mStateChangedListener != null && state != mState) {
-            mStateChangedListener.onStateChanged(state);
+    private void dispatchStateChanges() {
+        if (WidgetMetrics.ENABLED) {
+            mStateDispatchTime = System.nanoTime();
+        }
+        if (isOnMainThread()) {
+            applyStateChanges();
+        } else if (mStateDispatchScheduled.compareAndSet(false, true)) {
+            MAIN_HANDLER.post(mStateDispatchRunnable);
+        }
+    }
+
+    private void applyStateChanges() {
+        mStateDispatchScheduled.set(false);
+        DownloadState state;
+        while ((state = mPendingStates.poll()) != null) {
+            if (mStateChangedListener != null) {
+                mStateChangedListener.onStateChanged(state);
+                if (WidgetMetrics.ENABLED) {
+                    WidgetMetrics.recordTime(WidgetMetrics.WIDGET_DOWNLOAD_BUTTON, WidgetMetrics.METRIC_LISTENER_DISPATCHES,
+                            WidgetMetrics.METRIC_LISTENER_LATENCY_NS, System.nanoTime() - mStateDispatchTime);
+                }
+            }
+        }
+        // 外观只按最终状态设置一次
+        state = mState;
+        if (state == mAppliedState) {
+            return;
         }
+        mAppliedState = state;
+        updateSpeedRefresh();
+        applyStateAppearance(state);
+    }
+
+    /**
+     * 列表复用时直接显示某个状态：不检查状态切换表、不回调监听，外观总是按这个状态重新设置，
+     * 同一个状态不管按钮之前显示的是什么都显示得一样。只能在主线程调用
+     *
+     * @param state
+     */
+    public void bindDownloadState(DownloadState state) {
         mState = state;
-        switch (mState) {
+        mAppliedState = state;
+        updateSpeedRefresh();
+        applyStateAppearance(state);
+    }
+
+    private void applyStateAppearance(DownloadState state) {
+        switch (state) {
             case WAITING:
                 downloadWaiting();
                 break;
@@ -201,7 +704,6 @@ public class DownloadButton extends TextView {
                 break;
 
             case ERROR:
-                setProgress(0);
                 downloadFailure();
                 break;
 
@@ -212,49 +714,49 @@ public class DownloadButton extends TextView {
             case FINISHED:
                 downloadFinished();
                 break;
-
-            default:
-                setProgress(0);
-                setButtonText(mDefaultText);
-                break;
         }
     }
 
-    public DownloadState getDownloadState() {
-        return mState;
-    }
-
     private void downloadWaiting() {
         setProgress(0);
-        this.setBackgroundResource(R.drawable.btn_gray);
-        mTextWaitingColor = ContextCompat.getColor(getContext(), R.color.text_gray_general);
-        setButtonText("等待中");
+        setBackgroundCompat(mGrayBackground);
+        setButtonText(TEXT_WAITING);
     }
 
     private void downloading() {
-        this.setBackgroundResource(R.drawable.btn_download_game);
+        setBackgroundCompat(mDownloadBackground);
         invalidateDraw();
     }
 
     private void downloadPause() {
-        this.setBackgroundResource(R.drawable.btn_download_game);
-        setButtonText("暂停中");
+        setBackgroundCompat(mDownloadBackground);
+        setButtonText(TEXT_PAUSED);
     }
 
     private void downloadFailure() {
         setProgress(0);
-        this.setBackgroundResource(R.drawable.btn_gray);
-        mTextErrorColor = ContextCompat.getColor(getContext(), R.color.text_vrgoods_price_red);
-        setButtonText("点击重试");
+        setBackgroundCompat(mGrayBackground);
+        setButtonText(TEXT_RETRY);
     }
 
     private void downloadFinished() {
-        setButtonText("点击打开");
-        this.setBackgroundResource(R.drawable.btn_download_game);
-        mTextFinishedColor = ContextCompat.getColor(getContext(), R.color.text_login);
+        setButtonText(TEXT_OPEN);
+        setBackgroundCompat(mDownloadBackground);
         setProgress(0);
     }
 
+    @SuppressWarnings("deprecation")
+    private void setBackgroundCompat(Drawable background) {
+        if (getBackground() == background) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setBackground(background);
+        } else {
+            setBackgroundDrawable(background);
+        }
+    }
+
     @Override
     public void setTextColor(int color) {
         super.setTextColor(color);
@@ -266,8 +768,8 @@ public class DownloadButton extends TextView {
      *
      * @param max
      */
-    public synchronized void setMaxProgress(int max) {
-        if (mMaxProgress == 0) {
+    public void setMaxProgress(int max) {
+        if (max <= 0) {
             throw new IllegalArgumentException("非法参数：最大进度必须大于0.max must be greater than 0.");
         }
         mMaxProgress = max;
@@ -277,115 +779,187 @@ public class DownloadButton extends TextView {
         return mMaxProgress;
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateSpeedRefresh();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        updateSpeedRefresh();
+        if (mFrameScheduled.getAndSet(false)) {
+            if (mChoreographer != null) {
+                mChoreographer.removeFrameCallback(mFrameCallback);
+            } else {
+                MAIN_HANDLER.removeCallbacks(mFrameRunnable);
+            }
+        }
+        if (mUpdateMode == UPDATE_MODE_ANIMATED) {
+            // 不在窗口上时没有必要继续动画，重新显示时直接显示目标进度
+            ProgressAnimationTicker.getInstance().unregister(this);
+            mAnimatedProgress = mProgress;
+            mLastAnimationFrameTime = 0;
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mProgressDrawable.setBounds(0, 0, w, h);
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
+        long start = WidgetMetrics.ENABLED ? System.nanoTime() : 0;
         super.onDraw(canvas);
-        drawProgress(canvas);
-        drawProgressText(canvas);
+        drawDownloadContent(canvas);
+        if (WidgetMetrics.ENABLED) {
+            WidgetMetrics.recordTime(WidgetMetrics.WIDGET_DOWNLOAD_BUTTON, WidgetMetrics.METRIC_DRAWS,
+                    WidgetMetrics.METRIC_DRAW_TIME_NS, System.nanoTime() - start);
+        }
     }
 
     /**
-     * 绘制按钮上的文字：进度/提示语
+     * 绘制进度条和文字，稳定状态下不产生任何对象分配
      *
      * @param canvas
      */
-    private void drawProgressText(Canvas canvas) {
+    void drawDownloadContent(Canvas canvas) {
+        syncProgressDrawable();
+        mProgressDrawable.draw(canvas);
+    }
 
-        int p = (int) (((float) mProgress / (float) mMaxProgress) * 100);
+    /**
+     * 清空所有DownloadButton共享的静态状态快照，可在onTrimMemory中调用
+     */
+    public static void clearSnapshotCache() {
+        DownloadSnapshotCache.getInstance().evictAll();
+    }
+
+    /**
+     * 把按钮当前的状态同步给负责绘制的Drawable，值没变时这些调用都是空操作
+     */
+    private void syncProgressDrawable() {
+        final DownloadProgressDrawable drawable = mProgressDrawable;
+        if (mMaxProgress > 0) {
+            drawable.setMaxProgress(mMaxProgress);
+        }
+        drawable.setProgress(getDisplayProgress());
+        drawable.setTextSize(getTextSize());
+        drawable.setTypeface(getTypeface());
+        drawable.setSegments(mShowSegments ? mSegmentedProgress : null);
+        if (mTextMode == TEXT_MODE_SPEED) {
+            // 绘制时只使用已经格式化好的文字，采样在进度帧回调和低频刷新中进行
+            drawable.setProgressChars(mSpeedCharCount > 0 ? mSpeedChars : null, mSpeedCharCount);
+        } else {
+            drawable.setProgressChars(null, 0);
+        }
+        drawable.setDownloadState(mState);
+        drawable.setText(mProgressText);
+        drawable.setProgressColor(mProgressColor);
+        drawable.setProgressBackgroundColor(mBackgroundColor);
+        drawable.setTextColor(mProgressTextColor);
+        drawable.setTextCoverColor(mTextCoverColor);
+        drawable.setErrorTextColor(mTextErrorColor);
+        drawable.setWaitingTextColor(mTextWaitingColor);
+        drawable.setFinishedTextColor(mTextFinishedColor);
+    }
 
-        String mCurrentText = mProgressText;
-        if (mState == DownloadState.STARTED) {
-            mCurrentText = p + "%";
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        long start = WidgetMetrics.ENABLED ? System.nanoTime() : 0;
+        if (mMeasureMode == MEASURE_MODE_LABELS) {
+            measureLabels(widthMeasureSpec, heightMeasureSpec);
+        } else {
+            measureTextView(widthMeasureSpec, heightMeasureSpec);
         }
+        if (WidgetMetrics.ENABLED) {
+            WidgetMetrics.recordTime(WidgetMetrics.WIDGET_DOWNLOAD_BUTTON, WidgetMetrics.METRIC_MEASURES,
+                    WidgetMetrics.METRIC_MEASURE_TIME_NS, System.nanoTime() - start);
+        }
+    }
 
-        final float y = canvas.getHeight() / 2 - (mTextPaint.descent() / 2 + mTextPaint.ascent() / 2);
-        final float textWidth = mTextPaint.measureText(mCurrentText.toString());
-        switch (mState) {
-            case STARTED:
-            case STOPPED:
+    /**
+     * 宽高都确定时直接使用，否则使用缓存的内容尺寸，不调用TextView的onMeasure
+     */
+    private void measureLabels(int widthMeasureSpec, int heightMeasureSpec) {
+        if (MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.EXACTLY
+                || MeasureSpec.getMode(heightMeasureSpec) != MeasureSpec.EXACTLY) {
+            ensureIntrinsicSize();
+        }
+        setMeasuredDimension(
+                resolveSizeAndState(Math.max(mIntrinsicWidth, getSuggestedMinimumWidth()), widthMeasureSpec, 0),
+                resolveSizeAndState(Math.max(mIntrinsicHeight, getSuggestedMinimumHeight()), heightMeasureSpec, 0));
+    }
 
-                //进度条压过距离
-                float coverlength = getMeasuredWidth() * mProgressPercent;
-                //开始渐变指示器
-                float indicator1 = getMeasuredWidth() / 2 - textWidth / 2;
-                //结束渐变指示器
-                float indicator2 = getMeasuredWidth() / 2 + textWidth / 2;
-                //文字变色部分的距离
-                float coverTextLength = textWidth / 2 - getMeasuredWidth() / 2 + coverlength;
-                float textProgress = coverTextLength / textWidth;
-                if (coverlength <= indicator1) {
-                    mTextPaint.setShader(null);
-                    mTextPaint.setColor(mProgressTextColor);
-                } else if (indicator1 < coverlength && coverlength <= indicator2) {
-                    mProgressTextGradient = new LinearGradient((getMeasuredWidth() - textWidth) / 2, 0, (getMeasuredWidth() + textWidth) / 2, 0,
-                            new int[]{mTextCoverColor, mProgressTextColor},
-                            new float[]{textProgress, textProgress + 0.001f},
-                            Shader.TileMode.CLAMP);
-                    mTextPaint.setColor(mProgressTextColor);
-                    mTextPaint.setShader(mProgressTextGradient);
-                } else {
-                    mTextPaint.setShader(null);
-                    mTextPaint.setColor(mTextCoverColor);
-                }
-                canvas.drawText(mCurrentText.toString(), (getMeasuredWidth() - textWidth) / 2, y, mTextPaint);
-                break;
+    private void ensureIntrinsicSize() {
+        if (mIntrinsicWidth >= 0) {
+            return;
+        }
+        TextPaint paint = getPaint();
+        LabelMetricsCache.Metrics metrics = LabelMetricsCache.get(paint);
+        float textWidth = metrics.maxLabelWidth();
+        if (mDefaultText != null) {
+            textWidth = Math.max(textWidth, paint.measureText(mDefaultText));
+        }
+        if (mTextMode == TEXT_MODE_SPEED) {
+            textWidth = Math.max(textWidth, paint.measureText(SPEED_TEXT_SAMPLE));
+        }
+        float density = getResources().getDisplayMetrics().density;
+        mIntrinsicWidth = Math.max((int) (MIN_LABELS_WIDTH_DP * density + 0.5f),
+                (int) Math.ceil(textWidth) + getPaddingLeft() + getPaddingRight());
+        mIntrinsicHeight = Math.max((int) (MIN_LABELS_HEIGHT_DP * density + 0.5f),
+                (int) Math.ceil(metrics.lineHeight()) + getPaddingTop() + getPaddingBottom());
+    }
 
-            case ERROR:
-                mTextPaint.setShader(null);
-                mTextPaint.setColor(mTextErrorColor);
-                canvas.drawText(mCurrentText.toString(), (getMeasuredWidth() - textWidth) / 2, y, mTextPaint);
-                break;
-            case WAITING:
-                mTextPaint.setShader(null);
-                mTextPaint.setColor(mTextWaitingColor);
-                canvas.drawText(mCurrentText.toString(), (getMeasuredWidth() - textWidth) / 2, y, mTextPaint);
-                break;
-            case FINISHED:
-                mTextPaint.setShader(null);
-                mTextPaint.setColor(mTextFinishedColor);
-                canvas.drawText(mCurrentText.toString(), (getMeasuredWidth() - textWidth) / 2, y, mTextPaint);
-                break;
-            default:
-                mTextPaint.setShader(null);
-                mTextPaint.setColor(mProgressTextColor);
-                canvas.drawText(mCurrentText.toString(), (getMeasuredWidth() - textWidth) / 2, y, mTextPaint);
-                break;
+    /**
+     * 字号、字体、文字或内边距变化后重新计算内容尺寸
+     * TextView还没有排版过文字时不会自己requestLayout，这里补上
+     */
+    private void onLabelsChanged() {
+        mIntrinsicWidth = -1;
+        if (mMeasureMode == MEASURE_MODE_LABELS) {
+            requestLayout();
         }
     }
 
-    private void drawProgress(Canvas canvas) {
-        switch (mState) {
-            case STARTED:
-            case STOPPED:
-                mProgressPaint.setStyle(Paint.Style.FILL);
-                mProgressPaint.setColor(mProgressColor);
+    @Override
+    public void setTextSize(int unit, float size) {
+        float oldSize = getTextSize();
+        super.setTextSize(unit, size);
+        if (getTextSize() != oldSize) {
+            onLabelsChanged();
+        }
+    }
 
-                mProgressRectf = new RectF();
-                if (mRadius == 0) {
-                    mRadius = getMeasuredHeight() / 2;
-                }
-                mProgressRectf.left = 2;
-                mProgressRectf.top = 2;
-                mProgressRectf.right = getMeasuredWidth() - 2;
-                mProgressRectf.bottom = getMeasuredHeight() - 2;
-                mProgressPercent = mProgress / (mMaxProgress + 0f);
-                mProgressBgGradient = new LinearGradient(0, 0, getMeasuredWidth(), 0,
-                        new int[]{mProgressColor, mBackgroundColor},
-                        new float[]{mProgressPercent, mProgressPercent + 0.001f},
-                        Shader.TileMode.CLAMP
-                );
-                mProgressPaint.setColor(mProgressColor);
-                mProgressPaint.setShader(mProgressBgGradient);
-                canvas.drawRoundRect(mProgressRectf, mRadius, mRadius, mProgressPaint);
-                break;
-            default:
-                break;
+    @Override
+    public void setTypeface(Typeface tf) {
+        Typeface oldTypeface = getTypeface();
+        super.setTypeface(tf);
+        if (tf != oldTypeface) {
+            onLabelsChanged();
         }
+    }
 
+    @Override
+    public void setPadding(int left, int top, int right, int bottom) {
+        if (left != getPaddingLeft() || top != getPaddingTop()
+                || right != getPaddingRight() || bottom != getPaddingBottom()) {
+            mIntrinsicWidth = -1;
+        }
+        super.setPadding(left, top, right, bottom);
     }
 
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
     @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    public void setPaddingRelative(int start, int top, int end, int bottom) {
+        mIntrinsicWidth = -1;
+        super.setPaddingRelative(start, top, end, bottom);
+    }
+
+    private void measureTextView(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
         int widthSpecMode = MeasureSpec.getMode(widthMeasureSpec);
         int widthSpecSize = MeasureSpec.getSize(widthMeasureSpec);
@@ -401,22 +975,247 @@ public class DownloadButton extends TextView {
         } else if (heightSpecMode == MeasureSpec.AT_MOST) {
             setMeasuredDimension(widthSpecSize, 100);
         }
+    }
+
+    /**
+     * 预约下一帧刷新，同一帧内的多次调用只会预约一次
+     */
+    private void scheduleFrameUpdate() {
+        if (!mFrameScheduled.compareAndSet(false, true)) {
+            if (WidgetMetrics.ENABLED) {
+                WidgetMetrics.increment(WidgetMetrics.WIDGET_DOWNLOAD_BUTTON, WidgetMetrics.METRIC_UPDATES_COALESCED);
+            }
+            return;
+        }
+        // 不用View.post：未添加到窗口的控件在API24以下会把任务放进当前线程的队列，在工作线程调用时永远不会执行
+        boolean posted = true;
+        if (mChoreographer != null) {
+            mChoreographer.postFrameCallback(mFrameCallback);
+        } else {
+            posted = MAIN_HANDLER.post(mFrameRunnable);
+        }
+        if (!posted) {
+            // 主线程已经退出，不能让之后的更新都被当作已合并
+            mFrameScheduled.set(false);
+        }
+    }
+
+    boolean isFrameScheduled() {
+        return mFrameScheduled.get();
+    }
+
+    /**
+     * 每帧最多执行一次，可见的进度没有变化时不刷新
+     */
+    private void onFrameUpdate() {
+        mFrameScheduled.set(false);
+        if (mTextMode == TEXT_MODE_SPEED && mState == DownloadState.STARTED
+                && sampleSpeed(false) && formatSpeedText()) {
+            // 速度文字宽度不固定，直接整体刷新
+            invalidate();
+            countInvalidate();
+        }
+        if (mUpdateMode == UPDATE_MODE_ANIMATED) {
+            ProgressAnimationTicker.getInstance().register(this);
+            return;
+        }
+        invalidateForProgress(mProgress);
+    }
+
+    /**
+     * 由{@link ProgressAnimationTicker}每帧调用一次，让显示的进度向目标进度靠近
+     *
+     * @param frameTimeNanos 当前帧时间
+     * @return 动画是否还需要继续
+     */
+    boolean stepProgressAnimation(long frameTimeNanos) {
+        final float target = mProgress;
+        if (mUpdateMode != UPDATE_MODE_ANIMATED
+                || (mState != DownloadState.STARTED && mState != DownloadState.STOPPED)) {
+            // 不显示进度的状态下没有必要动画
+            mAnimatedProgress = target;
+            mLastAnimationFrameTime = 0;
+            return false;
+        }
+        long interval = frameTimeNanos - mLastAnimationFrameTime;
+        if (mLastAnimationFrameTime == 0 || interval <= 0) {
+            interval = DEFAULT_FRAME_INTERVAL;
+        }
+        mLastAnimationFrameTime = frameTimeNanos;
+
+        float fraction = Math.min(1f, (float) interval / ANIMATION_TIME_CONSTANT);
+        float animated = mAnimatedProgress + (target - mAnimatedProgress) * fraction;
+        // 差距小于千分之一或一个进度单位时直接到达目标
+        if (Math.abs(target - animated) <= Math.max(1f, mMaxProgress / 1000f)) {
+            animated = target;
+        }
+        mAnimatedProgress = animated;
+        invalidateForProgress((int) animated);
+
+        if (animated == target) {
+            mLastAnimationFrameTime = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private boolean shouldRefreshSpeed() {
+        return mTextMode == TEXT_MODE_SPEED && mAppliedState == DownloadState.STARTED && getWindowToken() != null;
+    }
+
+    /**
+     * 按当前的文字模式、状态和是否在窗口中，开始或停止速度文字的低频刷新，只在主线程调用
+     */
+    private void updateSpeedRefresh() {
+        if (shouldRefreshSpeed()) {
+            if (!mSpeedRefreshScheduled) {
+                mSpeedRefreshScheduled = true;
+                MAIN_HANDLER.post(mSpeedRefreshRunnable);
+            }
+        } else if (mSpeedRefreshScheduled) {
+            mSpeedRefreshScheduled = false;
+            MAIN_HANDLER.removeCallbacks(mSpeedRefreshRunnable);
+        }
+    }
+
+    /**
+     * 绑定了分段进度时采样已下载字节数，只在主线程调用，不产生对象分配
+     *
+     * @param idle 没有分段进度时是否按估算器上次的字节数采样
+     * @return 是否有速度估算器
+     */
+    private boolean sampleSpeed(boolean idle) {
+        final BandwidthEstimator estimator = mBandwidthEstimator;
+        if (estimator == null) {
+            return false;
+        }
+        final SegmentedProgress progress = mSegmentedProgress;
+        if (progress != null) {
+            estimator.setTotalBytes(progress.getLength());
+            estimator.addSample(progress.getProgress(), System.nanoTime());
+        } else if (idle) {
+            estimator.addIdleSample(System.nanoTime());
+        }
+        return true;
+    }
+
+    /**
+     * 按估算器当前的结果重新格式化速度文字，只在主线程调用，不产生对象分配
+     *
+     * @return 显示的文字是否变化
+     */
+    private boolean formatSpeedText() {
+        final BandwidthEstimator estimator = mBandwidthEstimator;
+        int count = SpeedTextFormatter.format(estimator.getBytesPerSecond(), estimator.getEtaSeconds(), mSpeedScratch);
+        if (count == mSpeedCharCount && equals(mSpeedScratch, mSpeedChars, count)) {
+            return false;
+        }
+        System.arraycopy(mSpeedScratch, 0, mSpeedChars, 0, count);
+        mSpeedCharCount = count;
+        return true;
+    }
+
+    private static boolean equals(char[] a, char[] b, int count) {
+        for (int i = 0; i < count; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 绘制时使用的进度，UPDATE_MODE_ANIMATED模式下是动画中的进度
+     */
+    private int getDisplayProgress() {
+        return mUpdateMode == UPDATE_MODE_ANIMATED ? (int) mAnimatedProgress : mProgress;
+    }
+
+    /**
+     * 可见的进度没有变化时不刷新，否则只刷新变化的区域
+     *
+     * @param progress 要显示的进度
+     */
+    private void invalidateForProgress(int progress) {
+        if (mState != DownloadState.STARTED && mState != DownloadState.STOPPED) {
+            return;
+        }
+        int percent = percentOf(progress);
+        int coverLength = coverLengthOf(progress);
+        int drawnPercent = mProgressDrawable.getDrawnPercent();
+        int drawnCoverLength = mProgressDrawable.getDrawnCoverLength();
+        if (mShowSegments) {
+            // 各段进度独立变化，无法只刷新一条边缘
+            invalidate();
+            countInvalidate();
+            return;
+        }
+        if (percent == drawnPercent && coverLength == drawnCoverLength) {
+            return;
+        }
+        if (drawnCoverLength < 0) {
+            invalidate();
+            countInvalidate();
+            return;
+        }
+        invalidateProgressRegion(drawnCoverLength, coverLength,
+                mState == DownloadState.STARTED && percent != drawnPercent);
+    }
+
+    private int percentOf(int progress) {
+        return (int) (((float) progress / (float) mMaxProgress) * 100);
+    }
+
+    private int coverLengthOf(int progress) {
+        return (int) (getMeasuredWidth() * (progress / (mMaxProgress + 0f)));
+    }
 
+    /**
+     * 只刷新新旧进度边缘之间的区域，进度文字变化时再加上文字所在区域
+     *
+     * @param oldCoverLength 旧的进度条覆盖宽度:px
+     * @param newCoverLength 新的进度条覆盖宽度:px
+     * @param textChanged    进度文字是否变化
+     */
+    private void invalidateProgressRegion(int oldCoverLength, int newCoverLength, boolean textChanged) {
+        final int width = getMeasuredWidth();
+        int left = Math.min(oldCoverLength, newCoverLength) - DIRTY_SLOP;
+        int right = Math.max(oldCoverLength, newCoverLength) + DIRTY_SLOP;
+        if (textChanged) {
+            int halfTextWidth = (int) Math.ceil(mProgressDrawable.getMaxPercentTextWidth() / 2) + DIRTY_SLOP;
+            left = Math.min(left, width / 2 - halfTextWidth);
+            right = Math.max(right, width / 2 + halfTextWidth);
+        }
+        left = Math.max(0, left);
+        right = Math.min(width, right);
+        if (isOnMainThread()) {
+            invalidate(left, 0, right, getMeasuredHeight());
+        } else {
+            postInvalidate(left, 0, right, getMeasuredHeight());
+        }
+        countInvalidate();
     }
 
-    private synchronized boolean isOnMainThread() {
+    private boolean isOnMainThread() {
         return Thread.currentThread() == Looper.getMainLooper().getThread();
     }
 
     /**
      * 刷新view视图
      */
-    private synchronized void invalidateDraw() {
+    private void invalidateDraw() {
         if (isOnMainThread()) {
             invalidate();
         } else {
             postInvalidate();
         }
+        countInvalidate();
+    }
+
+    private static void countInvalidate() {
+        if (WidgetMetrics.ENABLED) {
+            WidgetMetrics.increment(WidgetMetrics.WIDGET_DOWNLOAD_BUTTON, WidgetMetrics.METRIC_INVALIDATES_PERFORMED);
+        }
     }
 
     public interface OnDownloadStateChangedListener {
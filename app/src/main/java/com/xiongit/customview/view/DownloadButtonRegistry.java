@@ -0,0 +1,267 @@
+package com.xiongit.customview.view;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.Choreographer;
+import android.view.View;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 列表页中大量DownloadButton的批量更新入口
+ * 下载服务在任意线程按id发布(状态, 进度)，同一id在一帧内的多次更新只保留最新值
+ * 每帧在主线程上一次性应用到已绑定并且仍在窗口中的按钮；已绑定但不在窗口中的按钮只记下每个id的最新值，
+ * 绑定到窗口中的按钮或按钮进入窗口时再应用；没有绑定的id（包括按钮已被复用给其他id）的更新直接丢弃
+ * 主线程的工作量只和可见按钮数量有关，与更新次数无关
+ * 需要在主线程创建，绑定和解绑也只能在主线程调用
+ */
+public final class DownloadButtonRegistry {
+
+    /**
+     * 发布时表示进度不变
+     */
+    public static final int NO_PROGRESS = -1;
+
+    /**
+     * API16以下没有Choreographer时的帧间隔:ms
+     */
+    private static final long FALLBACK_FRAME_DELAY = 16;
+
+    private static final DownloadButton.DownloadState[] STATES = DownloadButton.DownloadState.values();
+
+    private final SparseArray<DownloadButton> mButtons = new SparseArray<DownloadButton>();// id -> 当前绑定的按钮
+    // 按钮不在窗口中时暂存的最新值，只在主线程访问
+    private final SparseIntArray mDeferredStates = new SparseIntArray();// id -> 状态的ordinal
+    private final SparseIntArray mDeferredProgress = new SparseIntArray();// id -> 进度
+    private final View.OnAttachStateChangeListener mAttachListener = new View.OnAttachStateChangeListener() {
+        @Override
+        public void onViewAttachedToWindow(View v) {
+            int index = mButtons.indexOfValue((DownloadButton) v);
+            if (index >= 0) {
+                applyDeferred(mButtons.keyAt(index), (DownloadButton) v);
+            }
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+        }
+    };
+
+    private final Object mLock = new Object();// 只保护待应用的更新
+    private SparseArray<DownloadButton.DownloadState> mPendingStates = new SparseArray<DownloadButton.DownloadState>();
+    private SparseIntArray mPendingProgress = new SparseIntArray();
+    // 主线程应用时与上面两个交换，避免每帧分配
+    private SparseArray<DownloadButton.DownloadState> mApplyingStates = new SparseArray<DownloadButton.DownloadState>();
+    private SparseIntArray mApplyingProgress = new SparseIntArray();
+
+    private final AtomicBoolean mFrameScheduled = new AtomicBoolean(false);
+    private Choreographer mChoreographer;// API16及以上可用
+    private Choreographer.FrameCallback mFrameCallback;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyPending();
+        }
+    };
+
+    private int mAppliedCount;// 已应用到按钮上的更新数
+    private int mDroppedCount;// 因id没有绑定按钮而丢弃的更新数
+
+    public DownloadButtonRegistry() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mChoreographer = Choreographer.getInstance();
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    applyPending();
+                }
+            };
+        }
+    }
+
+    /**
+     * 把按钮绑定到id，列表复用按钮时直接用新id再绑定一次，旧id的绑定会被解除
+     * 按钮在窗口中时立即应用这个id暂存的最新值，否则等按钮进入窗口时再应用
+     *
+     * @param id
+     * @param button
+     */
+    public void bind(int id, DownloadButton button) {
+        unbind(button);
+        DownloadButton previous = mButtons.get(id);
+        if (previous != null) {
+            previous.removeOnAttachStateChangeListener(mAttachListener);
+        }
+        mButtons.put(id, button);
+        button.addOnAttachStateChangeListener(mAttachListener);
+        if (button.getWindowToken() != null) {
+            applyDeferred(id, button);
+        }
+    }
+
+    /**
+     * 解除按钮的绑定，暂存的值一起丢弃，之后发给它原来id的更新都会被丢弃
+     *
+     * @param button
+     */
+    public void unbind(DownloadButton button) {
+        int index = mButtons.indexOfValue(button);
+        if (index >= 0) {
+            int id = mButtons.keyAt(index);
+            mButtons.removeAt(index);
+            mDeferredStates.delete(id);
+            mDeferredProgress.delete(id);
+            button.removeOnAttachStateChangeListener(mAttachListener);
+        }
+    }
+
+    /**
+     * 当前绑定的按钮数量
+     *
+     * @return
+     */
+    public int getBoundCount() {
+        return mButtons.size();
+    }
+
+    public int getAppliedCount() {
+        return mAppliedCount;
+    }
+
+    public int getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * 发布一个下载项的更新，任意线程可调用
+     *
+     * @param id
+     * @param state    新状态，null表示不变
+     * @param progress 新进度，{@link #NO_PROGRESS}表示不变
+     */
+    public void publish(int id, DownloadButton.DownloadState state, int progress) {
+        synchronized (mLock) {
+            putPending(id, state, progress);
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * 一次发布一批更新，只加一次锁、预约一次帧，任意线程可调用
+     *
+     * @param ids
+     * @param states     可以为null，表示这一批只更新进度；元素为null表示该项状态不变
+     * @param progresses 可以为null，表示这一批只更新状态；元素为{@link #NO_PROGRESS}表示该项进度不变
+     * @param count      本批的更新数量
+     */
+    public void publish(int[] ids, DownloadButton.DownloadState[] states, int[] progresses, int count) {
+        if (count < 0 || count > ids.length
+                || (states != null && count > states.length)
+                || (progresses != null && count > progresses.length)) {
+            throw new IllegalArgumentException("非法参数：批量更新数量超出数组长度.count out of range: " + count);
+        }
+        synchronized (mLock) {
+            for (int i = 0; i < count; i++) {
+                putPending(ids[i], states != null ? states[i] : null, progresses != null ? progresses[i] : NO_PROGRESS);
+            }
+        }
+        scheduleFrame();
+    }
+
+    private void putPending(int id, DownloadButton.DownloadState state, int progress) {
+        if (state != null) {
+            mPendingStates.put(id, state);
+        }
+        if (progress != NO_PROGRESS) {
+            mPendingProgress.put(id, progress);
+        }
+    }
+
+    private void scheduleFrame() {
+        if (!mFrameScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        if (mChoreographer != null) {
+            mChoreographer.postFrameCallback(mFrameCallback);
+        } else {
+            mHandler.postDelayed(mFrameRunnable, FALLBACK_FRAME_DELAY);
+        }
+    }
+
+    private void applyPending() {
+        SparseArray<DownloadButton.DownloadState> states;
+        SparseIntArray progresses;
+        synchronized (mLock) {
+            mFrameScheduled.set(false);
+            states = mPendingStates;
+            progresses = mPendingProgress;
+            mPendingStates = mApplyingStates;
+            mPendingProgress = mApplyingProgress;
+            mApplyingStates = states;
+            mApplyingProgress = progresses;
+        }
+
+        // 先切换状态，等待中、失败等状态会清零进度，之后再设置同一帧里的最新进度
+        for (int i = 0, size = states.size(); i < size; i++) {
+            int id = states.keyAt(i);
+            DownloadButton button = attachedButton(id);
+            if (button == null) {
+                if (mButtons.get(id) != null) {
+                    mDeferredStates.put(id, states.valueAt(i).ordinal());
+                    // 暂存的进度早于这个状态，切换状态可能清零进度，以新状态为准
+                    mDeferredProgress.delete(id);
+                }
+                continue;
+            }
+            // 中间状态被合并后，已完成后重新下载会直接变成下载中，由按钮先重置；其他不合法的切换丢弃
+            button.syncDownloadState(states.valueAt(i));
+        }
+        for (int i = 0, size = progresses.size(); i < size; i++) {
+            int id = progresses.keyAt(i);
+            DownloadButton button = attachedButton(id);
+            if (button != null) {
+                button.setProgress(progresses.valueAt(i));
+            } else if (mButtons.get(id) != null) {
+                mDeferredProgress.put(id, progresses.valueAt(i));
+            }
+        }
+        states.clear();
+        progresses.clear();
+    }
+
+    /**
+     * @param id
+     * @return 绑定在这个id上并且在窗口中的按钮；没有绑定时丢弃这次更新，不在窗口中时返回null，由调用方暂存
+     */
+    private DownloadButton attachedButton(int id) {
+        DownloadButton button = mButtons.get(id);
+        if (button == null) {
+            mDroppedCount++;
+            return null;
+        }
+        if (button.getWindowToken() == null) {
+            return null;
+        }
+        mAppliedCount++;
+        return button;
+    }
+
+    private void applyDeferred(int id, DownloadButton button) {
+        int stateIndex = mDeferredStates.indexOfKey(id);
+        if (stateIndex >= 0) {
+            button.syncDownloadState(STATES[mDeferredStates.valueAt(stateIndex)]);
+            mDeferredStates.removeAt(stateIndex);
+            mAppliedCount++;
+        }
+        int progressIndex = mDeferredProgress.indexOfKey(id);
+        if (progressIndex >= 0) {
+            button.setProgress(mDeferredProgress.valueAt(progressIndex));
+            mDeferredProgress.removeAt(progressIndex);
+            mAppliedCount++;
+        }
+    }
+}
@@ -0,0 +1,567 @@
+package com.xiongit.customview.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+
+/**
+ * 下载进度Drawable：圆角进度条 + 被进度条覆盖时变色的进度/状态文字
+ * DownloadButton和DownloadProgressView都用它绘制，也可以直接用在列表项或通知中
+ * 稳定状态下绘制不产生对象分配；等待中、下载失败、已完成状态使用共享的快照缓存
+ */
+public class DownloadProgressDrawable extends Drawable {
+
+    private int mProgress = 0;// 当前进度
+    private int mMaxProgress = 100;// 最大进度
+    private DownloadButton.DownloadState mState = DownloadButton.DownloadState.STOPPED;// 当前状态
+    private String mText;// 状态文字
+
+    private final Paint mProgressPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private int mRadius;// 圆角半径，0表示使用高度的一半
+    private int mDrawRadius;// 实际绘制用的圆角半径
+    private int mProgressColor = Color.parseColor("#555555");// 进度条颜色
+    private int mProgressBackgroundColor = Color.TRANSPARENT;// 进度条未覆盖部分颜色
+    private int mTextColor = Color.GRAY;// 文字颜色
+    private int mTextCoverColor = Color.WHITE;// 文字被进度条覆盖部分的颜色
+    private int mErrorTextColor;
+    private int mWaitingTextColor;
+    private int mFinishedTextColor;
+    private int mAlpha = 255;
+    private ColorFilter mColorFilter;// 非空时不使用快照，否则快照里和绘制快照时会各叠加一次
+
+    private final RectF mProgressRectf = new RectF();// 进度条边缘，在onBoundsChange中计算
+    private LabelMetricsCache.Metrics mMetrics;// 当前字体、字号下固定文字的测量结果
+    private float mTextWidth;// mText的宽度
+
+    private boolean mSnapshotEnabled = true;// 静态状态是否使用快照缓存
+    private final DownloadSnapshotCache.Key mSnapshotKey = new DownloadSnapshotCache.Key();// 复用的快照查找键
+
+    private SegmentedProgress mSegments;// 非空时按分段绘制进度条
+    private char[] mProgressChars;// 非空时下载中状态显示这些字符而不是百分比
+    private int mProgressCharCount;
+
+    private int mDrawnPercent = -1;// 上一次绘制的进度百分比
+    private int mDrawnCoverLength = -1;// 上一次绘制的进度条覆盖宽度:px
+
+    public DownloadProgressDrawable() {
+        mProgressPaint.setStyle(Paint.Style.FILL);
+        updateTextMetrics();
+    }
+
+    /**
+     * 设置进度，不检查线程，由宿主保证在主线程调用
+     *
+     * @param progress
+     */
+    public void setProgress(int progress) {
+        if (progress > mMaxProgress || progress < 0 || progress == mProgress) {
+            return;
+        }
+        mProgress = progress;
+        invalidateSelf();
+    }
+
+    public int getProgress() {
+        return mProgress;
+    }
+
+    public void setMaxProgress(int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("非法参数：最大进度必须大于0.max must be greater than 0.");
+        }
+        if (max == mMaxProgress) {
+            return;
+        }
+        mMaxProgress = max;
+        invalidateSelf();
+    }
+
+    public int getMaxProgress() {
+        return mMaxProgress;
+    }
+
+    public void setDownloadState(DownloadButton.DownloadState state) {
+        if (state == mState) {
+            return;
+        }
+        mState = state;
+        invalidateSelf();
+    }
+
+    public DownloadButton.DownloadState getDownloadState() {
+        return mState;
+    }
+
+    /**
+     * 设置非下载中状态显示的文字
+     *
+     * @param text
+     */
+    public void setText(String text) {
+        if (text == null ? mText == null : text.equals(mText)) {
+            return;
+        }
+        mText = text;
+        updateTextWidth();
+        invalidateSelf();
+    }
+
+    public String getText() {
+        return mText;
+    }
+
+    public void setTextSize(float textSize) {
+        if (textSize == mTextPaint.getTextSize()) {
+            return;
+        }
+        mTextPaint.setTextSize(textSize);
+        updateTextMetrics();
+        invalidateSelf();
+    }
+
+    public float getTextSize() {
+        return mTextPaint.getTextSize();
+    }
+
+    public void setTypeface(Typeface typeface) {
+        if (typeface == mTextPaint.getTypeface()) {
+            return;
+        }
+        mTextPaint.setTypeface(typeface);
+        updateTextMetrics();
+        invalidateSelf();
+    }
+
+    public Typeface getTypeface() {
+        return mTextPaint.getTypeface();
+    }
+
+    /**
+     * 设置圆角半径
+     *
+     * @param radius 0表示使用高度的一半
+     */
+    public void setRadius(int radius) {
+        if (radius == mRadius) {
+            return;
+        }
+        mRadius = radius;
+        updateDrawRadius();
+        invalidateSelf();
+    }
+
+    public void setProgressColor(int color) {
+        if (color != mProgressColor) {
+            mProgressColor = color;
+            invalidateSelf();
+        }
+    }
+
+    public void setProgressBackgroundColor(int color) {
+        if (color != mProgressBackgroundColor) {
+            mProgressBackgroundColor = color;
+            invalidateSelf();
+        }
+    }
+
+    public void setTextColor(int color) {
+        if (color != mTextColor) {
+            mTextColor = color;
+            invalidateSelf();
+        }
+    }
+
+    public void setTextCoverColor(int color) {
+        if (color != mTextCoverColor) {
+            mTextCoverColor = color;
+            invalidateSelf();
+        }
+    }
+
+    public void setErrorTextColor(int color) {
+        if (color != mErrorTextColor) {
+            mErrorTextColor = color;
+            invalidateSelf();
+        }
+    }
+
+    public void setWaitingTextColor(int color) {
+        if (color != mWaitingTextColor) {
+            mWaitingTextColor = color;
+            invalidateSelf();
+        }
+    }
+
+    public void setFinishedTextColor(int color) {
+        if (color != mFinishedTextColor) {
+            mFinishedTextColor = color;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * 设置按分段绘制进度条，每段按长度占据对应宽度，并按该段自己的进度填充
+     * 文字仍显示总进度
+     *
+     * @param segments 为null时恢复为整体进度条
+     */
+    public void setSegments(SegmentedProgress segments) {
+        if (segments != mSegments) {
+            mSegments = segments;
+            invalidateSelf();
+        }
+    }
+
+    public SegmentedProgress getSegments() {
+        return mSegments;
+    }
+
+    /**
+     * 设置下载中状态显示的文字，例如速度和剩余时间
+     * 只保存数组引用不复制，调用方可以原地更新内容后再次调用本方法刷新
+     *
+     * @param chars 为null时恢复显示百分比
+     * @param count 有效字符数
+     */
+    public void setProgressChars(char[] chars, int count) {
+        mProgressChars = chars;
+        mProgressCharCount = chars == null ? 0 : count;
+        invalidateSelf();
+    }
+
+    /**
+     * 设置静态状态是否使用共享快照缓存，默认开启
+     *
+     * @param enabled
+     */
+    public void setSnapshotEnabled(boolean enabled) {
+        mSnapshotEnabled = enabled;
+    }
+
+    /**
+     * 进度对应的百分比
+     *
+     * @param progress
+     * @return
+     */
+    int percentOf(int progress) {
+        return (int) (((float) progress / (float) mMaxProgress) * 100);
+    }
+
+    /**
+     * 进度对应的进度条覆盖宽度:px
+     *
+     * @param progress
+     * @return
+     */
+    int coverLengthOf(int progress) {
+        return (int) (getBounds().width() * (progress / (mMaxProgress + 0f)));
+    }
+
+    float getMaxPercentTextWidth() {
+        return mMetrics.maxPercentWidth();
+    }
+
+    int getDrawnPercent() {
+        return mDrawnPercent;
+    }
+
+    int getDrawnCoverLength() {
+        return mDrawnCoverLength;
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        mProgressRectf.set(bounds.left + 2, bounds.top + 2, bounds.right - 2, bounds.bottom - 2);
+        updateDrawRadius();
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (isStaticState(mState) && drawSnapshot(canvas)) {
+            return;
+        }
+        drawProgress(canvas);
+        drawProgressText(canvas, getBounds());
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (alpha != mAlpha) {
+            mAlpha = alpha;
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return mAlpha;
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        mColorFilter = colorFilter;
+        mProgressPaint.setColorFilter(colorFilter);
+        mTextPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    /**
+     * 等待中、下载失败、已完成状态下外观不随进度变化
+     */
+    private static boolean isStaticState(DownloadButton.DownloadState state) {
+        return state == DownloadButton.DownloadState.WAITING
+                || state == DownloadButton.DownloadState.ERROR
+                || state == DownloadButton.DownloadState.FINISHED;
+    }
+
+    /**
+     * 从共享缓存中取出当前静态状态的快照绘制，没有则先画一份放入缓存
+     *
+     * @param canvas
+     * @return 是否已经用快照绘制
+     */
+    private boolean drawSnapshot(Canvas canvas) {
+        final Rect bounds = getBounds();
+        final int width = bounds.width();
+        final int height = bounds.height();
+        if (!mSnapshotEnabled || mColorFilter != null || width <= 0 || height <= 0 || mText == null) {
+            return false;
+        }
+        // 透明度在绘制快照时才叠加，不影响快照内容
+        mSnapshotKey.set(mState, width, height, mText, getStateTextColor(mState),
+                mTextPaint.getTextSize(), mTextPaint.getTypeface(), mTextPaint.getFlags(),
+                mProgressColor, mProgressBackgroundColor, mDrawRadius);
+        DownloadSnapshotCache cache = DownloadSnapshotCache.getInstance();
+        Bitmap snapshot = cache.get(mSnapshotKey);
+        if (snapshot == null) {
+            snapshot = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            int alpha = mAlpha;
+            mAlpha = 255;
+            drawProgressText(new Canvas(snapshot), new Rect(0, 0, width, height));
+            mAlpha = alpha;
+            cache.put(mSnapshotKey, snapshot);
+        }
+        mProgressPaint.setAlpha(mAlpha);
+        canvas.drawBitmap(snapshot, bounds.left, bounds.top, mProgressPaint);
+        return true;
+    }
+
+    private int getStateTextColor(DownloadButton.DownloadState state) {
+        switch (state) {
+            case ERROR:
+                return mErrorTextColor;
+            case WAITING:
+                return mWaitingTextColor;
+            case FINISHED:
+                return mFinishedTextColor;
+            default:
+                return mTextColor;
+        }
+    }
+
+    /**
+     * 绘制进度/提示语文字
+     * 文字被进度条覆盖的部分用clipRect分两次绘制，不再每帧创建LinearGradient
+     *
+     * @param canvas
+     * @param bounds 绘制区域
+     */
+    private void drawProgressText(Canvas canvas, Rect bounds) {
+        int p = percentOf(mProgress);
+        if (p < 0) {
+            p = 0;
+        } else if (p > 100) {
+            p = 100;
+        }
+        mDrawnPercent = p;
+
+        final boolean useChars = mState == DownloadButton.DownloadState.STARTED && mProgressChars != null;
+        String currentText = mText;
+        if (mState == DownloadButton.DownloadState.STARTED) {
+            currentText = LabelMetricsCache.PERCENT_TEXTS[p];
+        }
+        if (currentText == null) {
+            return;
+        }
+
+        final int width = bounds.width();
+        final float y = bounds.exactCenterY() + mMetrics.baselineOffset();
+        final float textWidth;
+        if (useChars) {
+            textWidth = mTextPaint.measureText(mProgressChars, 0, mProgressCharCount);
+        } else if (mState == DownloadButton.DownloadState.STARTED) {
+            textWidth = mMetrics.percentWidth(p);
+        } else {
+            textWidth = mTextWidth;
+        }
+        final float x = bounds.left + (width - textWidth) / 2;
+        switch (mState) {
+            case STARTED:
+            case STOPPED:
+                //进度条压过距离
+                float coverlength = width * (mProgress / (mMaxProgress + 0f));
+                //开始变色指示器
+                float indicator1 = width / 2 - textWidth / 2;
+                //结束变色指示器
+                float indicator2 = width / 2 + textWidth / 2;
+                if (coverlength <= indicator1) {
+                    setPaintColor(mTextPaint, mTextColor);
+                    drawLabel(canvas, currentText, useChars, x, y);
+                } else if (coverlength <= indicator2) {
+                    float coverRight = bounds.left + coverlength;
+                    // 被覆盖的部分
+                    canvas.save();
+                    canvas.clipRect(bounds.left, bounds.top, coverRight, bounds.bottom);
+                    setPaintColor(mTextPaint, mTextCoverColor);
+                    drawLabel(canvas, currentText, useChars, x, y);
+                    canvas.restore();
+                    // 未被覆盖的部分
+                    canvas.save();
+                    canvas.clipRect(coverRight, bounds.top, bounds.right, bounds.bottom);
+                    setPaintColor(mTextPaint, mTextColor);
+                    drawLabel(canvas, currentText, useChars, x, y);
+                    canvas.restore();
+                } else {
+                    setPaintColor(mTextPaint, mTextCoverColor);
+                    drawLabel(canvas, currentText, useChars, x, y);
+                }
+                break;
+
+            default:
+                setPaintColor(mTextPaint, getStateTextColor(mState));
+                drawLabel(canvas, currentText, useChars, x, y);
+                break;
+        }
+    }
+
+    private void drawLabel(Canvas canvas, String text, boolean useChars, float x, float y) {
+        if (useChars) {
+            canvas.drawText(mProgressChars, 0, mProgressCharCount, x, y, mTextPaint);
+        } else {
+            canvas.drawText(text, x, y, mTextPaint);
+        }
+    }
+
+    /**
+     * 绘制进度条，进度分界用clipRect实现
+     *
+     * @param canvas
+     */
+    private void drawProgress(Canvas canvas) {
+        switch (mState) {
+            case STARTED:
+            case STOPPED:
+                final Rect bounds = getBounds();
+                float coverlength = bounds.width() * (mProgress / (mMaxProgress + 0f));
+                mDrawnCoverLength = (int) coverlength;
+                float coverRight = bounds.left + coverlength;
+
+                // 已下载部分
+                if (mSegments != null) {
+                    drawSegments(canvas, bounds);
+                } else {
+                    canvas.save();
+                    canvas.clipRect(bounds.left, bounds.top, coverRight, bounds.bottom);
+                    setPaintColor(mProgressPaint, mProgressColor);
+                    canvas.drawRoundRect(mProgressRectf, mDrawRadius, mDrawRadius, mProgressPaint);
+                    canvas.restore();
+                }
+                // 未下载部分
+                if (mSegments == null && mProgressBackgroundColor != Color.TRANSPARENT) {
+                    canvas.save();
+                    canvas.clipRect(coverRight, bounds.top, bounds.right, bounds.bottom);
+                    setPaintColor(mProgressPaint, mProgressBackgroundColor);
+                    canvas.drawRoundRect(mProgressRectf, mDrawRadius, mDrawRadius, mProgressPaint);
+                    canvas.restore();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 逐段绘制：每段占据与其长度成比例的宽度，已完成的部分用进度颜色，其余用背景色
+     *
+     * @param canvas
+     * @param bounds
+     */
+    private void drawSegments(Canvas canvas, Rect bounds) {
+        final SegmentedProgress segments = mSegments;
+        final float width = bounds.width();
+        final float length = segments.getLength();
+        float segmentLeft = bounds.left;
+        long offset = 0;
+        for (int i = 0, count = segments.getSegmentCount(); i < count; i++) {
+            final long segmentLength = segments.getSegmentLength(i);
+            offset += segmentLength;
+            final float segmentRight = i == count - 1 ? bounds.right : bounds.left + width * (offset / length);
+            final float doneRight = segmentLeft + (segmentRight - segmentLeft)
+                    * (segments.getSegmentProgress(i) / (float) segmentLength);
+
+            canvas.save();
+            canvas.clipRect(segmentLeft, bounds.top, doneRight, bounds.bottom);
+            setPaintColor(mProgressPaint, mProgressColor);
+            canvas.drawRoundRect(mProgressRectf, mDrawRadius, mDrawRadius, mProgressPaint);
+            canvas.restore();
+            if (mProgressBackgroundColor != Color.TRANSPARENT) {
+                canvas.save();
+                canvas.clipRect(doneRight, bounds.top, segmentRight, bounds.bottom);
+                setPaintColor(mProgressPaint, mProgressBackgroundColor);
+                canvas.drawRoundRect(mProgressRectf, mDrawRadius, mDrawRadius, mProgressPaint);
+                canvas.restore();
+            }
+            segmentLeft = segmentRight;
+        }
+    }
+
+    /**
+     * 设置画笔颜色并叠加Drawable自身的透明度
+     */
+    private void setPaintColor(Paint paint, int color) {
+        paint.setColor(color);
+        if (mAlpha != 255) {
+            paint.setAlpha(Color.alpha(color) * mAlpha / 255);
+        }
+    }
+
+    private void updateDrawRadius() {
+        mDrawRadius = mRadius != 0 ? mRadius : getBounds().height() / 2;
+    }
+
+    /**
+     * 字体或字号变化后重新取共享的测量结果
+     */
+    private void updateTextMetrics() {
+        mMetrics = LabelMetricsCache.get(mTextPaint);
+        updateTextWidth();
+    }
+
+    /**
+     * 状态文字直接用共享的测量结果，其他文字测量一次后保存
+     */
+    private void updateTextWidth() {
+        if (mText == null) {
+            mTextWidth = 0;
+            return;
+        }
+        float width = mMetrics.labelWidth(mText);
+        mTextWidth = width >= 0 ? width : mTextPaint.measureText(mText);
+    }
+}
@@ -0,0 +1,145 @@
+package com.xiongit.customview.view;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.view.View;
+
+import com.xiongit.customview.R;
+
+/**
+ * 轻量的下载进度控件，直接继承View，只承载一个DownloadProgressDrawable
+ * 没有TextView的文字排版、Span、编辑器等开销，适合列表项中大量使用
+ * 所有setter需在主线程调用
+ */
+public class DownloadProgressView extends View {
+
+    private final DownloadProgressDrawable mProgressDrawable = new DownloadProgressDrawable();
+
+    private int mDefaultWidth = 240;
+    private int mDefaultHeight = 100;
+
+    public DownloadProgressView(Context context) {
+        this(context, null);
+    }
+
+    public DownloadProgressView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public DownloadProgressView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        initView(context, attrs);
+    }
+
+    private void initView(Context context, AttributeSet attrs) {
+        TypedArray ta = context.obtainStyledAttributes(attrs, R.styleable.DownloadProgressView);
+        mProgressDrawable.setProgressColor(ta.getColor(R.styleable.DownloadProgressView_progress_color, Color.parseColor("#555555")));
+        mProgressDrawable.setTextColor(ta.getColor(R.styleable.DownloadProgressView_progress_text_color, Color.GRAY));
+        mProgressDrawable.setMaxProgress(ta.getInteger(R.styleable.DownloadProgressView_maxprogress, 100));
+        mProgressDrawable.setProgress(ta.getInteger(R.styleable.DownloadProgressView_download_progress, 0));
+        mProgressDrawable.setRadius(ta.getDimensionPixelSize(R.styleable.DownloadProgressView_progress_radius, 6));
+        mProgressDrawable.setText(ta.getString(R.styleable.DownloadProgressView_progress_default_text));
+        mProgressDrawable.setTextSize(ta.getDimensionPixelSize(R.styleable.DownloadProgressView_progress_text_size, sp2px(14)));
+        mProgressDrawable.setWaitingTextColor(ta.getColor(R.styleable.DownloadProgressView_progress_waiting_text_color,
+                ContextCompat.getColor(context, R.color.text_gray_general)));
+        mProgressDrawable.setErrorTextColor(ta.getColor(R.styleable.DownloadProgressView_progress_error_text_color,
+                ContextCompat.getColor(context, R.color.text_vrgoods_price_red)));
+        mProgressDrawable.setFinishedTextColor(ta.getColor(R.styleable.DownloadProgressView_progress_finished_text_color,
+                ContextCompat.getColor(context, R.color.text_login)));
+        ta.recycle();
+
+        mProgressDrawable.setCallback(this);
+    }
+
+    public DownloadProgressDrawable getProgressDrawable() {
+        return mProgressDrawable;
+    }
+
+    public void setProgress(int progress) {
+        mProgressDrawable.setProgress(progress);
+    }
+
+    public int getProgress() {
+        return mProgressDrawable.getProgress();
+    }
+
+    public void setMaxProgress(int max) {
+        mProgressDrawable.setMaxProgress(max);
+    }
+
+    public int getMaxProgress() {
+        return mProgressDrawable.getMaxProgress();
+    }
+
+    /**
+     * 切换下载状态，文字和进度的变化与DownloadButton相同
+     *
+     * @param state
+     */
+    public void setDownloadState(DownloadButton.DownloadState state) {
+        if (state == mProgressDrawable.getDownloadState()) {
+            return;
+        }
+        mProgressDrawable.setDownloadState(state);
+        switch (state) {
+            case WAITING:
+                mProgressDrawable.setProgress(0);
+                mProgressDrawable.setText(DownloadButton.TEXT_WAITING);
+                break;
+            case STOPPED:
+                mProgressDrawable.setText(DownloadButton.TEXT_PAUSED);
+                break;
+            case ERROR:
+                mProgressDrawable.setProgress(0);
+                mProgressDrawable.setText(DownloadButton.TEXT_RETRY);
+                break;
+            case FINISHED:
+                mProgressDrawable.setProgress(0);
+                mProgressDrawable.setText(DownloadButton.TEXT_OPEN);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public DownloadButton.DownloadState getDownloadState() {
+        return mProgressDrawable.getDownloadState();
+    }
+
+    public void setText(String text) {
+        mProgressDrawable.setText(text);
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return who == mProgressDrawable || super.verifyDrawable(who);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mProgressDrawable.setBounds(getPaddingLeft(), getPaddingTop(), w - getPaddingRight(), h - getPaddingBottom());
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(resolveSize(mDefaultWidth, widthMeasureSpec),
+                resolveSize(mDefaultHeight, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        mProgressDrawable.draw(canvas);
+    }
+
+    private int sp2px(int sp) {
+        DisplayMetrics displayMetrics = getContext().getResources().getDisplayMetrics();
+        return (int) (displayMetrics.scaledDensity * sp + 0.5f);
+    }
+}
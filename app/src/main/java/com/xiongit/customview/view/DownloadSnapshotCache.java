@@ -0,0 +1,136 @@
+package com.xiongit.customview.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Typeface;
+import android.util.LruCache;
+
+/**
+ * DownloadButton静态状态（等待中、下载失败、已完成）的绘制快照缓存
+ * 所有DownloadButton共享同一个按字节数计算大小的LRU，长列表中内存占用有上限
+ */
+final class DownloadSnapshotCache {
+
+    /**
+     * 默认上限：最大堆的1/64，且不超过4MB
+     */
+    private static final int DEFAULT_MAX_BYTES = (int) Math.min(Runtime.getRuntime().maxMemory() / 64, 4 * 1024 * 1024);
+
+    private static DownloadSnapshotCache sInstance;
+
+    private final LruCache<Key, Bitmap> mCache;
+
+    private DownloadSnapshotCache(int maxBytes) {
+        mCache = new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+        };
+    }
+
+    static synchronized DownloadSnapshotCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new DownloadSnapshotCache(DEFAULT_MAX_BYTES);
+        }
+        return sInstance;
+    }
+
+    Bitmap get(Key key) {
+        return mCache.get(key);
+    }
+
+    /**
+     * @param key 会被复制一份，调用方可以继续复用
+     */
+    void put(Key key, Bitmap snapshot) {
+        mCache.put(key.copy(), snapshot);
+    }
+
+    void evictAll() {
+        mCache.evictAll();
+    }
+
+    int size() {
+        return mCache.size();
+    }
+
+    int maxSize() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * 快照的键：状态、尺寸、文字、颜色、字号、字体、画笔标志、进度条颜色和圆角，即除透明度和颜色过滤器外的所有绘制输入
+     * 每个DownloadButton持有一个可复用的实例用于查找，查找时不产生对象分配
+     */
+    static final class Key {
+        DownloadButton.DownloadState state;
+        int width;
+        int height;
+        String text;
+        int textColor;
+        float textSize;
+        Typeface typeface;
+        int paintFlags;
+        int progressColor;
+        int progressBackgroundColor;
+        int radius;
+
+        void set(DownloadButton.DownloadState state, int width, int height, String text,
+                 int textColor, float textSize, Typeface typeface, int paintFlags,
+                 int progressColor, int progressBackgroundColor, int radius) {
+            this.state = state;
+            this.width = width;
+            this.height = height;
+            this.text = text;
+            this.textColor = textColor;
+            this.textSize = textSize;
+            this.typeface = typeface;
+            this.paintFlags = paintFlags;
+            this.progressColor = progressColor;
+            this.progressBackgroundColor = progressBackgroundColor;
+            this.radius = radius;
+        }
+
+        Key copy() {
+            Key key = new Key();
+            key.set(state, width, height, text, textColor, textSize, typeface, paintFlags,
+                    progressColor, progressBackgroundColor, radius);
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return state == key.state
+                    && width == key.width
+                    && height == key.height
+                    && textColor == key.textColor
+                    && paintFlags == key.paintFlags
+                    && progressColor == key.progressColor
+                    && progressBackgroundColor == key.progressBackgroundColor
+                    && radius == key.radius
+                    && Float.compare(key.textSize, textSize) == 0
+                    && (text != null ? text.equals(key.text) : key.text == null)
+                    && (typeface != null ? typeface.equals(key.typeface) : key.typeface == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = state != null ? state.hashCode() : 0;
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + (text != null ? text.hashCode() : 0);
+            result = 31 * result + textColor;
+            result = 31 * result + (textSize != +0.0f ? Float.floatToIntBits(textSize) : 0);
+            result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+            result = 31 * result + paintFlags;
+            result = 31 * result + progressColor;
+            result = 31 * result + progressBackgroundColor;
+            result = 31 * result + radius;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.xiongit.customview.view;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.TypedArray;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.v4.content.ContextCompat;
+import android.text.InputFilter;
+import android.text.InputType;
+import android.text.TextUtils;
+import android.text.method.HideReturnsTransformationMethod;
+import android.text.method.PasswordTransformationMethod;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.widget.EditText;
+
+import com.xiongit.customview.R;
+
+/**
+ * 右边带小眼睛的密码输入框，{@link com.xiongit.customview.compositeview.PasswordEditText}的扁平实现
+ * 直接继承EditText，小眼睛是右侧的compound drawable，自己处理点击，不需要inflate布局，也没有多一层LinearLayout
+ * 支持与PasswordEditText相同的属性，默认提示语和输入框样式（@style/input_style）也与它一致
+ */
+public class FlatPasswordEditText extends EditText {
+
+    /**
+     * 默认最大输入长度，与PasswordEditText的布局一致
+     */
+    private static final int DEFAULT_MAX_LENGTH = 18;
+    /**
+     * 默认提示语，与PasswordEditText的布局一致
+     */
+    public static final String DEFAULT_HINT = "请输入密码";
+
+    private static final int[] STATE_PRESSED = {android.R.attr.state_pressed};
+    private static final int[] STATE_NORMAL = {};
+
+    private Drawable mLockDrawable;// 左侧锁图标
+    private Drawable mOpenEyeDrawable;// 睁眼：显示密码
+    private Drawable mCloseEyeDrawable;// 闭眼：隐藏密码
+    private int mEyeWidth;// 小眼睛的点击区域宽度:px，从右边缘算起
+    private boolean mShowPwd;// 是否显示密码
+    private boolean mEyeTouched;// 本次触摸是否从小眼睛上开始
+
+    public FlatPasswordEditText(Context context) {
+        this(context, null);
+    }
+
+    public FlatPasswordEditText(Context context, AttributeSet attrs) {
+        this(context, attrs, android.R.attr.editTextStyle);
+    }
+
+    public FlatPasswordEditText(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        initView(context, attrs);
+    }
+
+    private void initView(Context context, AttributeSet attrs) {
+        mLockDrawable = ContextCompat.getDrawable(context, R.drawable.icon_lock);
+        mOpenEyeDrawable = ContextCompat.getDrawable(context, R.drawable.selector_open_eye);
+        mCloseEyeDrawable = ContextCompat.getDrawable(context, R.drawable.selector_close_eye);
+        mEyeWidth = dp2px(50);
+
+        applyInputStyle(context, attrs);
+        setSingleLine(true);
+        setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_PASSWORD);
+        if (getFilters().length == 0) {
+            setFilters(new InputFilter[]{new InputFilter.LengthFilter(DEFAULT_MAX_LENGTH)});
+        }
+
+        boolean showPwd = false;
+        int editWidth = -1;
+        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.PasswordEditText);
+        int count = typedArray.getIndexCount();
+        for (int i = 0; i < count; i++) {
+            int attr = typedArray.getIndex(i);
+            switch (attr) {
+                case R.styleable.PasswordEditText_edit_width:
+                    editWidth = typedArray.getDimensionPixelSize(attr, 220);
+                    break;
+
+                case R.styleable.PasswordEditText_eye_width:
+                    mEyeWidth = typedArray.getDimensionPixelSize(attr, 50);
+                    break;
+
+                case R.styleable.PasswordEditText_eyeIcon:
+                    Drawable eye = typedArray.getDrawable(attr);
+                    if (eye != null) {
+                        mCloseEyeDrawable = eye;
+                    }
+                    break;
+
+                case R.styleable.PasswordEditText_hint:
+                    String hint = typedArray.getString(attr);
+                    if (!TextUtils.isEmpty(hint)) {
+                        setHint(hint);
+                    }
+                    break;
+
+                case R.styleable.PasswordEditText_passwordVisible:
+                    showPwd = typedArray.getBoolean(attr, false);
+                    break;
+
+                default:
+                    break;
+            }
+        }
+        typedArray.recycle();
+        if (TextUtils.isEmpty(getHint())) {
+            setHint(DEFAULT_HINT);
+        }
+
+        if (editWidth >= 0) {
+            // 与组合控件一致：输入区域宽度加上小眼睛的宽度
+            setWidth(editWidth + mEyeWidth);
+        }
+        setEyeState(showPwd);
+    }
+
+    /**
+     * 应用组合控件输入框的样式@style/input_style，布局中设置了的属性优先
+     */
+    private void applyInputStyle(Context context, AttributeSet attrs) {
+        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.FlatPasswordEditText, 0,
+                R.style.input_style);
+        Drawable background = typedArray.getDrawable(R.styleable.FlatPasswordEditText_android_background);
+        if (background != null) {
+            setBackgroundCompat(background);
+        }
+        setTextSize(TypedValue.COMPLEX_UNIT_PX, typedArray.getDimensionPixelSize(
+                R.styleable.FlatPasswordEditText_android_textSize, (int) getTextSize()));
+        ColorStateList textColor = typedArray.getColorStateList(R.styleable.FlatPasswordEditText_android_textColor);
+        if (textColor != null) {
+            setTextColor(textColor);
+        }
+        ColorStateList hintColor = typedArray.getColorStateList(R.styleable.FlatPasswordEditText_android_textColorHint);
+        if (hintColor != null) {
+            setHintTextColor(hintColor);
+        }
+        // 组合控件的输入框右边没有内边距，小眼睛有5dp的内边距
+        setPadding(typedArray.getDimensionPixelSize(R.styleable.FlatPasswordEditText_android_paddingLeft, getPaddingLeft()),
+                typedArray.getDimensionPixelSize(R.styleable.FlatPasswordEditText_android_paddingTop, getPaddingTop()),
+                typedArray.getDimensionPixelSize(R.styleable.FlatPasswordEditText_android_paddingRight, dp2px(5)),
+                typedArray.getDimensionPixelSize(R.styleable.FlatPasswordEditText_android_paddingBottom, getPaddingBottom()));
+        setCompoundDrawablePadding(typedArray.getDimensionPixelSize(
+                R.styleable.FlatPasswordEditText_android_drawablePadding, getCompoundDrawablePadding()));
+        setCursorVisible(typedArray.getBoolean(R.styleable.FlatPasswordEditText_android_cursorVisible, true));
+        setSelectAllOnFocus(typedArray.getBoolean(R.styleable.FlatPasswordEditText_android_selectAllOnFocus, false));
+        typedArray.recycle();
+    }
+
+    @SuppressWarnings("deprecation")
+    private void setBackgroundCompat(Drawable background) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            setBackground(background);
+        } else {
+            setBackgroundDrawable(background);
+        }
+    }
+
+    /**
+     * 设置眼睛状态,睁眼：显示密码；闭眼：隐藏密码
+     *
+     * @param openEye 是否显示睁开的眼睛
+     */
+    public void setEyeState(boolean openEye) {
+        mShowPwd = openEye;
+        Drawable eye = openEye ? mOpenEyeDrawable : mCloseEyeDrawable;
+        if (getCompoundDrawables()[2] != eye) {
+            setCompoundDrawablesWithIntrinsicBounds(mLockDrawable, null, eye, null);
+        }
+        if (openEye) {
+            setTransformationMethod(HideReturnsTransformationMethod.getInstance());
+        } else {
+            setTransformationMethod(PasswordTransformationMethod.getInstance());
+        }
+        setSelection(length());
+    }
+
+    public boolean isPasswordVisible() {
+        return mShowPwd;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mEyeTouched = isOnEye(event.getX());
+                if (mEyeTouched) {
+                    setEyePressed(true);
+                    return true;
+                }
+                break;
+
+            case MotionEvent.ACTION_MOVE:
+                if (mEyeTouched) {
+                    setEyePressed(isOnEye(event.getX()));
+                    return true;
+                }
+                break;
+
+            case MotionEvent.ACTION_UP:
+                if (mEyeTouched) {
+                    mEyeTouched = false;
+                    setEyePressed(false);
+                    if (isOnEye(event.getX())) {
+                        setEyeState(!mShowPwd);
+                    }
+                    return true;
+                }
+                break;
+
+            case MotionEvent.ACTION_CANCEL:
+                if (mEyeTouched) {
+                    mEyeTouched = false;
+                    setEyePressed(false);
+                    return true;
+                }
+                break;
+
+            default:
+                break;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    /**
+     * 点击位置是否在小眼睛上：右边缘向左mEyeWidth的范围，至少覆盖图标本身
+     *
+     * @param x
+     * @return
+     */
+    private boolean isOnEye(float x) {
+        Drawable eye = getCompoundDrawables()[2];
+        if (eye == null) {
+            return false;
+        }
+        int hitWidth = Math.max(mEyeWidth, eye.getIntrinsicWidth() + getPaddingRight());
+        return x >= getWidth() - hitWidth && x <= getWidth();
+    }
+
+    private void setEyePressed(boolean pressed) {
+        Drawable eye = getCompoundDrawables()[2];
+        if (eye != null && eye.setState(pressed ? STATE_PRESSED : STATE_NORMAL)) {
+            invalidate();
+        }
+    }
+
+    private int dp2px(int dp) {
+        DisplayMetrics displayMetrics = getContext().getResources().getDisplayMetrics();
+        float density = displayMetrics.density;
+        return (int) (density * dp + 0.5f);
+    }
+}
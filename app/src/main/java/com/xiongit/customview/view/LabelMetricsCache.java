@@ -0,0 +1,188 @@
+package com.xiongit.customview.view;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.util.LruCache;
+
+import java.util.Locale;
+
+/**
+ * DownloadButton固定文字的测量缓存
+ * 按钮上的文字只有几种状态文字和"0%"~"100%"，按影响测量结果的画笔属性（字体、字号、横向缩放、字间距、伪粗体、语言）
+ * 缓存它们的宽度和基线偏移，所有DownloadProgressDrawable共享，绘制时不再调用measureText、ascent、descent
+ * 缓存按LRU保留最近使用的{@link #MAX_ENTRIES}组，字号随系统设置变化时不会无限增长
+ */
+final class LabelMetricsCache {
+
+    /**
+     * 预先格式化好的进度文字"0%"~"100%"，避免每帧拼接字符串
+     */
+    static final String[] PERCENT_TEXTS = new String[101];
+
+    /**
+     * 各状态下显示的固定文字
+     */
+    private static final String[] STATE_LABELS = {
+            DownloadButton.TEXT_WAITING, DownloadButton.TEXT_PAUSED,
+            DownloadButton.TEXT_RETRY, DownloadButton.TEXT_OPEN
+    };
+
+    static {
+        for (int i = 0; i < PERCENT_TEXTS.length; i++) {
+            PERCENT_TEXTS[i] = i + "%";
+        }
+    }
+
+    /**
+     * 最多缓存的画笔属性组数，一组约500字节
+     */
+    static final int MAX_ENTRIES = 32;
+
+    private static final LruCache<Key, Metrics> sCache = new LruCache<Key, Metrics>(MAX_ENTRIES);
+
+    private LabelMetricsCache() {
+    }
+
+    /**
+     * 取得与画笔属性对应的测量结果，没有则测量一次并缓存
+     * 只在字号或字体变化时调用，不要在绘制时调用
+     *
+     * @param paint
+     * @return
+     */
+    static synchronized Metrics get(Paint paint) {
+        Key key = new Key(paint);
+        Metrics metrics = sCache.get(key);
+        if (metrics == null) {
+            metrics = new Metrics(paint);
+            sCache.put(key, metrics);
+        }
+        return metrics;
+    }
+
+    static synchronized void clear() {
+        sCache.evictAll();
+    }
+
+    /**
+     * 某组画笔属性下的测量结果，创建后不再变化
+     */
+    static final class Metrics {
+
+        private final float[] mPercentWidths = new float[PERCENT_TEXTS.length];
+        private final float[] mStateLabelWidths = new float[STATE_LABELS.length];
+        private final float mMaxPercentWidth;
+        private final float mMaxLabelWidth;
+        private final float mBaselineOffset;
+        private final float mLineHeight;
+
+        private Metrics(Paint paint) {
+            float max = 0;
+            for (int i = 0; i < PERCENT_TEXTS.length; i++) {
+                mPercentWidths[i] = paint.measureText(PERCENT_TEXTS[i]);
+                max = Math.max(max, mPercentWidths[i]);
+            }
+            mMaxPercentWidth = max;
+            for (int i = 0; i < STATE_LABELS.length; i++) {
+                mStateLabelWidths[i] = paint.measureText(STATE_LABELS[i]);
+                max = Math.max(max, mStateLabelWidths[i]);
+            }
+            mMaxLabelWidth = max;
+            mBaselineOffset = -(paint.descent() / 2 + paint.ascent() / 2);
+            mLineHeight = paint.descent() - paint.ascent();
+        }
+
+        /**
+         * @param percent 0~100
+         * @return "percent%"的宽度
+         */
+        float percentWidth(int percent) {
+            return mPercentWidths[percent];
+        }
+
+        /**
+         * @return "0%"~"100%"中最宽的文字宽度
+         */
+        float maxPercentWidth() {
+            return mMaxPercentWidth;
+        }
+
+        /**
+         * @return 状态文字和"0%"~"100%"中最宽的文字宽度
+         */
+        float maxLabelWidth() {
+            return mMaxLabelWidth;
+        }
+
+        /**
+         * @return 一行文字的高度
+         */
+        float lineHeight() {
+            return mLineHeight;
+        }
+
+        /**
+         * @return 文字垂直居中时基线相对于中线的偏移
+         */
+        float baselineOffset() {
+            return mBaselineOffset;
+        }
+
+        /**
+         * @param text
+         * @return 状态文字的宽度，不是固定的状态文字时返回-1
+         */
+        float labelWidth(String text) {
+            for (int i = 0; i < STATE_LABELS.length; i++) {
+                if (STATE_LABELS[i].equals(text)) {
+                    return mStateLabelWidths[i];
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class Key {
+        private final Typeface mTypeface;
+        private final float mTextSize;
+        private final float mTextScaleX;
+        private final float mLetterSpacing;// API21以下固定为0
+        private final boolean mFakeBold;
+        private final Locale mLocale;// API17以下为null
+
+        Key(Paint paint) {
+            mTypeface = paint.getTypeface();
+            mTextSize = paint.getTextSize();
+            mTextScaleX = paint.getTextScaleX();
+            mLetterSpacing = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? paint.getLetterSpacing() : 0;
+            mFakeBold = paint.isFakeBoldText();
+            mLocale = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 ? paint.getTextLocale() : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return Float.compare(key.mTextSize, mTextSize) == 0
+                    && Float.compare(key.mTextScaleX, mTextScaleX) == 0
+                    && Float.compare(key.mLetterSpacing, mLetterSpacing) == 0
+                    && mFakeBold == key.mFakeBold
+                    && (mTypeface != null ? mTypeface.equals(key.mTypeface) : key.mTypeface == null)
+                    && (mLocale != null ? mLocale.equals(key.mLocale) : key.mLocale == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mTypeface != null ? mTypeface.hashCode() : 0;
+            result = 31 * result + (mTextSize != +0.0f ? Float.floatToIntBits(mTextSize) : 0);
+            result = 31 * result + (mTextScaleX != +0.0f ? Float.floatToIntBits(mTextScaleX) : 0);
+            result = 31 * result + (mLetterSpacing != +0.0f ? Float.floatToIntBits(mLetterSpacing) : 0);
+            result = 31 * result + (mFakeBold ? 1 : 0);
+            result = 31 * result + (mLocale != null ? mLocale.hashCode() : 0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.xiongit.customview.view;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+/**
+ * 所有开启了平滑进度动画的DownloadButton共用的帧驱动器
+ * 每帧只注册一个回调，在一次遍历中推进所有按钮的动画，按钮到达目标进度或被移除窗口后自动注销
+ * 没有需要推进的按钮时不会预约任何帧
+ * 只能在主线程使用
+ */
+public final class ProgressAnimationTicker {
+
+    /**
+     * API16以下没有Choreographer时的帧间隔:ms
+     */
+    private static final long FALLBACK_FRAME_DELAY = 16;
+
+    private static ProgressAnimationTicker sInstance;
+
+    private final ArrayList<DownloadButton> mButtons = new ArrayList<DownloadButton>();
+    private boolean mFrameScheduled;
+
+    private Choreographer mChoreographer;
+    private Choreographer.FrameCallback mFrameCallback;
+    private Handler mHandler;
+    private Runnable mFrameRunnable;
+
+    private ProgressAnimationTicker() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mChoreographer = Choreographer.getInstance();
+            mFrameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    onFrame(frameTimeNanos);
+                }
+            };
+        } else {
+            mHandler = new Handler(Looper.getMainLooper());
+            mFrameRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    onFrame(SystemClock.uptimeMillis() * 1000000L);
+                }
+            };
+        }
+    }
+
+    public static ProgressAnimationTicker getInstance() {
+        if (sInstance == null) {
+            sInstance = new ProgressAnimationTicker();
+        }
+        return sInstance;
+    }
+
+    /**
+     * 当前正在驱动的按钮数量，界面空闲时应为0
+     *
+     * @return
+     */
+    public int getActiveCount() {
+        return mButtons.size();
+    }
+
+    /**
+     * 是否已经预约了下一帧
+     *
+     * @return
+     */
+    public boolean isFrameScheduled() {
+        return mFrameScheduled;
+    }
+
+    void register(DownloadButton button) {
+        if (button.getTickerIndex() < 0) {
+            button.setTickerIndex(mButtons.size());
+            mButtons.add(button);
+            button.onProgressAnimationStart();
+        }
+        scheduleFrame();
+    }
+
+    void unregister(DownloadButton button) {
+        int index = button.getTickerIndex();
+        if (index >= 0) {
+            removeAt(index);
+            button.onProgressAnimationEnd();
+        }
+        if (mButtons.isEmpty()) {
+            cancelFrame();
+        }
+    }
+
+    private void onFrame(long frameTimeNanos) {
+        mFrameScheduled = false;
+        // 倒序遍历，结束动画的按钮直接移除，换到这个位置的按钮本帧已经推进过
+        for (int i = mButtons.size() - 1; i >= 0; i--) {
+            DownloadButton button = mButtons.get(i);
+            if (!button.stepProgressAnimation(frameTimeNanos)) {
+                removeAt(i);
+                button.onProgressAnimationEnd();
+            }
+        }
+        if (!mButtons.isEmpty()) {
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * 用最后一个按钮填补被移除的位置，不移动其他元素
+     */
+    private void removeAt(int index) {
+        mButtons.get(index).setTickerIndex(-1);
+        DownloadButton last = mButtons.remove(mButtons.size() - 1);
+        if (index < mButtons.size()) {
+            mButtons.set(index, last);
+            last.setTickerIndex(index);
+        }
+    }
+
+    private void scheduleFrame() {
+        if (mFrameScheduled) {
+            return;
+        }
+        mFrameScheduled = true;
+        if (mChoreographer != null) {
+            mChoreographer.postFrameCallback(mFrameCallback);
+        } else {
+            mHandler.postDelayed(mFrameRunnable, FALLBACK_FRAME_DELAY);
+        }
+    }
+
+    private void cancelFrame() {
+        if (!mFrameScheduled) {
+            return;
+        }
+        mFrameScheduled = false;
+        if (mChoreographer != null) {
+            mChoreographer.removeFrameCallback(mFrameCallback);
+        } else {
+            mHandler.removeCallbacks(mFrameRunnable);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.xiongit.customview.view;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段下载的进度模型，每段对应一个并行下载的字节区间
+ * 每段一个独立的原子计数器，计数器之间相隔一个缓存行，多个下载线程同时更新不同分段时既不加锁也不会伪共享
+ * 总进度是各段计数器之和，读取时不加锁，每段的值都是单调递增的，所以读到的总进度也不会回退
+ */
+public class SegmentedProgress {
+
+    /**
+     * 相邻两段计数器在数组中的间隔，8个long即64字节，一个缓存行
+     */
+    private static final int STRIDE = 8;
+
+    private final long[] mSegmentLengths;
+    private final long mLength;
+    private final AtomicLongArray mCounters;
+
+    private volatile OnSegmentProgressChangedListener mListener;
+
+    /**
+     * @param segmentLengths 每段的长度，例如字节数，必须大于0
+     */
+    public SegmentedProgress(long[] segmentLengths) {
+        if (segmentLengths == null || segmentLengths.length == 0) {
+            throw new IllegalArgumentException("非法参数：至少需要一个分段.at least one segment is required.");
+        }
+        long length = 0;
+        for (long segmentLength : segmentLengths) {
+            if (segmentLength <= 0) {
+                throw new IllegalArgumentException("非法参数：分段长度必须大于0.segment length must be greater than 0.");
+            }
+            length += segmentLength;
+        }
+        mSegmentLengths = segmentLengths.clone();
+        mLength = length;
+        mCounters = new AtomicLongArray(segmentLengths.length * STRIDE);
+    }
+
+    /**
+     * 把总长度平均分成若干段，余数计入最后一段
+     *
+     * @param length       总长度
+     * @param segmentCount 分段数
+     * @return
+     */
+    public static SegmentedProgress split(long length, int segmentCount) {
+        if (segmentCount <= 0 || length < segmentCount) {
+            throw new IllegalArgumentException("非法参数：分段数必须大于0且不超过总长度.invalid segment count: " + segmentCount);
+        }
+        long[] lengths = new long[segmentCount];
+        long segmentLength = length / segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            lengths[i] = segmentLength;
+        }
+        lengths[segmentCount - 1] += length - segmentLength * segmentCount;
+        return new SegmentedProgress(lengths);
+    }
+
+    public int getSegmentCount() {
+        return mSegmentLengths.length;
+    }
+
+    public long getSegmentLength(int segment) {
+        return mSegmentLengths[segment];
+    }
+
+    /**
+     * @return 所有分段的总长度
+     */
+    public long getLength() {
+        return mLength;
+    }
+
+    /**
+     * 某一段已完成的长度，不超过该段长度
+     *
+     * @param segment
+     * @return
+     */
+    public long getSegmentProgress(int segment) {
+        return Math.min(mCounters.get(segment * STRIDE), mSegmentLengths[segment]);
+    }
+
+    /**
+     * 所有分段已完成长度之和
+     *
+     * @return
+     */
+    public long getProgress() {
+        long progress = 0;
+        for (int i = 0; i < mSegmentLengths.length; i++) {
+            progress += getSegmentProgress(i);
+        }
+        return progress;
+    }
+
+    /**
+     * 增加某一段的进度，可以在任意线程调用
+     *
+     * @param segment 分段序号
+     * @param delta   增量，不能为负数
+     */
+    public void addProgress(int segment, long delta) {
+        if (delta < 0) {
+            throw new IllegalArgumentException("非法参数：进度增量不能为负数.delta must not be negative.");
+        }
+        if (delta == 0) {
+            return;
+        }
+        mCounters.addAndGet(segment * STRIDE, delta);
+        notifyChanged();
+    }
+
+    /**
+     * 设置某一段的进度，例如断点续传时恢复已下载的长度
+     * 进度只会增加，小于当前值时忽略
+     *
+     * @param segment  分段序号
+     * @param progress 该段已完成的长度
+     */
+    public void setSegmentProgress(int segment, long progress) {
+        final int index = segment * STRIDE;
+        long current;
+        do {
+            current = mCounters.get(index);
+            if (progress <= current) {
+                return;
+            }
+        } while (!mCounters.compareAndSet(index, current, progress));
+        notifyChanged();
+    }
+
+    public void setOnSegmentProgressChangedListener(OnSegmentProgressChangedListener listener) {
+        mListener = listener;
+    }
+
+    private void notifyChanged() {
+        OnSegmentProgressChangedListener listener = mListener;
+        if (listener != null) {
+            listener.onSegmentProgressChanged(this);
+        }
+    }
+
+    public interface OnSegmentProgressChangedListener {
+        /**
+         * 在更新进度的线程中回调，实现方不应做耗时操作
+         */
+        void onSegmentProgressChanged(SegmentedProgress progress);
+    }
+}
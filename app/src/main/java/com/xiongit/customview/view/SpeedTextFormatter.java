@@ -0,0 +1,91 @@
+package com.xiongit.customview.view;
+
+/**
+ * 把速度和剩余时间格式化到调用方提供的char数组中，例如"2.3 MB/s · 剩余40秒"，无法估算剩余时间时为"0.0 B/s · 剩余时间未知"
+ * 不创建String或StringBuilder，可以在每帧调用
+ */
+final class SpeedTextFormatter {
+
+    /**
+     * 输出缓冲区的建议大小
+     */
+    static final int BUFFER_SIZE = 48;
+
+    private static final char[] SEPARATOR = " · ".toCharArray();
+    private static final char[] REMAINING = "剩余".toCharArray();
+    private static final char[] REMAINING_UNKNOWN = "剩余时间未知".toCharArray();
+    private static final char[][] UNITS = {
+            " B/s".toCharArray(), " KB/s".toCharArray(), " MB/s".toCharArray(), " GB/s".toCharArray()
+    };
+
+    private SpeedTextFormatter() {
+    }
+
+    /**
+     * @param bytesPerSecond 速度:byte/s
+     * @param etaSeconds     剩余时间:s，{@link BandwidthEstimator#ETA_UNKNOWN}时显示未知，其他小于0的值不显示
+     * @param out            输出缓冲区，至少{@link #BUFFER_SIZE}
+     * @return 写入的字符数
+     */
+    static int format(double bytesPerSecond, long etaSeconds, char[] out) {
+        int unit = 0;
+        double value = Math.max(0, bytesPerSecond);
+        while (value >= 1024 && unit < UNITS.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        // 保留一位小数
+        long tenths = Math.round(value * 10);
+        int pos = appendLong(out, 0, tenths / 10);
+        out[pos++] = '.';
+        out[pos++] = (char) ('0' + tenths % 10);
+        pos = append(out, pos, UNITS[unit]);
+
+        if (etaSeconds == BandwidthEstimator.ETA_UNKNOWN) {
+            pos = append(out, pos, SEPARATOR);
+            pos = append(out, pos, REMAINING_UNKNOWN);
+        } else if (etaSeconds >= 0) {
+            pos = append(out, pos, SEPARATOR);
+            pos = append(out, pos, REMAINING);
+            long hours = etaSeconds / 3600;
+            long minutes = etaSeconds % 3600 / 60;
+            long seconds = etaSeconds % 60;
+            if (hours > 0) {
+                pos = appendLong(out, pos, hours);
+                out[pos++] = '时';
+                pos = appendLong(out, pos, minutes);
+                out[pos++] = '分';
+            } else if (minutes > 0) {
+                pos = appendLong(out, pos, minutes);
+                out[pos++] = '分';
+                pos = appendLong(out, pos, seconds);
+                out[pos++] = '秒';
+            } else {
+                pos = appendLong(out, pos, seconds);
+                out[pos++] = '秒';
+            }
+        }
+        return pos;
+    }
+
+    private static int append(char[] out, int pos, char[] chars) {
+        System.arraycopy(chars, 0, out, pos, chars.length);
+        return pos + chars.length;
+    }
+
+    private static int appendLong(char[] out, int pos, long value) {
+        if (value == 0) {
+            out[pos] = '0';
+            return pos + 1;
+        }
+        int digits = 0;
+        for (long v = value; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+}
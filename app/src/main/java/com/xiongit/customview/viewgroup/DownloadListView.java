@@ -0,0 +1,632 @@
+package com.xiongit.customview.viewgroup;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.widget.OverScroller;
+
+import com.xiongit.customview.R;
+import com.xiongit.customview.view.DownloadButton;
+
+import java.util.ArrayList;
+
+/**
+ * 复用DownloadButton的下载列表，适合成千上万个下载项
+ * 1.每项的(状态, 进度)保存在基本类型数组中，不为每一项创建对象
+ * 2.只有可见的行持有DownloadButton，滚出屏幕的按钮放回回收堆，按新位置的数据重新绑定后再用
+ * 3.更新某一项时只写数组，该项正好在屏幕上时才转发给对应的按钮，所以每帧的工作量只和可见行数有关
+ * 4.行高固定，整个列表共用一个点击监听
+ * 所有方法只能在主线程调用，下载线程的更新需要先切到主线程（可以按帧合并后再批量调用）
+ * 高度需要确定（match_parent、固定值或wrap_content有上限），放在ScrollView中会绑定所有行
+ */
+public class DownloadListView extends ViewGroup {
+
+    private static final DownloadButton.DownloadState[] STATES = DownloadButton.DownloadState.values();
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * 列表项点击监听
+     */
+    public interface OnItemClickListener {
+        void onItemClick(DownloadListView listView, int position, DownloadButton.DownloadState state);
+    }
+
+    private int mRowHeight;// 行高
+
+    private byte[] mStates = new byte[INITIAL_CAPACITY];// 每项的状态，DownloadState.ordinal()
+    private int[] mProgresses = new int[INITIAL_CAPACITY];// 每项的进度
+    private int mItemCount;
+    private int mMaxProgress = 100;
+
+    private int mFirstPosition;// 第一个子控件对应的位置，子控件按位置顺序排列
+    private final ArrayList<DownloadButton> mScrapRows = new ArrayList<DownloadButton>();// 滚出屏幕、等待复用的行
+    private boolean mBlockLayoutRequests;// 绑定行时按钮内容变化引起的requestLayout不向上传递，由列表自己重新测量那一行
+    private int mRowWidthSpec;
+    private int mRowHeightSpec;
+
+    private OnItemClickListener mOnItemClickListener;
+    private final OnClickListener mRowClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            int index = indexOfChild(v);
+            if (index >= 0 && mOnItemClickListener != null) {
+                int position = mFirstPosition + index;
+                mOnItemClickListener.onItemClick(DownloadListView.this, position, getState(position));
+            }
+        }
+    };
+
+    // 拖动和惯性滑动
+    private final OverScroller mScroller;
+    private VelocityTracker mVelocityTracker;
+    private final int mTouchSlop;
+    private final int mMinFlingVelocity;
+    private final int mMaxFlingVelocity;
+    private boolean mIsBeingDragged;
+    private int mLastMotionY;
+    private int mActivePointerId = MotionEvent.INVALID_POINTER_ID;
+
+    private int mCreatedRowCount;// 创建的按钮数
+    private int mBindCount;// 绑定（含复用）行的次数
+    private int mRoutedUpdateCount;// 转发给可见行的更新数
+    private int mStoredUpdateCount;// 不在屏幕上、只写入数组的更新数
+
+    public DownloadListView(Context context) {
+        this(context, null);
+    }
+
+    public DownloadListView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public DownloadListView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        TypedArray ta = context.obtainStyledAttributes(attrs, R.styleable.DownloadListView);
+        mRowHeight = ta.getDimensionPixelSize(R.styleable.DownloadListView_row_height, dp2px(56));
+        ta.recycle();
+
+        mScroller = new OverScroller(context);
+        ViewConfiguration configuration = ViewConfiguration.get(context);
+        mTouchSlop = configuration.getScaledTouchSlop();
+        mMinFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+        mMaxFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+    }
+
+    public void setOnItemClickListener(OnItemClickListener listener) {
+        mOnItemClickListener = listener;
+    }
+
+    public void setRowHeight(int rowHeight) {
+        if (rowHeight <= 0) {
+            throw new IllegalArgumentException("非法参数：行高必须大于0.row height must be greater than 0.");
+        }
+        if (mRowHeight != rowHeight) {
+            mRowHeight = rowHeight;
+            requestLayout();
+        }
+    }
+
+    public int getRowHeight() {
+        return mRowHeight;
+    }
+
+    /**
+     * 所有行共用的最大进度
+     *
+     * @param max
+     */
+    public void setMaxProgress(int max) {
+        mMaxProgress = max;
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            bindRow((DownloadButton) getChildAt(i), mFirstPosition + i);
+        }
+    }
+
+    public int getMaxProgress() {
+        return mMaxProgress;
+    }
+
+    /**
+     * 设置列表项数量，已有的项保持不变，新增的项为暂停状态、进度为0
+     *
+     * @param count
+     */
+    public void setItemCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("非法参数：数量不能为负.count must not be negative.");
+        }
+        if (count > mStates.length) {
+            int capacity = Math.max(count, mStates.length * 2);
+            byte[] states = new byte[capacity];
+            int[] progresses = new int[capacity];
+            System.arraycopy(mStates, 0, states, 0, mItemCount);
+            System.arraycopy(mProgresses, 0, progresses, 0, mItemCount);
+            mStates = states;
+            mProgresses = progresses;
+        } else if (count < mItemCount) {
+            // 缩小后再扩大时，新增的项要从初始值开始
+            for (int i = count; i < mItemCount; i++) {
+                mStates[i] = 0;
+                mProgresses[i] = 0;
+            }
+            // 已经不存在的项立即回收，避免之后扩大时还显示旧数据
+            for (int i = getChildCount() - 1; i >= Math.max(0, count - mFirstPosition); i--) {
+                recycleRow(i);
+            }
+        }
+        mItemCount = count;
+        requestLayout();
+    }
+
+    public int getItemCount() {
+        return mItemCount;
+    }
+
+    /**
+     * 同时更新一项的状态和进度，该项在屏幕上时立即刷新对应的按钮
+     *
+     * @param position
+     * @param state
+     * @param progress
+     */
+    public void setItem(int position, DownloadButton.DownloadState state, int progress) {
+        checkPosition(position);
+        mStates[position] = (byte) state.ordinal();
+        mProgresses[position] = progress;
+        DownloadButton row = getRowAt(position);
+        if (row == null) {
+            mStoredUpdateCount++;
+            return;
+        }
+        mRoutedUpdateCount++;
+        bindRow(row, position);
+    }
+
+    public void setState(int position, DownloadButton.DownloadState state) {
+        setItem(position, state, getProgress(position));
+    }
+
+    /**
+     * 更新一项的进度，不在屏幕上时只写入数组
+     *
+     * @param position
+     * @param progress
+     */
+    public void setProgress(int position, int progress) {
+        checkPosition(position);
+        mProgresses[position] = progress;
+        DownloadButton row = getRowAt(position);
+        if (row == null) {
+            mStoredUpdateCount++;
+            return;
+        }
+        mRoutedUpdateCount++;
+        row.setProgress(progress);
+    }
+
+    public DownloadButton.DownloadState getState(int position) {
+        checkPosition(position);
+        return STATES[mStates[position]];
+    }
+
+    public int getProgress(int position) {
+        checkPosition(position);
+        return mProgresses[position];
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= mItemCount) {
+            throw new IndexOutOfBoundsException("position " + position + " out of [0, " + mItemCount + ")");
+        }
+    }
+
+    /**
+     * 位置对应的按钮，不在屏幕上时返回null
+     *
+     * @param position
+     * @return
+     */
+    public DownloadButton getRowAt(int position) {
+        int index = position - mFirstPosition;
+        if (index < 0 || index >= getChildCount()) {
+            return null;
+        }
+        return (DownloadButton) getChildAt(index);
+    }
+
+    public int getFirstVisiblePosition() {
+        return mFirstPosition;
+    }
+
+    /**
+     * 最后一个可见位置，没有可见行时为{@link #getFirstVisiblePosition()} - 1
+     *
+     * @return
+     */
+    public int getLastVisiblePosition() {
+        return mFirstPosition + getChildCount() - 1;
+    }
+
+    /**
+     * 滚动到让该位置出现在顶部
+     *
+     * @param position
+     */
+    public void scrollToPosition(int position) {
+        checkPosition(position);
+        mScroller.abortAnimation();
+        scrollTo(getScrollX(), position * mRowHeight);
+    }
+
+    /**
+     * 创建的按钮数，只和屏幕能容纳的行数有关
+     *
+     * @return
+     */
+    public int getCreatedRowCount() {
+        return mCreatedRowCount;
+    }
+
+    public int getScrapRowCount() {
+        return mScrapRows.size();
+    }
+
+    public int getBindCount() {
+        return mBindCount;
+    }
+
+    public int getRoutedUpdateCount() {
+        return mRoutedUpdateCount;
+    }
+
+    public int getStoredUpdateCount() {
+        return mStoredUpdateCount;
+    }
+
+    /**
+     * 创建新的一行，子类可以重写来设置样式
+     * 默认按已知文字测量，复用和刷新时不再排版TextView的文字
+     *
+     * @return
+     */
+    protected DownloadButton createRow() {
+        DownloadButton row = new DownloadButton(getContext());
+        row.setMeasureMode(DownloadButton.MEASURE_MODE_LABELS);
+        return row;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int contentHeight = mItemCount * mRowHeight + getPaddingTop() + getPaddingBottom();
+        int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
+        int height = resolveSize(Math.max(contentHeight, getSuggestedMinimumHeight()), heightMeasureSpec);
+        setMeasuredDimension(width, height);
+
+        mRowWidthSpec = MeasureSpec.makeMeasureSpec(
+                Math.max(0, width - getPaddingLeft() - getPaddingRight()), MeasureSpec.EXACTLY);
+        mRowHeightSpec = MeasureSpec.makeMeasureSpec(mRowHeight, MeasureSpec.EXACTLY);
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            getChildAt(i).measure(mRowWidthSpec, mRowHeightSpec);
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (getScrollY() > getMaxScrollY()) {
+            // 数量变少或者变高后，滚动位置不能超出内容
+            super.scrollTo(getScrollX(), getMaxScrollY());
+        }
+        fillRows();
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            layoutRow(getChildAt(i), mFirstPosition + i);
+        }
+    }
+
+    @Override
+    public void requestLayout() {
+        if (!mBlockLayoutRequests) {
+            super.requestLayout();
+        }
+    }
+
+    private int getMaxScrollY() {
+        return Math.max(0, mItemCount * mRowHeight + getPaddingTop() + getPaddingBottom() - getHeight());
+    }
+
+    /**
+     * 按当前滚动位置回收滚出屏幕的行，并绑定新出现的行
+     */
+    private void fillRows() {
+        int first = 0;
+        int end = 0;// 最后一个可见位置的下一个
+        int viewportHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (mItemCount > 0 && viewportHeight > 0 && mRowHeight > 0) {
+            int top = getScrollY();
+            first = Math.min(mItemCount, top / mRowHeight);
+            end = Math.min(mItemCount, (top + viewportHeight + mRowHeight - 1) / mRowHeight);
+        }
+
+        int childCount = getChildCount();
+        if (childCount > 0 && (mFirstPosition >= end || mFirstPosition + childCount <= first)) {
+            // 没有重叠，全部回收
+            while (childCount > 0) {
+                recycleRow(--childCount);
+            }
+        }
+        if (childCount == 0) {
+            mFirstPosition = first;
+        }
+        while (childCount > 0 && mFirstPosition < first) {
+            recycleRow(0);
+            mFirstPosition++;
+            childCount--;
+        }
+        while (childCount > 0 && mFirstPosition + childCount > end) {
+            recycleRow(--childCount);
+        }
+        while (mFirstPosition > first) {
+            mFirstPosition--;
+            addRow(0, mFirstPosition);
+        }
+        while (mFirstPosition + getChildCount() < end) {
+            addRow(getChildCount(), mFirstPosition + getChildCount());
+        }
+    }
+
+    /**
+     * 与ListView一样只把按钮从列表上摘下，不触发离开窗口，复用时直接挂回去
+     */
+    private void recycleRow(int index) {
+        DownloadButton row = (DownloadButton) getChildAt(index);
+        detachViewFromParent(index);
+        mScrapRows.add(row);
+    }
+
+    private void addRow(int index, int position) {
+        int scrapCount = mScrapRows.size();
+        DownloadButton row;
+        if (scrapCount > 0) {
+            row = mScrapRows.remove(scrapCount - 1);
+            attachViewToParent(row, index, row.getLayoutParams());
+        } else {
+            row = createRow();
+            row.setOnClickListener(mRowClickListener);
+            mCreatedRowCount++;
+            addViewInLayout(row, index, generateDefaultLayoutParams(), true);
+        }
+        bindRow(row, position);
+    }
+
+    /**
+     * 按数组中的数据刷新按钮并摆放到位置上，内容变化引起的重新测量由列表自己完成，不会让整个列表重新布局
+     */
+    private void bindRow(DownloadButton row, int position) {
+        mBindCount++;
+        mBlockLayoutRequests = true;
+        try {
+            if (row.getMaxProgress() != mMaxProgress) {
+                row.setMaxProgress(mMaxProgress);
+            }
+            // 复用的按钮可能处在任意状态，直接按数据中的状态设置外观，新建的和复用的按钮显示一致
+            row.bindDownloadState(STATES[mStates[position]]);
+            row.setProgress(mProgresses[position]);
+        } finally {
+            mBlockLayoutRequests = false;
+        }
+        layoutRow(row, position);
+    }
+
+    private void layoutRow(View row, int position) {
+        if (row.isLayoutRequested() || row.getMeasuredWidth() != MeasureSpec.getSize(mRowWidthSpec)) {
+            row.measure(mRowWidthSpec, mRowHeightSpec);
+        }
+        int left = getPaddingLeft();
+        int top = getPaddingTop() + position * mRowHeight;
+        row.layout(left, top, left + row.getMeasuredWidth(), top + mRowHeight);
+    }
+
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        fillRows();
+    }
+
+    @Override
+    public void scrollTo(int x, int y) {
+        int clamped = Math.max(0, Math.min(y, getMaxScrollY()));
+        if (clamped != getScrollY()) {
+            super.scrollTo(x, clamped);
+        }
+    }
+
+    @Override
+    public void computeScroll() {
+        if (mScroller.computeScrollOffset()) {
+            scrollTo(getScrollX(), mScroller.getCurrY());
+            invalidate();
+        }
+    }
+
+    @Override
+    protected int computeVerticalScrollRange() {
+        return mItemCount * mRowHeight;
+    }
+
+    @Override
+    protected int computeVerticalScrollOffset() {
+        return getScrollY();
+    }
+
+    @Override
+    protected int computeVerticalScrollExtent() {
+        return getHeight() - getPaddingTop() - getPaddingBottom();
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        int action = ev.getActionMasked();
+        if (action == MotionEvent.ACTION_MOVE && mIsBeingDragged) {
+            return true;
+        }
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                mLastMotionY = (int) ev.getY();
+                mActivePointerId = ev.getPointerId(0);
+                // 正在惯性滑动时按下，停住并直接开始拖动，不把点击交给行
+                mIsBeingDragged = !mScroller.isFinished();
+                mScroller.abortAnimation();
+                obtainVelocityTracker().addMovement(ev);
+                break;
+
+            case MotionEvent.ACTION_MOVE:
+                int pointerIndex = ev.findPointerIndex(mActivePointerId);
+                if (pointerIndex < 0) {
+                    break;
+                }
+                int y = (int) ev.getY(pointerIndex);
+                if (Math.abs(y - mLastMotionY) > mTouchSlop) {
+                    startDrag();
+                    mLastMotionY = y;
+                }
+                obtainVelocityTracker().addMovement(ev);
+                break;
+
+            case MotionEvent.ACTION_POINTER_UP:
+                onSecondaryPointerUp(ev);
+                break;
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                endDrag();
+                break;
+        }
+        return mIsBeingDragged;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+        obtainVelocityTracker().addMovement(ev);
+        switch (ev.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mScroller.abortAnimation();
+                mLastMotionY = (int) ev.getY();
+                mActivePointerId = ev.getPointerId(0);
+                break;
+
+            case MotionEvent.ACTION_MOVE:
+                int pointerIndex = ev.findPointerIndex(mActivePointerId);
+                if (pointerIndex < 0) {
+                    break;
+                }
+                int y = (int) ev.getY(pointerIndex);
+                int deltaY = mLastMotionY - y;
+                if (!mIsBeingDragged && Math.abs(deltaY) > mTouchSlop) {
+                    startDrag();
+                    deltaY += deltaY > 0 ? -mTouchSlop : mTouchSlop;
+                }
+                if (mIsBeingDragged) {
+                    mLastMotionY = y;
+                    scrollBy(0, deltaY);
+                }
+                break;
+
+            case MotionEvent.ACTION_POINTER_DOWN:
+                int index = ev.getActionIndex();
+                mLastMotionY = (int) ev.getY(index);
+                mActivePointerId = ev.getPointerId(index);
+                break;
+
+            case MotionEvent.ACTION_POINTER_UP:
+                onSecondaryPointerUp(ev);
+                break;
+
+            case MotionEvent.ACTION_UP:
+                if (mIsBeingDragged) {
+                    mVelocityTracker.computeCurrentVelocity(1000, mMaxFlingVelocity);
+                    int velocity = (int) mVelocityTracker.getYVelocity(mActivePointerId);
+                    if (Math.abs(velocity) > mMinFlingVelocity) {
+                        mScroller.fling(getScrollX(), getScrollY(), 0, -velocity, 0, 0, 0, getMaxScrollY());
+                        invalidate();
+                    }
+                }
+                endDrag();
+                break;
+
+            case MotionEvent.ACTION_CANCEL:
+                endDrag();
+                break;
+        }
+        return true;
+    }
+
+    private void startDrag() {
+        mIsBeingDragged = true;
+        ViewParent parent = getParent();
+        if (parent != null) {
+            parent.requestDisallowInterceptTouchEvent(true);
+        }
+    }
+
+    private void endDrag() {
+        mIsBeingDragged = false;
+        mActivePointerId = MotionEvent.INVALID_POINTER_ID;
+        if (mVelocityTracker != null) {
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
+        }
+    }
+
+    private void onSecondaryPointerUp(MotionEvent ev) {
+        int pointerIndex = ev.getActionIndex();
+        if (ev.getPointerId(pointerIndex) == mActivePointerId) {
+            // 抬起的是当前跟随的手指，换成另一根
+            int newPointerIndex = pointerIndex == 0 ? 1 : 0;
+            mLastMotionY = (int) ev.getY(newPointerIndex);
+            mActivePointerId = ev.getPointerId(newPointerIndex);
+            if (mVelocityTracker != null) {
+                mVelocityTracker.clear();
+            }
+        }
+    }
+
+    private VelocityTracker obtainVelocityTracker() {
+        if (mVelocityTracker == null) {
+            mVelocityTracker = VelocityTracker.obtain();
+        }
+        return mVelocityTracker;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mScroller.abortAnimation();
+        // 回收堆中的按钮没有经过正常的移除，这里补发离开窗口并丢弃，重新显示时按需创建
+        for (int i = 0, size = mScrapRows.size(); i < size; i++) {
+            removeDetachedView(mScrapRows.get(i), false);
+        }
+        mScrapRows.clear();
+    }
+
+    @Override
+    public boolean shouldDelayChildPressedState() {
+        return true;
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(LayoutParams.MATCH_PARENT, mRowHeight);
+    }
+
+    private int dp2px(int dp) {
+        DisplayMetrics displayMetrics = getContext().getResources().getDisplayMetrics();
+        float density = displayMetrics.density;
+        return (int) (density * dp + 0.5f);
+    }
+}
@@ -0,0 +1,253 @@
+package com.xiongit.customview.viewgroup;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.xiongit.customview.R;
+
+/**
+ * 自动换行的流式布局，适合标签、分类等大量子控件
+ * 1.每个子控件在LayoutParams中记住上次测量用的MeasureSpec，规格没变且子控件没有请求重新布局时不再测量
+ * 2.换行结果记在int数组里，onLayout按测量时的分行一次摆放完，测量和摆放过程中不分配对象
+ * 3.子控件支持margin，行内顶部对齐
+ */
+public class FlowLayout extends ViewGroup {
+
+    private static final int INITIAL_LINE_CAPACITY = 8;
+
+    private int mHorizontalSpacing;// 水平间距
+    private int mVerticalSpacing;// 垂直间距
+
+    private int[] mLineEnds = new int[INITIAL_LINE_CAPACITY];// 每行最后一个子控件的下一个下标
+    private int[] mLineHeights = new int[INITIAL_LINE_CAPACITY];// 每行的高度
+    private int mLineCount;
+
+    private int mChildMeasureCount;// 实际测量子控件的次数
+    private int mChildMeasureSkipCount;// 命中缓存跳过测量的次数
+
+    public FlowLayout(Context context) {
+        this(context, null);
+    }
+
+    public FlowLayout(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public FlowLayout(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        TypedArray ta = context.obtainStyledAttributes(attrs, R.styleable.FlowLayout);
+        mHorizontalSpacing = ta.getDimensionPixelSize(R.styleable.FlowLayout_flow_horizontal_spacing, 0);
+        mVerticalSpacing = ta.getDimensionPixelSize(R.styleable.FlowLayout_flow_vertical_spacing, 0);
+        ta.recycle();
+    }
+
+    public void setHorizontalSpacing(int spacing) {
+        if (mHorizontalSpacing != spacing) {
+            mHorizontalSpacing = spacing;
+            requestLayout();
+        }
+    }
+
+    public int getHorizontalSpacing() {
+        return mHorizontalSpacing;
+    }
+
+    public void setVerticalSpacing(int spacing) {
+        if (mVerticalSpacing != spacing) {
+            mVerticalSpacing = spacing;
+            requestLayout();
+        }
+    }
+
+    public int getVerticalSpacing() {
+        return mVerticalSpacing;
+    }
+
+    /**
+     * 最近一次测量得到的行数
+     *
+     * @return
+     */
+    public int getLineCount() {
+        return mLineCount;
+    }
+
+    public int getChildMeasureCount() {
+        return mChildMeasureCount;
+    }
+
+    public int getChildMeasureSkipCount() {
+        return mChildMeasureSkipCount;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int horizontalPadding = getPaddingLeft() + getPaddingRight();
+        int verticalPadding = getPaddingTop() + getPaddingBottom();
+        int maxLineWidth = MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED
+                ? Integer.MAX_VALUE : MeasureSpec.getSize(widthMeasureSpec) - horizontalPadding;
+
+        int childCount = getChildCount();
+        int lineCount = 0;
+        int lineWidth = 0;
+        int lineHeight = 0;
+        int lineChildren = 0;// 当前行已放的可见子控件数
+        int contentWidth = 0;
+        int contentHeight = 0;
+        int childState = 0;
+        for (int i = 0; i < childCount; i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+            LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            measureChildCached(child, lp, widthMeasureSpec, horizontalPadding, heightMeasureSpec, verticalPadding);
+            int childWidth = child.getMeasuredWidth() + lp.leftMargin + lp.rightMargin;
+            int childHeight = child.getMeasuredHeight() + lp.topMargin + lp.bottomMargin;
+            childState = combineMeasuredStates(childState, child.getMeasuredState());
+
+            if (lineChildren > 0 && lineWidth + mHorizontalSpacing + childWidth > maxLineWidth) {
+                // 放不下，在i之前换行
+                lineCount = appendLine(lineCount, i, lineHeight);
+                contentWidth = Math.max(contentWidth, lineWidth);
+                contentHeight += lineHeight + mVerticalSpacing;
+                lineWidth = 0;
+                lineHeight = 0;
+                lineChildren = 0;
+            }
+            lineWidth += lineChildren > 0 ? mHorizontalSpacing + childWidth : childWidth;
+            lineHeight = Math.max(lineHeight, childHeight);
+            lineChildren++;
+        }
+        if (lineChildren > 0) {
+            lineCount = appendLine(lineCount, childCount, lineHeight);
+            contentWidth = Math.max(contentWidth, lineWidth);
+            contentHeight += lineHeight;
+        }
+        mLineCount = lineCount;
+
+        int width = Math.max(contentWidth + horizontalPadding, getSuggestedMinimumWidth());
+        int height = Math.max(contentHeight + verticalPadding, getSuggestedMinimumHeight());
+        setMeasuredDimension(resolveSizeAndState(width, widthMeasureSpec, childState),
+                resolveSizeAndState(height, heightMeasureSpec, childState << MEASURED_HEIGHT_STATE_SHIFT));
+    }
+
+    /**
+     * 规格和上次相同、子控件自身也没有请求重新布局（内容、LayoutParams都没变）时，上次的测量结果仍然有效
+     */
+    private void measureChildCached(View child, LayoutParams lp, int widthMeasureSpec, int horizontalPadding,
+                                    int heightMeasureSpec, int verticalPadding) {
+        int childWidthSpec = getChildMeasureSpec(widthMeasureSpec,
+                horizontalPadding + lp.leftMargin + lp.rightMargin, lp.width);
+        int childHeightSpec = getChildMeasureSpec(heightMeasureSpec,
+                verticalPadding + lp.topMargin + lp.bottomMargin, lp.height);
+        if (childWidthSpec == lp.mWidthSpec && childHeightSpec == lp.mHeightSpec && !child.isLayoutRequested()) {
+            mChildMeasureSkipCount++;
+            return;
+        }
+        child.measure(childWidthSpec, childHeightSpec);
+        lp.mWidthSpec = childWidthSpec;
+        lp.mHeightSpec = childHeightSpec;
+        mChildMeasureCount++;
+    }
+
+    /**
+     * 记录一行，数组不够时按2倍扩容，行数稳定后不再分配
+     */
+    private int appendLine(int lineCount, int end, int height) {
+        if (lineCount == mLineEnds.length) {
+            int[] ends = new int[lineCount * 2];
+            int[] heights = new int[lineCount * 2];
+            System.arraycopy(mLineEnds, 0, ends, 0, lineCount);
+            System.arraycopy(mLineHeights, 0, heights, 0, lineCount);
+            mLineEnds = ends;
+            mLineHeights = heights;
+        }
+        mLineEnds[lineCount] = end;
+        mLineHeights[lineCount] = height;
+        return lineCount + 1;
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        int childCount = getChildCount();
+        int paddingLeft = getPaddingLeft();
+        int top = getPaddingTop();
+        int index = 0;
+        for (int line = 0; line < mLineCount; line++) {
+            int end = Math.min(mLineEnds[line], childCount);
+            int left = paddingLeft;
+            for (; index < end; index++) {
+                View child = getChildAt(index);
+                if (child.getVisibility() == GONE) {
+                    continue;
+                }
+                LayoutParams lp = (LayoutParams) child.getLayoutParams();
+                int childLeft = left + lp.leftMargin;
+                int childTop = top + lp.topMargin;
+                child.layout(childLeft, childTop,
+                        childLeft + child.getMeasuredWidth(), childTop + child.getMeasuredHeight());
+                left = childLeft + child.getMeasuredWidth() + lp.rightMargin + mHorizontalSpacing;
+            }
+            top += mLineHeights[line] + mVerticalSpacing;
+        }
+    }
+
+    @Override
+    public boolean shouldDelayChildPressedState() {
+        return false;
+    }
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+        return p instanceof LayoutParams;
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new LayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+        if (p instanceof MarginLayoutParams) {
+            return new LayoutParams((MarginLayoutParams) p);
+        }
+        return new LayoutParams(p);
+    }
+
+    /**
+     * 带测量缓存的LayoutParams
+     */
+    public static class LayoutParams extends MarginLayoutParams {
+
+        private static final int NO_SPEC = -1;// 不是合法的MeasureSpec，表示还没测量过
+
+        int mWidthSpec = NO_SPEC;// 上次测量用的宽度规格
+        int mHeightSpec = NO_SPEC;// 上次测量用的高度规格
+
+        public LayoutParams(Context c, AttributeSet attrs) {
+            super(c, attrs);
+        }
+
+        public LayoutParams(int width, int height) {
+            super(width, height);
+        }
+
+        public LayoutParams(MarginLayoutParams source) {
+            super(source);
+        }
+
+        public LayoutParams(ViewGroup.LayoutParams source) {
+            super(source);
+        }
+    }
+}
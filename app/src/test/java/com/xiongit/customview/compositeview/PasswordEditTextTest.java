@@ -0,0 +1,69 @@
+package com.xiongit.customview.compositeview;
+
+import com.xiongit.customview.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.nio.CharBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 验证密码可以不经过String读取，清除后输入框和缓冲区都被清零
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class PasswordEditTextTest {
+
+    private PasswordEditText mEditText;
+
+    @Before
+    public void setUp() throws Exception {
+        mEditText = new PasswordEditText(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void passwordIsMirroredIntoBuffer() throws Exception {
+        mEditText.setText("secret");
+        mEditText.getText().append('1');
+        mEditText.getText().delete(0, 1);
+
+        char[] dest = new char[PasswordEditText.DEFAULT_MAX_LENGTH];
+        int length = mEditText.getPassword(dest);
+        assertEquals(6, length);
+        assertArrayEquals("ecret1".toCharArray(), java.util.Arrays.copyOf(dest, length));
+
+        CharBuffer view = mEditText.getPasswordBuffer();
+        assertEquals(6, view.remaining());
+        assertEquals('e', view.get(0));
+    }
+
+    @Test
+    public void clearPasswordWipesEverything() throws Exception {
+        mEditText.setText("secret");
+        CharBuffer view = mEditText.getPasswordBuffer();
+        mEditText.clearPassword();
+
+        assertEquals(0, mEditText.getText().length());
+        assertEquals(0, mEditText.getPasswordLength());
+        // 之前拿到的视图指向同一块内存，已经被清零
+        view.limit(6).position(0);
+        for (int i = 0; i < 6; i++) {
+            assertEquals('\0', view.get(i));
+        }
+    }
+
+    @Test
+    public void inputIsLimitedToMaxLength() throws Exception {
+        mEditText.setMaxLength(4);
+        mEditText.setText("123456");
+        assertEquals(4, mEditText.getPasswordLength());
+        assertEquals(4, mEditText.getMaxLength());
+    }
+}
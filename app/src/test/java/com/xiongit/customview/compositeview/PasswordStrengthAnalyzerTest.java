@@ -0,0 +1,62 @@
+package com.xiongit.customview.compositeview;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 验证任意位置的增删编辑后，增量统计与从头统计的结果一致
+ */
+public class PasswordStrengthAnalyzerTest {
+
+    private static final String ALPHABET = "aabcxyzABCXYZ0123789!@#";
+
+    @Test
+    public void incrementalMatchesFullScanForRandomEdits() throws Exception {
+        Random random = new Random(42);
+        PasswordStrengthAnalyzer incremental = new PasswordStrengthAnalyzer();
+        PasswordStrengthAnalyzer full = new PasswordStrengthAnalyzer();
+        StringBuilder text = new StringBuilder();
+
+        for (int step = 0; step < 20000; step++) {
+            int start = random.nextInt(text.length() + 1);
+            int count = Math.min(text.length() - start, random.nextInt(3));
+            int after = text.length() > 32 ? 0 : random.nextInt(3);
+            StringBuilder inserted = new StringBuilder();
+            for (int i = 0; i < after; i++) {
+                inserted.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+
+            incremental.beforeTextChanged(text, start, count, after);
+            text.replace(start, start + count, inserted.toString());
+            incremental.onTextChanged(text, start, count, after);
+
+            full.analyze(text);
+            assertEquals(full.getLength(), incremental.getLength());
+            assertEquals(full.getClassCount(), incremental.getClassCount());
+            assertEquals(full.getRepeatPairs(), incremental.getRepeatPairs());
+            assertEquals(full.getSequencePairs(), incremental.getSequencePairs());
+            assertEquals(full.getScore(), incremental.getScore());
+        }
+    }
+
+    @Test
+    public void scoresReflectVarietyAndPatterns() throws Exception {
+        PasswordStrengthAnalyzer analyzer = new PasswordStrengthAnalyzer();
+        analyzer.analyze("");
+        assertEquals(PasswordStrengthAnalyzer.LEVEL_NONE, analyzer.getLevel());
+
+        analyzer.analyze("abcdef");
+        assertEquals(5, analyzer.getSequencePairs());
+        assertEquals(PasswordStrengthAnalyzer.LEVEL_WEAK, analyzer.getLevel());
+
+        analyzer.analyze("aaaa");
+        assertEquals(3, analyzer.getRepeatPairs());
+
+        analyzer.analyze("Tr0ub4dor&3xQ!");
+        assertEquals(4, analyzer.getClassCount());
+        assertEquals(PasswordStrengthAnalyzer.LEVEL_VERY_STRONG, analyzer.getLevel());
+    }
+}
@@ -0,0 +1,156 @@
+package com.xiongit.customview.compositeview;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 验证校验流水线在多线程并发校验、结果乱序完成时，只会应用最新输入的结果，过期结果从不回调，
+ * 以及被新输入替换或取消的快照会被清零
+ */
+public class PasswordValidationPipelineTest {
+
+    private ScheduledThreadPoolExecutor mScheduler;
+    private ExecutorService mCallbackExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        // 多个线程，被取消的旧校验可能还在运行，与新校验同时完成
+        mScheduler = new ScheduledThreadPoolExecutor(4);
+        mCallbackExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mScheduler.shutdownNow();
+        mCallbackExecutor.shutdownNow();
+    }
+
+    @Test
+    public void staleAndOutOfOrderResultsAreNeverApplied() throws Exception {
+        final int inputs = 300;
+        final List<PasswordValidationPipeline.Result> applied = new ArrayList<PasswordValidationPipeline.Result>();
+        final List<String> appliedInputs = new ArrayList<String>();
+        final CountDownLatch lastApplied = new CountDownLatch(1);
+        final String[] submitted = new String[inputs + 1];
+
+        PasswordValidationPipeline pipeline = new PasswordValidationPipeline(mScheduler, mCallbackExecutor, 0);
+        final Random random = new Random(1);
+        pipeline.addValidator(new PasswordValidationPipeline.Validator() {
+            @Override
+            public String validate(CharSequence password) {
+                // 故意不响应中断，耗时随机，让结果乱序完成
+                long end = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(random.nextInt(3000));
+                while (System.nanoTime() < end) {
+                    Thread.yield();
+                }
+                return password.toString();
+            }
+        });
+        pipeline.setOnValidatedListener(new PasswordValidationPipeline.OnValidatedListener() {
+            @Override
+            public void onValidated(PasswordValidationPipeline.Result result) {
+                applied.add(result);
+                appliedInputs.add(result.getErrors().get(0));
+                if (result.getGeneration() == inputs) {
+                    lastApplied.countDown();
+                }
+            }
+        });
+
+        for (int i = 1; i <= inputs; i++) {
+            String input = "password" + i;
+            submitted[i] = input;
+            assertEquals(i, pipeline.submit(input));
+            if (random.nextInt(4) == 0) {
+                Thread.sleep(1);
+            }
+        }
+
+        assertTrue(lastApplied.await(10, TimeUnit.SECONDS));
+        // 等可能迟到的旧结果也到达回调线程
+        Thread.sleep(100);
+        mCallbackExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+
+        int previous = 0;
+        for (int i = 0; i < applied.size(); i++) {
+            int generation = applied.get(i).getGeneration();
+            assertTrue("results applied out of order", generation > previous);
+            assertEquals(submitted[generation], appliedInputs.get(i));
+            previous = generation;
+        }
+        assertEquals(inputs, previous);
+    }
+
+    @Test
+    public void rapidInputIsDebounced() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        final PasswordValidationPipeline.Result[] result = new PasswordValidationPipeline.Result[1];
+        PasswordValidationPipeline pipeline = new PasswordValidationPipeline(mScheduler, mCallbackExecutor, 200);
+        pipeline.addValidator(new PasswordValidationPipeline.Validator() {
+            @Override
+            public String validate(CharSequence password) {
+                runs.incrementAndGet();
+                return password.length() < 8 ? "too short" : null;
+            }
+        });
+        pipeline.setOnValidatedListener(new PasswordValidationPipeline.OnValidatedListener() {
+            @Override
+            public void onValidated(PasswordValidationPipeline.Result r) {
+                result[0] = r;
+                done.countDown();
+            }
+        });
+
+        char[] input = "abcdefghij".toCharArray();
+        for (int length = 1; length <= input.length; length++) {
+            pipeline.submit(input, length);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertEquals(input.length, result[0].getGeneration());
+        assertTrue(result[0].isValid());
+    }
+
+    @Test
+    public void supersededSnapshotsAreZeroed() throws Exception {
+        // 去抖时间足够长，被替换的任务都不会执行
+        PasswordValidationPipeline pipeline = new PasswordValidationPipeline(mScheduler, mCallbackExecutor, 60000);
+        pipeline.submit("secret1");
+        char[] first = pipeline.getPendingSnapshot();
+        pipeline.submit("secret12".toCharArray(), 8);
+        char[] second = pipeline.getPendingSnapshot();
+        assertArrayEquals(new char[7], first);
+        assertArrayEquals("secret12".toCharArray(), second);
+
+        pipeline.cancel();
+        assertArrayEquals(new char[8], second);
+        assertNull(pipeline.getPendingSnapshot());
+
+        pipeline.submit("secret123");
+        char[] third = pipeline.getPendingSnapshot();
+        pipeline.shutdown();
+        assertArrayEquals(new char[9], third);
+    }
+}
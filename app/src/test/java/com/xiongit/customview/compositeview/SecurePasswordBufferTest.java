@@ -0,0 +1,85 @@
+package com.xiongit.customview.compositeview;
+
+import android.text.Editable;
+import android.text.InputFilter;
+import android.text.SpannableStringBuilder;
+
+import com.xiongit.customview.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 验证清除后Editable的内部数组里不再残留删掉的字符
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class SecurePasswordBufferTest {
+
+    private static final int CAPACITY = 18;
+
+    private SecurePasswordBuffer mBuffer;
+    private Editable mEditable;
+    private InputFilter[] mFilters;
+
+    @Before
+    public void setUp() throws Exception {
+        mBuffer = new SecurePasswordBuffer(CAPACITY);
+        mEditable = mBuffer.getEditableFactory().newEditable("");
+        mFilters = new InputFilter[]{new InputFilter.LengthFilter(CAPACITY)};
+        mEditable.setFilters(mFilters);
+        mEditable.setSpan(mBuffer, 0, 0, Editable.SPAN_INCLUSIVE_INCLUSIVE);
+    }
+
+    @Test
+    public void wipeOverwritesDeletedChars() throws Exception {
+        type(0, "password123");
+        for (int i = 0; i < 7; i++) {
+            mEditable.delete(mEditable.length() - 1, mEditable.length());
+        }
+        assertEquals("pass", mEditable.toString());
+
+        mBuffer.wipe(mEditable);
+
+        assertEquals(0, mEditable.length());
+        assertBackingArrayIsZero();
+        assertSame(mFilters, mEditable.getFilters());
+    }
+
+    @Test
+    public void wipeOverwritesCharsMovedByMidTextEdits() throws Exception {
+        type(0, "password123");
+        // 在中间和开头编辑会移动间隙，内容被挪到数组尾部
+        type(4, "XY");
+        type(0, "Z");
+        mEditable.delete(0, 5);
+
+        mBuffer.wipe(mEditable);
+
+        assertEquals(0, mEditable.length());
+        assertBackingArrayIsZero();
+    }
+
+    private void type(int where, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            mEditable.insert(where + i, text.substring(i, i + 1));
+        }
+    }
+
+    private void assertBackingArrayIsZero() throws Exception {
+        Field field = SpannableStringBuilder.class.getDeclaredField("mText");
+        field.setAccessible(true);
+        char[] text = (char[]) field.get(mEditable);
+        for (int i = 0; i < text.length; i++) {
+            assertEquals("index " + i, '\0', text[i]);
+        }
+    }
+}
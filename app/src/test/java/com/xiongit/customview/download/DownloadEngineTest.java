@@ -0,0 +1,127 @@
+package com.xiongit.customview.download;
+
+import com.xiongit.customview.view.DownloadButton;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用进程内HTTP服务器验证分段下载和断点续传
+ */
+public class DownloadEngineTest {
+
+    private static final int LENGTH = 3 * 1024 * 1024 + 17;
+
+    private byte[] mContent;
+    private LocalHttpServer mServer;
+    private DownloadEngine mEngine;
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mContent = new byte[LENGTH];
+        new Random(42).nextBytes(mContent);
+        mServer = new LocalHttpServer(mContent);
+        mEngine = new DownloadEngine(4);
+        mFile = File.createTempFile("download", ".bin");
+        assertTrue(mFile.delete());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mEngine.shutdown();
+        mServer.stop();
+        mFile.delete();
+        new File(mFile.getPath() + ".ckpt").delete();
+    }
+
+    @Test
+    public void downloadsAllSegments() throws Exception {
+        DownloadTask task = mEngine.newTask(mServer.url(), mFile).setSegmentCount(5).setBufferSize(4096);
+
+        assertEquals(DownloadButton.DownloadState.FINISHED, runToEnd(task));
+        assertEquals(LENGTH, task.getProgress().getProgress());
+        assertArrayEquals(mContent, readFile(mFile));
+        assertFalse(new File(mFile.getPath() + ".ckpt").exists());
+    }
+
+    @Test
+    public void resumesFromCheckpointAfterFailure() throws Exception {
+        // 每个请求只返回1MB就断开，第一次下载必然失败
+        mServer.setFailAfterBytes(1024 * 1024);
+        DownloadTask first = mEngine.newTask(mServer.url(), mFile).setSegmentCount(3);
+        assertEquals(DownloadButton.DownloadState.ERROR, runToEnd(first));
+        assertTrue(new File(mFile.getPath() + ".ckpt").exists());
+
+        // 换一个新任务，只能从断点文件恢复
+        long checkpointed = first.getProgress().getProgress();
+        assertTrue(checkpointed > 0);
+        mServer.setFailAfterBytes(-1);
+        int requestsBefore = mServer.getRangeStarts().size();
+        DownloadTask second = mEngine.newTask(mServer.url(), mFile).setSegmentCount(3);
+        assertEquals(DownloadButton.DownloadState.FINISHED, runToEnd(second));
+        assertArrayEquals(mContent, readFile(mFile));
+
+        // 续传只请求了断点之后的数据
+        long segmentLength = LENGTH / 3;
+        long requested = 0;
+        List<Long> starts = mServer.getRangeStarts();
+        for (long start : starts.subList(requestsBefore, starts.size())) {
+            long segment = Math.min(start / segmentLength, 2);
+            long segmentEnd = segment == 2 ? LENGTH : (segment + 1) * segmentLength;
+            requested += segmentEnd - start;
+        }
+        assertEquals(LENGTH - checkpointed, requested);
+    }
+
+    private DownloadButton.DownloadState runToEnd(DownloadTask task) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final DownloadButton.DownloadState[] result = new DownloadButton.DownloadState[1];
+        task.addListener(new DownloadListener() {
+            @Override
+            public void onPrepared(DownloadTask task) {
+            }
+
+            @Override
+            public void onStateChanged(DownloadTask task, DownloadButton.DownloadState state) {
+                if (state == DownloadButton.DownloadState.FINISHED || state == DownloadButton.DownloadState.ERROR) {
+                    result[0] = state;
+                    done.countDown();
+                }
+            }
+        });
+        mEngine.start(task);
+        assertTrue("download timed out", done.await(30, TimeUnit.SECONDS));
+        return result[0];
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int n;
+            while (offset < data.length && (n = in.read(data, offset, data.length - offset)) != -1) {
+                offset += n;
+            }
+        } finally {
+            in.close();
+        }
+        return Arrays.copyOf(data, data.length);
+    }
+}
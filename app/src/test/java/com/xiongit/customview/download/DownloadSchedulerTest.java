@@ -0,0 +1,278 @@
+package com.xiongit.customview.download;
+
+import com.xiongit.customview.view.DownloadButton;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用进程内HTTP服务器验证调度器的名额、优先级、抢占和带宽分配
+ */
+public class DownloadSchedulerTest {
+
+    private static final int LENGTH = 1024 * 1024 + 7;
+    private static final long SLOW_BANDWIDTH = 128 * 1024;// 限速后每个任务要下载好几秒，足够检查排队状态
+    private static final long TIMEOUT = 30000;
+
+    private byte[] mContent;
+    private LocalHttpServer mServer;
+    private DownloadEngine mEngine;
+    private final List<File> mFiles = new ArrayList<File>();
+
+    @Before
+    public void setUp() throws Exception {
+        mContent = new byte[LENGTH];
+        new Random(42).nextBytes(mContent);
+        mServer = new LocalHttpServer(mContent);
+        mEngine = new DownloadEngine(16);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mEngine.shutdown();
+        mServer.stop();
+        for (File file : mFiles) {
+            file.delete();
+            new File(file.getPath() + ".ckpt").delete();
+        }
+    }
+
+    private DownloadTask newTask() throws IOException {
+        File file = File.createTempFile("scheduled", ".bin");
+        assertTrue(file.delete());
+        mFiles.add(file);
+        return mEngine.newTask(mServer.url(), file);
+    }
+
+    @Test
+    public void admitsByPriorityWithinConcurrencyLimit() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(mEngine, 1, SLOW_BANDWIDTH);
+        DownloadTask a = newTask();
+        DownloadTask b = newTask();
+        DownloadTask c = newTask();
+        StartOrder order = new StartOrder();
+        a.addListener(order);
+        b.addListener(order);
+        c.addListener(order);
+
+        scheduler.enqueue(a);
+        scheduler.enqueue(b, DownloadScheduler.PRIORITY_LOW);
+        scheduler.enqueue(c);
+        assertEquals(1, scheduler.getActiveCount());
+        assertEquals(2, scheduler.getWaitingCount());
+        assertEquals(DownloadButton.DownloadState.WAITING, b.getState());
+        assertEquals(DownloadButton.DownloadState.WAITING, c.getState());
+
+        // c出现在屏幕上，排到b前面
+        scheduler.setVisible(c, true);
+        assertEquals(DownloadScheduler.PRIORITY_VISIBLE, scheduler.getPriority(c));
+        scheduler.setBandwidth(0);
+
+        for (DownloadTask task : new DownloadTask[]{a, b, c}) {
+            assertEquals(DownloadButton.DownloadState.FINISHED, awaitState(task, DownloadButton.DownloadState.FINISHED));
+            assertArrayEquals(mContent, readFile(task.getFile()));
+        }
+        assertEquals(Arrays.asList(a, c, b), order.get());
+        assertEquals(0, scheduler.getActiveCount());
+        assertEquals(-1, scheduler.getPriority(a));
+    }
+
+    @Test
+    public void userTapPreemptsAndRequeues() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(mEngine, 1, SLOW_BANDWIDTH);
+        DownloadTask background = newTask();
+        DownloadTask tapped = newTask();
+        StateHistory history = new StateHistory();
+        background.addListener(history);
+
+        scheduler.enqueue(background, DownloadScheduler.PRIORITY_LOW);
+        awaitFirstByte(background);
+        scheduler.promote(tapped);
+        assertEquals(1, scheduler.getPreemptCount());
+        assertEquals(DownloadButton.DownloadState.STARTED, awaitState(tapped, DownloadButton.DownloadState.STARTED));
+
+        // 被抢占的任务回到等待中，而不是已暂停
+        assertEquals(DownloadButton.DownloadState.WAITING,
+                awaitState(background, DownloadButton.DownloadState.WAITING));
+        awaitCounts(scheduler, 1, 1);
+
+        scheduler.setBandwidth(0);
+        assertEquals(DownloadButton.DownloadState.FINISHED, awaitState(tapped, DownloadButton.DownloadState.FINISHED));
+        assertEquals(DownloadButton.DownloadState.FINISHED,
+                awaitState(background, DownloadButton.DownloadState.FINISHED));
+        assertArrayEquals(mContent, readFile(background.getFile()));
+        // 第一个是添加监听时的初始状态，之后没有经过已暂停
+        assertEquals(Arrays.asList(DownloadButton.DownloadState.STOPPED,
+                DownloadButton.DownloadState.WAITING, DownloadButton.DownloadState.STARTED,
+                DownloadButton.DownloadState.WAITING, DownloadButton.DownloadState.STARTED,
+                DownloadButton.DownloadState.FINISHED), history.get());
+    }
+
+    @Test
+    public void bandwidthIsSharedPerTask() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(mEngine, 3, 3 * SLOW_BANDWIDTH);
+        DownloadTask large = newTask().setSegmentCount(8);
+        DownloadTask small = newTask().setSegmentCount(1);
+
+        scheduler.enqueue(large);
+        assertEquals(3 * SLOW_BANDWIDTH, large.getTokenBucket().getRate());
+        // 分段数不影响份额
+        scheduler.enqueue(small);
+        assertEquals(3 * SLOW_BANDWIDTH / 2, large.getTokenBucket().getRate());
+        assertEquals(3 * SLOW_BANDWIDTH / 2, small.getTokenBucket().getRate());
+
+        scheduler.pause(small);
+        assertEquals(DownloadButton.DownloadState.STOPPED, awaitState(small, DownloadButton.DownloadState.STOPPED));
+        awaitCounts(scheduler, 1, 0);
+        assertNull(small.getTokenBucket());
+        assertEquals(3 * SLOW_BANDWIDTH, large.getTokenBucket().getRate());
+    }
+
+    @Test
+    public void concurrentPauseIsNotLost() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(mEngine, 1, SLOW_BANDWIDTH);
+        // 占住唯一的名额，之后加入的任务都在排队
+        scheduler.enqueue(newTask());
+        for (int i = 0; i < 200; i++) {
+            final DownloadScheduler target = scheduler;
+            final DownloadTask task = newTask();
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread pauser = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    target.pause(task);
+                }
+            });
+            pauser.start();
+            start.countDown();
+            scheduler.enqueue(task);
+            pauser.join();
+            // 暂停先发生时任务在排队，后发生时任务已暂停，两种情况下状态都与调度器一致
+            boolean queued = scheduler.getPriority(task) >= 0;
+            assertEquals(queued ? DownloadButton.DownloadState.WAITING : DownloadButton.DownloadState.STOPPED,
+                    task.getState());
+            scheduler.pause(task);
+        }
+        assertEquals(1, scheduler.getActiveCount());
+        assertEquals(0, scheduler.getWaitingCount());
+    }
+
+    @Test
+    public void tokenBucketLimitsRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(SLOW_BANDWIDTH);
+        bucket.acquire((int) (SLOW_BANDWIDTH / 10));// 取完初始的令牌
+        long start = System.nanoTime();
+        bucket.acquire((int) (SLOW_BANDWIDTH / 2));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue("elapsed " + elapsedMillis, elapsedMillis >= 450);
+    }
+
+    private static void awaitFirstByte(DownloadTask task) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (task.getProgress() == null || task.getProgress().getProgress() == 0) {
+            assertTrue("no data received", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * 调度器在任务的状态回调中更新，任务状态变化后稍等一下才能看到
+     */
+    private static void awaitCounts(DownloadScheduler scheduler, int active, int waiting) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (scheduler.getActiveCount() != active || scheduler.getWaitingCount() != waiting) {
+            assertTrue("active " + scheduler.getActiveCount() + ", waiting " + scheduler.getWaitingCount(),
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static DownloadButton.DownloadState awaitState(DownloadTask task, DownloadButton.DownloadState state)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (task.getState() != state && task.getState() != DownloadButton.DownloadState.ERROR
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        return task.getState();
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int n;
+            while (offset < data.length && (n = in.read(data, offset, data.length - offset)) != -1) {
+                offset += n;
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    /**
+     * 记录任务开始下载的先后顺序
+     */
+    private static class StartOrder implements DownloadListener {
+
+        private final List<DownloadTask> mStarted = new ArrayList<DownloadTask>();
+
+        @Override
+        public void onPrepared(DownloadTask task) {
+        }
+
+        @Override
+        public synchronized void onStateChanged(DownloadTask task, DownloadButton.DownloadState state) {
+            if (state == DownloadButton.DownloadState.STARTED && !mStarted.contains(task)) {
+                mStarted.add(task);
+            }
+        }
+
+        synchronized List<DownloadTask> get() {
+            return new ArrayList<DownloadTask>(mStarted);
+        }
+    }
+
+    /**
+     * 记录一个任务经历的所有状态
+     */
+    private static class StateHistory implements DownloadListener {
+
+        private final List<DownloadButton.DownloadState> mStates = new ArrayList<DownloadButton.DownloadState>();
+
+        @Override
+        public void onPrepared(DownloadTask task) {
+        }
+
+        @Override
+        public synchronized void onStateChanged(DownloadTask task, DownloadButton.DownloadState state) {
+            mStates.add(state);
+        }
+
+        synchronized List<DownloadButton.DownloadState> get() {
+            return new ArrayList<DownloadButton.DownloadState>(mStates);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.xiongit.customview.download;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 测试用的进程内HTTP服务器，提供一个固定内容的文件，支持HEAD和Range请求
+ * 可以设置每个请求最多返回多少字节后断开，模拟网络中断
+ */
+class LocalHttpServer {
+
+    private final byte[] mContent;
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final List<Long> mRangeStarts = Collections.synchronizedList(new ArrayList<Long>());
+    private volatile long mFailAfterBytes = -1;
+
+    LocalHttpServer(byte[] content) throws IOException {
+        mContent = content;
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/file", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/file";
+    }
+
+    /**
+     * @param bytes 每个GET请求最多返回的字节数，-1表示不限制
+     */
+    void setFailAfterBytes(long bytes) {
+        mFailAfterBytes = bytes;
+    }
+
+    /**
+     * @return 收到的所有GET请求的起始位置
+     */
+    List<Long> getRangeStarts() {
+        synchronized (mRangeStarts) {
+            return new ArrayList<Long>(mRangeStarts);
+        }
+    }
+
+    void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(mContent.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            long start = 0;
+            long end = mContent.length - 1;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null && range.startsWith("bytes=")) {
+                String[] parts = range.substring(6).split("-");
+                start = Long.parseLong(parts[0]);
+                if (parts.length > 1 && !parts[1].isEmpty()) {
+                    end = Math.min(end, Long.parseLong(parts[1]));
+                }
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + mContent.length);
+            }
+            mRangeStarts.add(start);
+            long length = end - start + 1;
+            exchange.sendResponseHeaders(range != null ? 206 : 200, length);
+
+            long limit = mFailAfterBytes < 0 ? length : Math.min(length, mFailAfterBytes);
+            OutputStream out = exchange.getResponseBody();
+            int offset = (int) start;
+            int remaining = (int) limit;
+            while (remaining > 0) {
+                int n = Math.min(remaining, 8192);
+                out.write(mContent, offset, n);
+                offset += n;
+                remaining -= n;
+            }
+            out.flush();
+        } finally {
+            exchange.close();
+        }
+    }
+}
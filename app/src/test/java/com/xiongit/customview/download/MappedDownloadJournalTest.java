@@ -0,0 +1,232 @@
+package com.xiongit.customview.download;
+
+import com.xiongit.customview.view.DownloadButton;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 验证日志的重新打开、写到一半和文件截断后的恢复，以及任务状态的恢复
+ */
+public class MappedDownloadJournalTest {
+
+    private static final long LENGTH = 3000;
+
+    private File mJournalFile;
+    private File mDownloadFile;
+    private DownloadTask mTask;
+    private MappedDownloadJournal mJournal;
+
+    @Before
+    public void setUp() throws Exception {
+        mJournalFile = File.createTempFile("downloads", ".journal");
+        assertTrue(mJournalFile.delete());
+        mDownloadFile = File.createTempFile("download", ".bin");
+        mTask = new DownloadTask("http://localhost/app.apk", mDownloadFile);
+        mJournal = new MappedDownloadJournal(mJournalFile, 16);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mJournal.close();
+        mJournalFile.delete();
+        mDownloadFile.delete();
+    }
+
+    private void reopen() throws IOException {
+        mJournal.close();
+        mJournal = new MappedDownloadJournal(mJournalFile, 16);
+    }
+
+    @Test
+    public void recordsSurviveReopen() throws Exception {
+        mJournal.save(mTask, LENGTH, new long[]{100, 200, 300});
+        mJournal.putState(MappedDownloadJournal.keyOf(mTask), DownloadButton.DownloadState.ERROR);
+        reopen();
+
+        assertEquals(1, mJournal.getRecoveredCount());
+        assertArrayEquals(new long[]{100, 200, 300}, mJournal.load(mTask, LENGTH, 3));
+        assertNull(mJournal.load(mTask, LENGTH, 2));
+        assertNull(mJournal.load(mTask, LENGTH + 1, 3));
+        assertEquals(DownloadButton.DownloadState.ERROR, mJournal.getState(MappedDownloadJournal.keyOf(mTask)));
+        assertEquals(600, mJournal.getDownloadedBytes(MappedDownloadJournal.keyOf(mTask)));
+    }
+
+    @Test
+    public void tornWriteFallsBackToPreviousCopy() throws Exception {
+        mJournal.save(mTask, LENGTH, new long[]{100, 100, 100});
+        mJournal.save(mTask, LENGTH, new long[]{200, 200, 200});
+        mJournal.close();
+
+        // 模拟最后一次写入只写了一部分：序号已经更新，分段数据还是旧的
+        long newest = newestCopyOffset();
+        RandomAccessFile raf = new RandomAccessFile(mJournalFile, "rw");
+        try {
+            raf.seek(newest + 32);
+            raf.writeLong(100);
+        } finally {
+            raf.close();
+        }
+        mJournal = new MappedDownloadJournal(mJournalFile, 16);
+
+        assertArrayEquals(new long[]{100, 100, 100}, mJournal.load(mTask, LENGTH, 3));
+        // 之后的写入覆盖损坏的那一份，重新打开后读到最新内容
+        mJournal.save(mTask, LENGTH, new long[]{300, 300, 300});
+        reopen();
+        assertArrayEquals(new long[]{300, 300, 300}, mJournal.load(mTask, LENGTH, 3));
+    }
+
+    @Test
+    public void truncatedFileKeepsCompleteCopies() throws Exception {
+        mJournal.save(mTask, LENGTH, new long[]{100, 100, 100});
+        mJournal.save(mTask, LENGTH, new long[]{200, 200, 200});
+        mJournal.save(mTask, LENGTH, new long[]{300, 300, 300});
+        mJournal.close();
+
+        // 最新的一份在后面，从它中间截断
+        long newest = newestCopyOffset();
+        RandomAccessFile raf = new RandomAccessFile(mJournalFile, "rw");
+        try {
+            raf.setLength(newest + 20);
+        } finally {
+            raf.close();
+        }
+        mJournal = new MappedDownloadJournal(mJournalFile, 16);
+
+        assertEquals(16, mJournal.getCapacity());
+        assertArrayEquals(new long[]{200, 200, 200}, mJournal.load(mTask, LENGTH, 3));
+    }
+
+    @Test
+    public void corruptedHeaderStartsEmpty() throws Exception {
+        mJournal.save(mTask, LENGTH, new long[]{100, 100, 100});
+        mJournal.close();
+        RandomAccessFile raf = new RandomAccessFile(mJournalFile, "rw");
+        try {
+            raf.writeInt(0x12345678);
+        } finally {
+            raf.close();
+        }
+        mJournal = new MappedDownloadJournal(mJournalFile, 16);
+
+        assertEquals(0, mJournal.getRecoveredCount());
+        assertNull(mJournal.load(mTask, LENGTH, 3));
+    }
+
+    @Test
+    public void clearKeepsFinishedState() throws Exception {
+        long key = MappedDownloadJournal.keyOf(mTask);
+        mJournal.save(mTask, LENGTH, new long[]{1000, 1000, 1000});
+        mJournal.clear(mTask);
+        mJournal.putState(key, DownloadButton.DownloadState.FINISHED);
+        reopen();
+
+        assertNull(mJournal.load(mTask, LENGTH, 3));
+        assertEquals(DownloadButton.DownloadState.FINISHED, mJournal.getState(key));
+        assertEquals(LENGTH, mJournal.getDownloadedBytes(key));
+
+        mJournal.remove(key);
+        reopen();
+        assertNull(mJournal.getState(key));
+    }
+
+    @Test
+    public void trackRestoresTaskAfterRestart() throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(mDownloadFile, "rw");
+        try {
+            raf.setLength(LENGTH);
+        } finally {
+            raf.close();
+        }
+        mJournal.save(mTask, LENGTH, new long[]{500, 600, 700});
+        mJournal.putState(MappedDownloadJournal.keyOf(mTask), DownloadButton.DownloadState.STARTED);
+        reopen();
+
+        DownloadTask task = new DownloadTask("http://localhost/app.apk", mDownloadFile);
+        mJournal.track(task);
+        // 进程被杀时正在下载，重启后显示为暂停，进度保留
+        assertEquals(DownloadButton.DownloadState.STOPPED, task.getState());
+        assertEquals(1800, task.getProgress().getProgress());
+        assertEquals(3, task.getProgress().getSegmentCount());
+
+        // 之后的状态变化会被记录
+        task.setState(DownloadButton.DownloadState.ERROR);
+        assertEquals(DownloadButton.DownloadState.ERROR, mJournal.getState(MappedDownloadJournal.keyOf(task)));
+    }
+
+    @Test
+    public void trackIgnoresProgressWhenFileIsMissing() throws Exception {
+        mJournal.save(mTask, LENGTH, new long[]{1000, 1000, 1000});
+        mJournal.putState(MappedDownloadJournal.keyOf(mTask), DownloadButton.DownloadState.FINISHED);
+        assertTrue(mDownloadFile.delete());
+
+        DownloadTask task = new DownloadTask("http://localhost/app.apk", mDownloadFile);
+        mJournal.track(task);
+        assertEquals(DownloadButton.DownloadState.STOPPED, task.getState());
+        assertNull(task.getProgress());
+    }
+
+    @Test
+    public void fullJournalRejectsNewKeys() throws Exception {
+        mJournal.close();
+        assertTrue(mJournalFile.delete());
+        mJournal = new MappedDownloadJournal(mJournalFile, 2);
+        mJournal.putState(MappedDownloadJournal.keyOf("a"), DownloadButton.DownloadState.STOPPED);
+        mJournal.putState(MappedDownloadJournal.keyOf("b"), DownloadButton.DownloadState.STOPPED);
+        try {
+            mJournal.putState(MappedDownloadJournal.keyOf("c"), DownloadButton.DownloadState.STOPPED);
+            fail("journal should be full");
+        } catch (IOException expected) {
+        }
+        // 删除后空出的记录可以复用
+        mJournal.remove(MappedDownloadJournal.keyOf("a"));
+        mJournal.putState(MappedDownloadJournal.keyOf("c"), DownloadButton.DownloadState.WAITING);
+        assertEquals(DownloadButton.DownloadState.WAITING, mJournal.getState(MappedDownloadJournal.keyOf("c")));
+        assertEquals(DownloadButton.DownloadState.STOPPED, mJournal.getState(MappedDownloadJournal.keyOf("b")));
+
+        reopen();
+        assertEquals(2, mJournal.getCapacity());
+        assertNull(mJournal.getState(MappedDownloadJournal.keyOf("a")));
+        assertEquals(DownloadButton.DownloadState.STOPPED, mJournal.getState(MappedDownloadJournal.keyOf("b")));
+        assertEquals(DownloadButton.DownloadState.WAITING, mJournal.getState(MappedDownloadJournal.keyOf("c")));
+    }
+
+    /**
+     * 在文件中找到本任务两份记录里序号较大的那一份的起始位置：key位于每份的第8字节
+     */
+    private long newestCopyOffset() throws IOException {
+        long key = MappedDownloadJournal.keyOf(mTask);
+        RandomAccessFile raf = new RandomAccessFile(mJournalFile, "r");
+        try {
+            long newest = -1;
+            int newestSequence = 0;
+            for (long position = 16; position + 16 <= raf.length(); position += 8) {
+                raf.seek(position + 8);
+                if (raf.readLong() != key) {
+                    continue;
+                }
+                raf.seek(position);
+                int sequence = raf.readInt();
+                if (newest < 0 || sequence > newestSequence) {
+                    newest = position;
+                    newestSequence = sequence;
+                }
+            }
+            assertTrue(newest >= 0);
+            return newest;
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.xiongit.customview.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * 验证分条计数器在多线程下不丢计数，读取并清零后从0重新开始
+ */
+public class WidgetMetricsTest {
+
+    private static final int THREADS = 8;
+    private static final int INCREMENTS = 100000;
+
+    @Before
+    public void setUp() throws Exception {
+        WidgetMetrics.reset();
+        WidgetMetrics.setSink(null);
+    }
+
+    @Test
+    public void concurrentIncrementsAreNotLost() throws Exception {
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < INCREMENTS; j++) {
+                        WidgetMetrics.increment(WidgetMetrics.WIDGET_DOWNLOAD_BUTTON,
+                                WidgetMetrics.METRIC_INVALIDATES_REQUESTED);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        WidgetMetrics.Snapshot snapshot = WidgetMetrics.snapshotAndReset();
+        assertEquals((long) THREADS * INCREMENTS, snapshot.get(WidgetMetrics.WIDGET_DOWNLOAD_BUTTON,
+                WidgetMetrics.METRIC_INVALIDATES_REQUESTED));
+        assertEquals(0, snapshot.get(WidgetMetrics.WIDGET_PASSWORD_EDIT_TEXT,
+                WidgetMetrics.METRIC_INVALIDATES_REQUESTED));
+        assertEquals(0, WidgetMetrics.snapshot().get(WidgetMetrics.WIDGET_DOWNLOAD_BUTTON,
+                WidgetMetrics.METRIC_INVALIDATES_REQUESTED));
+    }
+
+    @Test
+    public void flushPublishesToSinkAndResets() throws Exception {
+        final WidgetMetrics.Snapshot[] published = new WidgetMetrics.Snapshot[1];
+        WidgetMetrics.setSink(new WidgetMetrics.Sink() {
+            @Override
+            public void onSnapshot(WidgetMetrics.Snapshot snapshot) {
+                published[0] = snapshot;
+            }
+        });
+        WidgetMetrics.recordTime(WidgetMetrics.WIDGET_PASSWORD_EDIT_TEXT,
+                WidgetMetrics.METRIC_MEASURES, WidgetMetrics.METRIC_MEASURE_TIME_NS, 300);
+        WidgetMetrics.recordTime(WidgetMetrics.WIDGET_PASSWORD_EDIT_TEXT,
+                WidgetMetrics.METRIC_MEASURES, WidgetMetrics.METRIC_MEASURE_TIME_NS, 100);
+        WidgetMetrics.flush();
+
+        assertNotNull(published[0]);
+        assertEquals(2, published[0].get(WidgetMetrics.WIDGET_PASSWORD_EDIT_TEXT, WidgetMetrics.METRIC_MEASURES));
+        assertEquals(200, published[0].getAverage(WidgetMetrics.WIDGET_PASSWORD_EDIT_TEXT,
+                WidgetMetrics.METRIC_MEASURES, WidgetMetrics.METRIC_MEASURE_TIME_NS));
+        assertEquals("password_edit_text.measures", WidgetMetrics.Snapshot.getName(
+                WidgetMetrics.WIDGET_PASSWORD_EDIT_TEXT, WidgetMetrics.METRIC_MEASURES));
+        assertEquals(0, WidgetMetrics.snapshot().get(WidgetMetrics.WIDGET_PASSWORD_EDIT_TEXT,
+                WidgetMetrics.METRIC_MEASURES));
+    }
+}
@@ -0,0 +1,73 @@
+package com.xiongit.customview.pool;
+
+import android.widget.FrameLayout;
+
+import com.xiongit.customview.BuildConfig;
+import com.xiongit.customview.compositeview.PasswordEditText;
+import com.xiongit.customview.view.DownloadButton;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 验证控件池的命中统计、容量上限，以及归还时的状态重置
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ViewPoolTest {
+
+    @Test
+    public void releasedButtonIsResetAndReused() throws Exception {
+        ViewPool<DownloadButton> pool = ViewPool.forDownloadButtons(RuntimeEnvironment.application, 1);
+        DownloadButton button = pool.acquire();
+        assertEquals(1, pool.getMissCount());
+
+        FrameLayout parent = new FrameLayout(RuntimeEnvironment.application);
+        parent.addView(button);
+        button.setDownloadState(DownloadButton.DownloadState.STARTED);
+        button.setProgress(40);
+        button.setDownloadState(DownloadButton.DownloadState.FINISHED);
+        button.setOnDownloadStateChangedListener(new DownloadButton.OnDownloadStateChangedListener() {
+            @Override
+            public void onStateChanged(DownloadButton.DownloadState state) {
+                throw new AssertionError("listener must be cleared on release");
+            }
+        });
+        pool.release(button);
+
+        assertNull(button.getParent());
+        assertEquals(1, pool.size());
+        DownloadButton reused = pool.acquire();
+        assertSame(button, reused);
+        assertEquals(1, pool.getHitCount());
+        assertEquals(DownloadButton.DownloadState.STOPPED, reused.getDownloadState());
+        assertEquals(0, reused.getProgress());
+        assertNull(reused.getButtonText());
+        // 监听已被清除，切换状态不会回调
+        reused.setDownloadState(DownloadButton.DownloadState.STARTED);
+    }
+
+    @Test
+    public void releaseBeyondCapacityIsDropped() throws Exception {
+        ViewPool<PasswordEditText> pool = ViewPool.forPasswordEditTexts(RuntimeEnvironment.application, 1);
+        PasswordEditText first = pool.acquire();
+        PasswordEditText second = pool.acquire();
+        first.setText("secret");
+        first.setEyeState(true);
+        pool.release(first);
+        pool.release(second);
+
+        assertEquals(1, pool.size());
+        assertEquals(1, pool.getDroppedCount());
+        PasswordEditText reused = pool.acquire();
+        assertSame(first, reused);
+        assertEquals(0, reused.getText().length());
+    }
+}
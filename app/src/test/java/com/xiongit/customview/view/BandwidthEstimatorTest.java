@@ -0,0 +1,88 @@
+package com.xiongit.customview.view;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 速度估算和速度文字格式化
+ */
+public class BandwidthEstimatorTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void steadyRateAndEta() throws Exception {
+        BandwidthEstimator estimator = new BandwidthEstimator();
+        estimator.setTotalBytes(10 * 1024 * 1024);
+        // 每200ms下载200KB，即1000KB/s
+        for (int i = 0; i <= 20; i++) {
+            estimator.addSample(i * 200L * 1024, i * 200 * MS);
+        }
+        assertEquals(1000 * 1024, estimator.getBytesPerSecond(), 1);
+        // 已下载4000KB，剩余6240KB
+        assertEquals(7, estimator.getEtaSeconds());
+    }
+
+    @Test
+    public void idleSamplesDecayRate() throws Exception {
+        BandwidthEstimator estimator = new BandwidthEstimator();
+        assertFalse(estimator.addIdleSample(0));
+        for (int i = 0; i <= 10; i++) {
+            estimator.addSample(i * 200L * 1024, i * 200 * MS);
+        }
+        double rate = estimator.getBytesPerSecond();
+        // 下载停滞，每500ms只有一次没有新进度的采样
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(estimator.addIdleSample(2000 * MS + i * 500 * MS));
+            assertTrue(estimator.getBytesPerSecond() < rate);
+            rate = estimator.getBytesPerSecond();
+        }
+    }
+
+    @Test
+    public void stalledRateDropsToZeroAndEtaBecomesUnknown() throws Exception {
+        BandwidthEstimator estimator = new BandwidthEstimator();
+        estimator.setTotalBytes(10 * 1024 * 1024);
+        for (int i = 0; i <= 10; i++) {
+            estimator.addSample(i * 200L * 1024, i * 200 * MS);
+        }
+        // 长时间停滞后速度归零，剩余时间不会无限增长
+        for (int i = 1; i <= 100; i++) {
+            estimator.addIdleSample(2000 * MS + i * 500 * MS);
+        }
+        assertEquals(0, estimator.getBytesPerSecond(), 0);
+        assertEquals(BandwidthEstimator.ETA_UNKNOWN, estimator.getEtaSeconds());
+
+        char[] out = new char[SpeedTextFormatter.BUFFER_SIZE];
+        int count = SpeedTextFormatter.format(estimator.getBytesPerSecond(), estimator.getEtaSeconds(), out);
+        assertEquals("0.0 B/s · 剩余时间未知", new String(out, 0, count));
+    }
+
+    @Test
+    public void ignoresSamplesTooCloseTogether() throws Exception {
+        BandwidthEstimator estimator = new BandwidthEstimator();
+        estimator.addSample(0, 0);
+        assertFalse(estimator.addSample(1024, 10 * MS));
+        assertEquals(0, estimator.getBytesPerSecond(), 0);
+        assertEquals(-1, estimator.getEtaSeconds());
+    }
+
+    @Test
+    public void formatsSpeedAndEta() throws Exception {
+        char[] out = new char[SpeedTextFormatter.BUFFER_SIZE];
+        int count = SpeedTextFormatter.format(2.3 * 1024 * 1024, 40, out);
+        assertEquals("2.3 MB/s · 剩余40秒", new String(out, 0, count));
+
+        count = SpeedTextFormatter.format(512, 3 * 60 + 20, out);
+        assertEquals("512.0 B/s · 剩余3分20秒", new String(out, 0, count));
+
+        count = SpeedTextFormatter.format(1536, -1, out);
+        assertEquals("1.5 KB/s", new String(out, 0, count));
+
+        count = SpeedTextFormatter.format(100 * 1024, 2 * 3600 + 5 * 60, out);
+        assertEquals("100.0 KB/s · 剩余2时5分", new String(out, 0, count));
+    }
+}
@@ -0,0 +1,188 @@
+package com.xiongit.customview.view;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.view.View;
+
+import com.xiongit.customview.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 验证DownloadButton预热后的onDraw不产生任何对象分配
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DownloadButtonDrawTest {
+
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 100;
+    private static final int WARM_UP = 10000;
+    private static final int ROUNDS = 1000;
+
+    private DownloadButton mButton;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() throws Exception {
+        mButton = new DownloadButton(RuntimeEnvironment.application);
+        mButton.setButtonText("暂停中");
+        mButton.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mButton.layout(0, 0, WIDTH, HEIGHT);
+        mCanvas = new NoOpCanvas();
+    }
+
+    @Test
+    public void startedDrawAllocatesNothing() throws Exception {
+        mButton.setDownloadState(DownloadButton.DownloadState.STARTED);
+        // 分别覆盖文字未被覆盖、部分覆盖、完全覆盖三种情况
+        int[] progresses = {10, 50, 90};
+        for (int progress : progresses) {
+            mButton.setProgress(progress);
+            assertEquals(0, allocatedBytesDuringDraws());
+        }
+    }
+
+    @Test
+    public void stoppedDrawAllocatesNothing() throws Exception {
+        mButton.setDownloadState(DownloadButton.DownloadState.STARTED);
+        mButton.setDownloadState(DownloadButton.DownloadState.STOPPED);
+        mButton.setProgress(50);
+        assertEquals(0, allocatedBytesDuringDraws());
+    }
+
+    /**
+     * 走完整的onDraw，包括TextView自己的绘制
+     * Robolectric的View.draw(Canvas)只画背景、不会调用onDraw，所以这里直接调用onDraw
+     *
+     * @return 预热后所有轮次一共分配的字节数，不做平均，一次分配也不会被抹掉
+     */
+    private long allocatedBytesDuringDraws() {
+        for (int i = 0; i < WARM_UP; i++) {
+            mButton.onDraw(mCanvas);
+        }
+        long overhead = allocatedBytes() - allocatedBytes();
+        long before = allocatedBytes();
+        for (int i = 0; i < ROUNDS; i++) {
+            mButton.onDraw(mCanvas);
+        }
+        long after = allocatedBytes();
+        return after - before + overhead;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 不做任何事的Canvas，避免把Robolectric影子类的记录开销算进来
+     */
+    private static class NoOpCanvas extends Canvas {
+
+        @Override
+        public int getWidth() {
+            return WIDTH;
+        }
+
+        @Override
+        public int getHeight() {
+            return HEIGHT;
+        }
+
+        @Override
+        public int save() {
+            return 1;
+        }
+
+        @Override
+        public int save(int saveFlags) {
+            return 1;
+        }
+
+        @Override
+        public void restore() {
+        }
+
+        @Override
+        public void restoreToCount(int saveCount) {
+        }
+
+        @Override
+        public int getSaveCount() {
+            return 1;
+        }
+
+        @Override
+        public void translate(float dx, float dy) {
+        }
+
+        @Override
+        public boolean getClipBounds(Rect bounds) {
+            bounds.set(0, 0, WIDTH, HEIGHT);
+            return true;
+        }
+
+        @Override
+        public boolean quickReject(float left, float top, float right, float bottom, EdgeType type) {
+            return false;
+        }
+
+        @Override
+        public boolean clipRect(float left, float top, float right, float bottom) {
+            return true;
+        }
+
+        @Override
+        public boolean clipRect(int left, int top, int right, int bottom) {
+            return true;
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        }
+
+        @Override
+        public void drawPath(Path path, Paint paint) {
+        }
+
+        @Override
+        public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+        }
+
+        @Override
+        public void drawText(String text, float x, float y, Paint paint) {
+        }
+
+        @Override
+        public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+        }
+
+        @Override
+        public void drawText(CharSequence text, int start, int end, float x, float y, Paint paint) {
+        }
+
+        @Override
+        public void drawTextRun(char[] text, int index, int count, int contextIndex, int contextCount,
+                                float x, float y, boolean isRtl, Paint paint) {
+        }
+
+        @Override
+        public void drawTextRun(CharSequence text, int start, int end, int contextStart, int contextEnd,
+                                float x, float y, boolean isRtl, Paint paint) {
+        }
+    }
+}
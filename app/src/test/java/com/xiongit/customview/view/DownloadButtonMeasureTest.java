@@ -0,0 +1,97 @@
+package com.xiongit.customview.view;
+
+import android.util.TypedValue;
+import android.view.View;
+
+import com.xiongit.customview.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 验证MEASURE_MODE_LABELS模式下按已知文字和内边距测量，不排版TextView的文字，并在字号、内边距变化后重新计算
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DownloadButtonMeasureTest {
+
+    private static final int WRAP_SPEC = View.MeasureSpec.makeMeasureSpec(2000, View.MeasureSpec.AT_MOST);
+
+    private DownloadButton mButton;
+    private float mDensity;
+
+    @Before
+    public void setUp() throws Exception {
+        mButton = new DownloadButton(RuntimeEnvironment.application);
+        mButton.setMeasureMode(DownloadButton.MEASURE_MODE_LABELS);
+        mButton.setPadding(0, 0, 0, 0);
+        mDensity = RuntimeEnvironment.application.getResources().getDisplayMetrics().density;
+    }
+
+    private void measureWrap() {
+        mButton.measure(WRAP_SPEC, WRAP_SPEC);
+    }
+
+    @Test
+    public void wrapContentUsesLabelsWithoutTextLayout() throws Exception {
+        measureWrap();
+        assertTrue(mButton.getMeasuredWidth() >= (int) (80 * mDensity + 0.5f));
+        assertTrue(mButton.getMeasuredHeight() >= (int) (32 * mDensity + 0.5f));
+        assertTrue(mButton.getMeasuredWidth() >= mButton.getPaint().measureText(DownloadButton.TEXT_WAITING));
+        assertNull(mButton.getLayout());
+    }
+
+    @Test
+    public void exactSpecsAreUsedDirectly() throws Exception {
+        mButton.measure(View.MeasureSpec.makeMeasureSpec(123, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(45, View.MeasureSpec.EXACTLY));
+        assertEquals(123, mButton.getMeasuredWidth());
+        assertEquals(45, mButton.getMeasuredHeight());
+    }
+
+    @Test
+    public void paddingAndTextSizeChangesAreMeasured() throws Exception {
+        // 字号足够大，尺寸不受最小尺寸限制
+        mButton.setTextSize(TypedValue.COMPLEX_UNIT_PX, 200);
+        assertTrue(mButton.isLayoutRequested());
+        measureWrap();
+        int width = mButton.getMeasuredWidth();
+        int height = mButton.getMeasuredHeight();
+
+        mButton.setPadding(10, 20, 30, 40);
+        measureWrap();
+        assertEquals(width + 40, mButton.getMeasuredWidth());
+        assertEquals(height + 60, mButton.getMeasuredHeight());
+
+        mButton.setTextSize(TypedValue.COMPLEX_UNIT_PX, 400);
+        measureWrap();
+        assertTrue(mButton.getMeasuredWidth() > width + 40);
+        assertTrue(mButton.getMeasuredHeight() > height + 60);
+    }
+
+    @Test
+    public void progressChangesDoNotChangeSize() throws Exception {
+        mButton.setDownloadState(DownloadButton.DownloadState.STARTED);
+        measureWrap();
+        int width = mButton.getMeasuredWidth();
+        for (int progress = 0; progress <= 100; progress += 10) {
+            mButton.setProgress(progress);
+            mButton.forceLayout();
+            measureWrap();
+            assertEquals(width, mButton.getMeasuredWidth());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownMeasureModeIsRejected() throws Exception {
+        mButton.setMeasureMode(5);
+    }
+}
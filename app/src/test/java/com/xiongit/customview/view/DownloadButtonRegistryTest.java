@@ -0,0 +1,104 @@
+package com.xiongit.customview.view;
+
+import android.app.Activity;
+import android.widget.LinearLayout;
+
+import com.xiongit.customview.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 验证批量更新只应用每个id的最新值，丢弃发给未绑定id的更新，不在窗口中的按钮等绑定或进入窗口时再应用
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DownloadButtonRegistryTest {
+
+    private DownloadButtonRegistry mRegistry;
+    private DownloadButton mFirst;
+    private DownloadButton mSecond;
+    private DownloadButton mDetached;
+    private LinearLayout mRoot;
+
+    @Before
+    public void setUp() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mRoot = new LinearLayout(activity);
+        mFirst = new DownloadButton(activity);
+        mSecond = new DownloadButton(activity);
+        mDetached = new DownloadButton(activity);
+        mRoot.addView(mFirst);
+        mRoot.addView(mSecond);
+        activity.setContentView(mRoot);
+
+        mRegistry = new DownloadButtonRegistry();
+        mRegistry.bind(1, mFirst);
+        mRegistry.bind(2, mSecond);
+        mRegistry.bind(3, mDetached);
+    }
+
+    @Test
+    public void appliesLatestValuePerIdOncePerFrame() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        for (int progress = 0; progress <= 60; progress++) {
+            mRegistry.publish(1, null, progress);
+        }
+        mRegistry.publish(new int[]{1, 2}, new DownloadButton.DownloadState[]{
+                DownloadButton.DownloadState.STARTED, DownloadButton.DownloadState.WAITING}, null, 2);
+        mRegistry.publish(2, DownloadButton.DownloadState.ERROR, DownloadButtonRegistry.NO_PROGRESS);
+        ShadowLooper.unPauseMainLooper();
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertEquals(DownloadButton.DownloadState.STARTED, mFirst.getDownloadState());
+        assertEquals(60, mFirst.getProgress());
+        assertEquals(DownloadButton.DownloadState.ERROR, mSecond.getDownloadState());
+        // 1号的状态和进度、2号的状态，各应用一次
+        assertEquals(3, mRegistry.getAppliedCount());
+        assertEquals(0, mRegistry.getDroppedCount());
+    }
+
+    @Test
+    public void dropsUpdatesForRecycledButtonsAndDefersDetached() throws Exception {
+        // 1号按钮被复用给4号
+        mRegistry.bind(4, mFirst);
+        mRegistry.publish(1, DownloadButton.DownloadState.STARTED, 50);
+        mRegistry.publish(3, DownloadButton.DownloadState.STARTED, 40);
+        mRegistry.publish(4, null, 20);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertEquals(DownloadButton.DownloadState.STOPPED, mFirst.getDownloadState());
+        assertEquals(20, mFirst.getProgress());
+        assertEquals(DownloadButton.DownloadState.STOPPED, mDetached.getDownloadState());
+        assertEquals(1, mRegistry.getAppliedCount());
+        assertEquals(2, mRegistry.getDroppedCount());
+
+        // 不在窗口中的3号按钮进入窗口时应用暂存的最新值
+        mRoot.addView(mDetached);
+        assertEquals(DownloadButton.DownloadState.STARTED, mDetached.getDownloadState());
+        assertEquals(40, mDetached.getProgress());
+        assertEquals(3, mRegistry.getAppliedCount());
+    }
+
+    @Test
+    public void bindAppliesDeferredValue() throws Exception {
+        mRegistry.publish(3, DownloadButton.DownloadState.WAITING, DownloadButtonRegistry.NO_PROGRESS);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        mRegistry.publish(3, null, 30);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals(DownloadButton.DownloadState.STOPPED, mDetached.getDownloadState());
+
+        // 3号换成窗口中的按钮
+        mRegistry.bind(3, mSecond);
+        assertEquals(DownloadButton.DownloadState.WAITING, mSecond.getDownloadState());
+        assertEquals(30, mSecond.getProgress());
+        assertEquals(0, mRegistry.getDroppedCount());
+    }
+}
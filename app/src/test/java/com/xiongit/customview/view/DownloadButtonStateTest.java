@@ -0,0 +1,161 @@
+package com.xiongit.customview.view;
+
+import android.app.Activity;
+
+import com.xiongit.customview.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 验证DownloadButton的状态切换表、主线程分发、工作线程中按帧更新进度，以及下载停滞时速度文字的刷新
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DownloadButtonStateTest {
+
+    private DownloadButton mButton;
+    private final List<DownloadButton.DownloadState> mCallbacks = new ArrayList<DownloadButton.DownloadState>();
+
+    @Before
+    public void setUp() throws Exception {
+        mButton = new DownloadButton(RuntimeEnvironment.application);
+        mButton.setOnDownloadStateChangedListener(new DownloadButton.OnDownloadStateChangedListener() {
+            @Override
+            public void onStateChanged(DownloadButton.DownloadState state) {
+                mCallbacks.add(state);
+            }
+        });
+    }
+
+    @Test
+    public void finishedCannotRestartWithoutReset() throws Exception {
+        assertTrue(mButton.setDownloadState(DownloadButton.DownloadState.STARTED));
+        assertTrue(mButton.setDownloadState(DownloadButton.DownloadState.FINISHED));
+        assertEquals(DownloadButton.TEXT_OPEN, mButton.getButtonText());
+
+        assertFalse(mButton.setDownloadState(DownloadButton.DownloadState.STARTED));
+        assertEquals(DownloadButton.DownloadState.FINISHED, mButton.getDownloadState());
+
+        mButton.resetDownloadState();
+        assertEquals(DownloadButton.DownloadState.STOPPED, mButton.getDownloadState());
+        assertEquals(0, mButton.getProgress());
+        assertTrue(mButton.setDownloadState(DownloadButton.DownloadState.STARTED));
+    }
+
+    @Test
+    public void errorCannotJumpToFinished() throws Exception {
+        assertTrue(mButton.setDownloadState(DownloadButton.DownloadState.ERROR));
+        assertFalse(mButton.setDownloadState(DownloadButton.DownloadState.FINISHED));
+        assertEquals(DownloadButton.TEXT_RETRY, mButton.getButtonText());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxProgressMustBePositive() throws Exception {
+        mButton.setMaxProgress(0);
+    }
+
+    @Test
+    public void syncResetsOnlyForRestart() throws Exception {
+        assertTrue(mButton.setDownloadState(DownloadButton.DownloadState.FINISHED));
+        assertFalse(mButton.syncDownloadState(DownloadButton.DownloadState.WAITING));
+        assertEquals(DownloadButton.DownloadState.FINISHED, mButton.getDownloadState());
+
+        assertTrue(mButton.syncDownloadState(DownloadButton.DownloadState.STARTED));
+        assertEquals(DownloadButton.DownloadState.STARTED, mButton.getDownloadState());
+
+        assertTrue(mButton.setDownloadState(DownloadButton.DownloadState.ERROR));
+        assertFalse(mButton.syncDownloadState(DownloadButton.DownloadState.FINISHED));
+        assertEquals(DownloadButton.DownloadState.ERROR, mButton.getDownloadState());
+    }
+
+    @Test
+    public void backgroundChangesAreDispatchedInOnePost() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mButton.setDownloadState(DownloadButton.DownloadState.WAITING);
+                mButton.setDownloadState(DownloadButton.DownloadState.STARTED);
+                mButton.setDownloadState(DownloadButton.DownloadState.STOPPED);
+            }
+        });
+        worker.start();
+        worker.join();
+
+        assertEquals(DownloadButton.DownloadState.STOPPED, mButton.getDownloadState());
+        assertTrue(mCallbacks.isEmpty());
+        assertEquals(1, ShadowLooper.getShadowMainLooper().getScheduler().size());
+
+        ShadowLooper.unPauseMainLooper();
+        assertEquals(3, mCallbacks.size());
+        assertEquals(DownloadButton.DownloadState.WAITING, mCallbacks.get(0));
+        assertEquals(DownloadButton.DownloadState.STARTED, mCallbacks.get(1));
+        assertEquals(DownloadButton.DownloadState.STOPPED, mCallbacks.get(2));
+        assertEquals(DownloadButton.TEXT_PAUSED, mButton.getButtonText());
+    }
+
+    @Test
+    public void workerProgressOnDetachedButtonIsApplied() throws Exception {
+        mButton.setProgressUpdateMode(DownloadButton.UPDATE_MODE_FRAME);
+        mButton.setDownloadState(DownloadButton.DownloadState.STARTED);
+        ShadowLooper.pauseMainLooper();
+        // 按钮没有添加到窗口，两次更新之间主线程执行一次预约的帧回调
+        for (int progress = 10; progress <= 20; progress += 10) {
+            setProgressOnWorker(progress);
+            assertTrue(mButton.isFrameScheduled());
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+            assertFalse(mButton.isFrameScheduled());
+            assertEquals(progress, mButton.getProgress());
+        }
+        ShadowLooper.unPauseMainLooper();
+    }
+
+    @Test
+    public void speedDecaysWhileDownloadStalls() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        activity.setContentView(mButton);
+        mButton.setTextMode(DownloadButton.TEXT_MODE_SPEED);
+        BandwidthEstimator estimator = mButton.getBandwidthEstimator();
+        long now = System.nanoTime();
+        estimator.addSample(0, now - 2000000000L);
+        estimator.addSample(1024 * 1024, now - 1000000000L);
+        double rate = estimator.getBytesPerSecond();
+
+        // 开始下载后没有任何进度回调，低频刷新仍然会采样
+        mButton.setDownloadState(DownloadButton.DownloadState.STARTED);
+        Thread.sleep(150);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertTrue(estimator.getBytesPerSecond() < rate);
+
+        mButton.setDownloadState(DownloadButton.DownloadState.STOPPED);
+        rate = estimator.getBytesPerSecond();
+        Thread.sleep(150);
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals(rate, estimator.getBytesPerSecond(), 0);
+    }
+
+    private void setProgressOnWorker(final int progress) throws InterruptedException {
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mButton.setProgress(progress);
+            }
+        });
+        worker.start();
+        worker.join();
+    }
+}
@@ -0,0 +1,79 @@
+package com.xiongit.customview.view;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.view.View;
+
+import com.xiongit.customview.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * 验证DownloadProgressView在等待中、下载失败、已完成状态下显示对应的文字，且文字颜色不透明
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DownloadProgressViewTest {
+
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 100;
+
+    private DownloadProgressView mView;
+    private TextRecordingCanvas mCanvas;
+
+    @Before
+    public void setUp() throws Exception {
+        mView = new DownloadProgressView(RuntimeEnvironment.application);
+        // 直接绘制文字，不经过快照缓存
+        mView.getProgressDrawable().setSnapshotEnabled(false);
+        mView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mView.layout(0, 0, WIDTH, HEIGHT);
+        mCanvas = new TextRecordingCanvas();
+    }
+
+    @Test
+    public void waitingLabelIsVisible() throws Exception {
+        assertStateDrawn(DownloadButton.DownloadState.WAITING, DownloadButton.TEXT_WAITING);
+    }
+
+    @Test
+    public void errorLabelIsVisible() throws Exception {
+        assertStateDrawn(DownloadButton.DownloadState.ERROR, DownloadButton.TEXT_RETRY);
+    }
+
+    @Test
+    public void finishedLabelIsVisible() throws Exception {
+        assertStateDrawn(DownloadButton.DownloadState.FINISHED, DownloadButton.TEXT_OPEN);
+    }
+
+    private void assertStateDrawn(DownloadButton.DownloadState state, String label) {
+        mView.setDownloadState(state);
+        mView.draw(mCanvas);
+        assertEquals(label, mCanvas.mText);
+        assertNotEquals(0, mCanvas.mColor);
+    }
+
+    /**
+     * 记录最后一次绘制的文字和颜色
+     */
+    private static class TextRecordingCanvas extends Canvas {
+
+        String mText;
+        int mColor;
+
+        @Override
+        public void drawText(String text, float x, float y, Paint paint) {
+            mText = text;
+            mColor = paint.getColor();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.xiongit.customview.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+
+import com.xiongit.customview.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 验证静态状态快照的键覆盖所有绘制输入，设置颜色过滤器后不使用快照
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DownloadSnapshotCacheTest {
+
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 100;
+
+    private DownloadSnapshotCache mCache;
+    private DownloadProgressDrawable mDrawable;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() throws Exception {
+        mCache = DownloadSnapshotCache.getInstance();
+        mCache.evictAll();
+        mDrawable = new DownloadProgressDrawable();
+        mDrawable.setBounds(0, 0, WIDTH, HEIGHT);
+        mDrawable.setDownloadState(DownloadButton.DownloadState.FINISHED);
+        mDrawable.setText(DownloadButton.TEXT_OPEN);
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void renderingInputsAreKeyed() throws Exception {
+        mDrawable.draw(mCanvas);
+        int size = mCache.size();
+        mDrawable.draw(mCanvas);
+        assertEquals(size, mCache.size());
+
+        mDrawable.setProgressColor(Color.RED);
+        mDrawable.draw(mCanvas);
+        assertEquals(2 * size, mCache.size());
+
+        mDrawable.setRadius(8);
+        mDrawable.draw(mCanvas);
+        assertEquals(3 * size, mCache.size());
+    }
+
+    @Test
+    public void colorFilterSkipsSnapshot() throws Exception {
+        mDrawable.setColorFilter(new PorterDuffColorFilter(Color.BLUE, PorterDuff.Mode.SRC_IN));
+        mDrawable.draw(mCanvas);
+        assertEquals(0, mCache.size());
+
+        mDrawable.setColorFilter(null);
+        mDrawable.draw(mCanvas);
+        assertEquals(WIDTH * HEIGHT * 4, mCache.size());
+    }
+}
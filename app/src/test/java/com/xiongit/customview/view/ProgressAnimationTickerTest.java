@@ -0,0 +1,114 @@
+package com.xiongit.customview.view;
+
+import android.graphics.Paint;
+import android.view.View;
+
+import com.xiongit.customview.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 验证共享的进度动画驱动器在所有按钮到达目标进度后不再预约帧，以及动画期间的硬件层切换
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ProgressAnimationTickerTest {
+
+    private static final int MAX_FRAMES = 1000;
+
+    @Test
+    public void tickerGoesIdleWhenAllButtonsReachTarget() throws Exception {
+        DownloadButton first = newAnimatedButton();
+        DownloadButton second = newAnimatedButton();
+
+        first.setProgress(80);
+        second.setProgress(30);
+        ProgressAnimationTicker ticker = ProgressAnimationTicker.getInstance();
+        // 每帧回调会预约下一帧，一批一批执行直到动画停止
+        for (int i = 0; i < MAX_FRAMES && ticker.isFrameScheduled(); i++) {
+            Robolectric.flushForegroundThreadScheduler();
+        }
+
+        assertEquals(0, ticker.getActiveCount());
+        assertFalse(ticker.isFrameScheduled());
+        assertEquals(80, first.getProgress());
+        assertEquals(30, second.getProgress());
+    }
+
+    @Test
+    public void unregisterKeepsOtherButtonsAnimating() throws Exception {
+        DownloadButton first = newAnimatedButton();
+        DownloadButton second = newAnimatedButton();
+        DownloadButton third = newAnimatedButton();
+        ProgressAnimationTicker ticker = ProgressAnimationTicker.getInstance();
+        ticker.register(first);
+        ticker.register(second);
+        ticker.register(third);
+        ticker.register(second);
+        assertEquals(3, ticker.getActiveCount());
+
+        ticker.unregister(first);
+        ticker.unregister(first);
+        assertEquals(2, ticker.getActiveCount());
+
+        second.setProgress(40);
+        third.setProgress(60);
+        for (int i = 0; i < MAX_FRAMES && ticker.isFrameScheduled(); i++) {
+            Robolectric.flushForegroundThreadScheduler();
+        }
+
+        assertEquals(0, ticker.getActiveCount());
+        assertEquals(0, first.getProgress());
+        assertEquals(40, second.getProgress());
+        assertEquals(60, third.getProgress());
+    }
+
+    @Test
+    public void hardwareLayerFollowsProgressAnimation() throws Exception {
+        final List<Integer> layerTypes = new ArrayList<Integer>();
+        DownloadButton button = prepare(new DownloadButton(RuntimeEnvironment.application) {
+            @Override
+            public void setLayerType(int layerType, Paint paint) {
+                layerTypes.add(layerType);
+                super.setLayerType(layerType, paint);
+            }
+        });
+        button.setHardwareLayerWhenAnimating(true);
+
+        button.setProgress(80);
+        ProgressAnimationTicker ticker = ProgressAnimationTicker.getInstance();
+        for (int i = 0; i < MAX_FRAMES && ticker.isFrameScheduled(); i++) {
+            Robolectric.flushForegroundThreadScheduler();
+        }
+
+        // 动画开始时换成硬件层，到达目标后恢复
+        assertEquals(Arrays.asList(View.LAYER_TYPE_HARDWARE, View.LAYER_TYPE_NONE), layerTypes);
+        assertEquals(View.LAYER_TYPE_NONE, button.getLayerType());
+        assertEquals(80, button.getProgress());
+    }
+
+    private static DownloadButton newAnimatedButton() {
+        return prepare(new DownloadButton(RuntimeEnvironment.application));
+    }
+
+    private static DownloadButton prepare(DownloadButton button) {
+        button.setProgressUpdateMode(DownloadButton.UPDATE_MODE_ANIMATED);
+        button.setDownloadState(DownloadButton.DownloadState.STARTED);
+        button.measure(View.MeasureSpec.makeMeasureSpec(240, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY));
+        button.layout(0, 0, 240, 100);
+        return button;
+    }
+}
@@ -0,0 +1,94 @@
+package com.xiongit.customview.view;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 多个下载线程并发更新分段进度时，总进度保持一致
+ */
+public class SegmentedProgressTest {
+
+    private static final int SEGMENTS = 8;
+    private static final int WRITERS_PER_SEGMENT = 4;
+    private static final int INCREMENTS = 20000;
+    private static final long SEGMENT_LENGTH = (long) WRITERS_PER_SEGMENT * INCREMENTS;
+
+    @Test
+    public void concurrentWritersKeepAggregateConsistent() throws Exception {
+        long[] lengths = new long[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            lengths[i] = SEGMENT_LENGTH;
+        }
+        final SegmentedProgress progress = new SegmentedProgress(lengths);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch writersDone = new CountDownLatch(SEGMENTS * WRITERS_PER_SEGMENT);
+        final AtomicReference<String> readerError = new AtomicReference<String>();
+
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            for (int w = 0; w < WRITERS_PER_SEGMENT; w++) {
+                final int target = segment;
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int i = 0; i < INCREMENTS; i++) {
+                                progress.addProgress(target, 1);
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            writersDone.countDown();
+                        }
+                    }
+                }).start();
+            }
+        }
+
+        // 读线程：总进度不能回退，也不能超过总长度
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long last = 0;
+                while (writersDone.getCount() > 0) {
+                    long current = progress.getProgress();
+                    if (current < last || current > progress.getLength()) {
+                        readerError.set("aggregate went from " + last + " to " + current);
+                        return;
+                    }
+                    last = current;
+                }
+            }
+        });
+        reader.start();
+        start.countDown();
+        writersDone.await();
+        reader.join();
+
+        assertNull(readerError.get());
+        assertEquals(progress.getLength(), progress.getProgress());
+        for (int i = 0; i < SEGMENTS; i++) {
+            assertEquals(SEGMENT_LENGTH, progress.getSegmentProgress(i));
+        }
+    }
+
+    @Test
+    public void setSegmentProgressNeverMovesBackwards() throws Exception {
+        SegmentedProgress progress = SegmentedProgress.split(100, 3);
+        assertEquals(34, progress.getSegmentLength(2));
+
+        progress.setSegmentProgress(0, 20);
+        progress.setSegmentProgress(0, 10);
+        assertEquals(20, progress.getSegmentProgress(0));
+
+        progress.addProgress(1, 1000);
+        assertEquals(33, progress.getSegmentProgress(1));
+        assertTrue(progress.getProgress() <= progress.getLength());
+    }
+}
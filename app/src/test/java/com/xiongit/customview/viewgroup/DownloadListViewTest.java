@@ -0,0 +1,136 @@
+package com.xiongit.customview.viewgroup;
+
+import android.view.View;
+
+import com.xiongit.customview.BuildConfig;
+import com.xiongit.customview.view.DownloadButton;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 验证只绑定可见行、滚动时复用按钮，以及更新只转发给屏幕上的行
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DownloadListViewTest {
+
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 500;
+    private static final int ROW_HEIGHT = 100;
+
+    private DownloadListView mListView;
+
+    @Before
+    public void setUp() throws Exception {
+        mListView = new DownloadListView(RuntimeEnvironment.application);
+        mListView.setRowHeight(ROW_HEIGHT);
+        mListView.setItemCount(10000);
+        layout();
+    }
+
+    private void layout() {
+        mListView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        mListView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void onlyVisibleRowsAreBound() throws Exception {
+        assertEquals(5, mListView.getChildCount());
+        assertEquals(0, mListView.getFirstVisiblePosition());
+        assertEquals(4, mListView.getLastVisiblePosition());
+        assertEquals(5, mListView.getCreatedRowCount());
+        assertEquals(ROW_HEIGHT * 4, mListView.getChildAt(4).getTop());
+    }
+
+    @Test
+    public void updatesAreRoutedOnlyToVisibleRows() throws Exception {
+        mListView.setItem(2, DownloadButton.DownloadState.STARTED, 30);
+        mListView.setProgress(2, 40);
+        mListView.setItem(5000, DownloadButton.DownloadState.FINISHED, 100);
+
+        assertEquals(2, mListView.getRoutedUpdateCount());
+        assertEquals(1, mListView.getStoredUpdateCount());
+        DownloadButton row = mListView.getRowAt(2);
+        assertEquals(DownloadButton.DownloadState.STARTED, row.getDownloadState());
+        assertEquals(40, row.getProgress());
+        assertNull(mListView.getRowAt(5000));
+        assertEquals(DownloadButton.DownloadState.FINISHED, mListView.getState(5000));
+    }
+
+    @Test
+    public void scrollingRebindsRecycledButtons() throws Exception {
+        mListView.setItem(0, DownloadButton.DownloadState.FINISHED, 100);
+        mListView.setItem(5001, DownloadButton.DownloadState.STARTED, 70);
+
+        // 跳到很远的位置，旧的行全部回收后复用
+        mListView.scrollToPosition(5000);
+        assertEquals(5000, mListView.getFirstVisiblePosition());
+        assertEquals(5, mListView.getChildCount());
+        assertEquals(5, mListView.getCreatedRowCount());
+        DownloadButton row = mListView.getRowAt(5001);
+        assertNotNull(row);
+        assertEquals(DownloadButton.DownloadState.STARTED, row.getDownloadState());
+        assertEquals(70, row.getProgress());
+
+        // 滚动半行，多出现一行，只需要新建这一行
+        mListView.scrollBy(0, ROW_HEIGHT / 2);
+        assertEquals(6, mListView.getChildCount());
+        assertEquals(6, mListView.getCreatedRowCount());
+
+        // 回到顶部，之前已完成的按钮状态被恢复，不会沿用复用前的状态
+        mListView.scrollToPosition(0);
+        assertEquals(DownloadButton.DownloadState.FINISHED, mListView.getRowAt(0).getDownloadState());
+        assertEquals(DownloadButton.DownloadState.STOPPED, mListView.getRowAt(1).getDownloadState());
+        assertEquals(6, mListView.getCreatedRowCount());
+    }
+
+    @Test
+    public void newAndRecycledRowsShowTheSameState() throws Exception {
+        mListView.setItem(5000, DownloadButton.DownloadState.STOPPED, 30);
+        mListView.setItem(5001, DownloadButton.DownloadState.STOPPED, 30);
+        // 0号行先显示等待中，之后被复用给5001号
+        mListView.setItem(0, DownloadButton.DownloadState.WAITING, 0);
+        mListView.setItem(1, DownloadButton.DownloadState.FINISHED, 100);
+
+        mListView.scrollToPosition(5000);
+        mListView.scrollBy(0, ROW_HEIGHT / 2);
+        // 多出来的一行是新建的
+        assertEquals(6, mListView.getCreatedRowCount());
+        DownloadButton recycled = mListView.getRowAt(5001);
+        DownloadButton created = mListView.getRowAt(5005);
+        mListView.setItem(5005, DownloadButton.DownloadState.STOPPED, 30);
+
+        assertEquals("暂停中", recycled.getButtonText());
+        assertEquals(recycled.getButtonText(), created.getButtonText());
+        assertEquals(recycled.getButtonText(), mListView.getRowAt(5000).getButtonText());
+    }
+
+    @Test
+    public void scrollIsClampedToContent() throws Exception {
+        mListView.scrollTo(0, Integer.MAX_VALUE);
+        assertEquals(10000 * ROW_HEIGHT - HEIGHT, mListView.getScrollY());
+        assertEquals(9999, mListView.getLastVisiblePosition());
+    }
+
+    @Test
+    public void shrinkingRecyclesRemovedRows() throws Exception {
+        mListView.setItem(3, DownloadButton.DownloadState.ERROR, 0);
+        mListView.setItemCount(3);
+        assertEquals(3, mListView.getChildCount());
+
+        mListView.setItemCount(10);
+        layout();
+        assertEquals(5, mListView.getChildCount());
+        assertEquals(DownloadButton.DownloadState.STOPPED, mListView.getRowAt(3).getDownloadState());
+    }
+}
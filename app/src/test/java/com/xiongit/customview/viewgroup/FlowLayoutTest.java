@@ -0,0 +1,124 @@
+package com.xiongit.customview.viewgroup;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.xiongit.customview.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 验证换行、间距和margin的摆放位置，以及测量缓存的命中与失效
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class FlowLayoutTest {
+
+    private static final int WIDTH_SPEC = View.MeasureSpec.makeMeasureSpec(100, View.MeasureSpec.EXACTLY);
+    private static final int HEIGHT_SPEC = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+
+    private FlowLayout mLayout;
+
+    @Before
+    public void setUp() throws Exception {
+        mLayout = new FlowLayout(RuntimeEnvironment.application);
+        mLayout.setHorizontalSpacing(5);
+        mLayout.setVerticalSpacing(10);
+    }
+
+    private View addChild(int width, int height) {
+        View child = new View(RuntimeEnvironment.application);
+        mLayout.addView(child, new ViewGroup.LayoutParams(width, height));
+        return child;
+    }
+
+    private void measureAndLayout() {
+        mLayout.measure(WIDTH_SPEC, HEIGHT_SPEC);
+        mLayout.layout(0, 0, mLayout.getMeasuredWidth(), mLayout.getMeasuredHeight());
+    }
+
+    @Test
+    public void wrapsWhenLineIsFull() throws Exception {
+        View first = addChild(40, 20);
+        View second = addChild(40, 30);
+        View third = addChild(40, 20);
+        measureAndLayout();
+
+        assertEquals(2, mLayout.getLineCount());
+        assertEquals(100, mLayout.getMeasuredWidth());
+        assertEquals(30 + 10 + 20, mLayout.getMeasuredHeight());
+        assertEquals(0, first.getLeft());
+        assertEquals(45, second.getLeft());
+        assertEquals(0, third.getLeft());
+        assertEquals(40, third.getTop());
+    }
+
+    @Test
+    public void goneChildrenTakeNoSpace() throws Exception {
+        addChild(40, 20);
+        addChild(40, 20).setVisibility(View.GONE);
+        View third = addChild(40, 20);
+        measureAndLayout();
+
+        assertEquals(1, mLayout.getLineCount());
+        assertEquals(45, third.getLeft());
+    }
+
+    @Test
+    public void marginsAreApplied() throws Exception {
+        View child = new View(RuntimeEnvironment.application);
+        ViewGroup.MarginLayoutParams lp = new ViewGroup.MarginLayoutParams(30, 20);
+        lp.setMargins(3, 4, 5, 6);
+        mLayout.addView(child, lp);
+        View second = addChild(30, 20);
+        mLayout.setPadding(2, 2, 2, 2);
+        measureAndLayout();
+
+        assertEquals(2 + 3, child.getLeft());
+        assertEquals(2 + 4, child.getTop());
+        assertEquals(2 + 3 + 30 + 5 + 5, second.getLeft());
+        assertEquals(2 + 4 + 20 + 6 + 2, mLayout.getMeasuredHeight());
+    }
+
+    @Test
+    public void unchangedChildrenAreNotMeasuredAgain() throws Exception {
+        addChild(40, 20);
+        View second = addChild(40, 20);
+        addChild(40, 20);
+        measureAndLayout();
+        assertEquals(3, mLayout.getChildMeasureCount());
+
+        mLayout.forceLayout();
+        measureAndLayout();
+        assertEquals(3, mLayout.getChildMeasureCount());
+        assertEquals(3, mLayout.getChildMeasureSkipCount());
+
+        // 子控件内容变化会请求重新布局，只重新测量这一个
+        second.requestLayout();
+        measureAndLayout();
+        assertEquals(4, mLayout.getChildMeasureCount());
+
+        // 父布局变宽，固定尺寸子控件的规格不变，只重新分行
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(200, View.MeasureSpec.AT_MOST), HEIGHT_SPEC);
+        assertEquals(4, mLayout.getChildMeasureCount());
+        assertEquals(1, mLayout.getLineCount());
+    }
+
+    @Test
+    public void matchParentChildIsMeasuredAgainWhenWidthChanges() throws Exception {
+        addChild(ViewGroup.LayoutParams.MATCH_PARENT, 20);
+        measureAndLayout();
+        assertEquals(1, mLayout.getChildMeasureCount());
+
+        mLayout.measure(View.MeasureSpec.makeMeasureSpec(200, View.MeasureSpec.EXACTLY), HEIGHT_SPEC);
+        assertEquals(2, mLayout.getChildMeasureCount());
+        assertEquals(200, mLayout.getChildAt(0).getMeasuredWidth());
+    }
+}
@@ -0,0 +1,258 @@
+package com.xiongit.customview.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 基准测试的计时和统计
+ * JMH的fork模式无法加载Robolectric的沙箱类加载器，这里在测试方法内按JMH的方式预热、分轮测量，
+ * 统计每次操作的平均耗时(ns/op)和分配字节数(B/op)，结果按JMH的-rf json格式写出，便于用同样的工具对比
+ */
+final class Benchmarks {
+
+    /**
+     * 被测的一次操作
+     */
+    interface Operation {
+        void run(int index) throws Exception;
+    }
+
+    static final int WARMUP_ITERATIONS = 5;
+    static final int MEASUREMENT_ITERATIONS = 10;
+
+    private final String mClassName;
+    private final List<Result> mResults = new ArrayList<Result>();
+
+    Benchmarks(Class<?> benchmarkClass) {
+        mClassName = benchmarkClass.getName();
+    }
+
+    /**
+     * 单线程测量
+     *
+     * @param name             结果中的方法名
+     * @param opsPerIteration  每轮执行的操作次数
+     * @param operation
+     * @return
+     */
+    Result measure(String name, int opsPerIteration, Operation operation) throws Exception {
+        int index = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            for (int j = 0; j < opsPerIteration; j++) {
+                operation.run(index++);
+            }
+        }
+        long threadId = Thread.currentThread().getId();
+        double[] nanosPerOp = new double[MEASUREMENT_ITERATIONS];
+        long totalBytes = 0;
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long bytesBefore = allocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int j = 0; j < opsPerIteration; j++) {
+                operation.run(index++);
+            }
+            long elapsed = System.nanoTime() - start;
+            totalBytes += allocatedBytes(threadId) - bytesBefore;
+            nanosPerOp[i] = (double) elapsed / opsPerIteration;
+        }
+        return record(name, 1, nanosPerOp, (double) totalBytes / (MEASUREMENT_ITERATIONS * (long) opsPerIteration));
+    }
+
+    /**
+     * 多线程同时执行同一操作，耗时按所有线程的总操作数平均，分配字节数为所有线程之和
+     *
+     * @param name
+     * @param threads
+     * @param opsPerThread 每轮每个线程执行的操作次数
+     * @param operation
+     * @return
+     */
+    Result measureConcurrent(String name, int threads, final int opsPerThread, final Operation operation)
+            throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runThreads(threads, opsPerThread, operation, null);
+        }
+        double[] nanosPerOp = new double[MEASUREMENT_ITERATIONS];
+        long totalBytes = 0;
+        long[] bytes = new long[threads];
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long elapsed = runThreads(threads, opsPerThread, operation, bytes);
+            for (long b : bytes) {
+                totalBytes += b;
+            }
+            nanosPerOp[i] = (double) elapsed / (threads * (long) opsPerThread);
+        }
+        return record(name, threads, nanosPerOp,
+                (double) totalBytes / (MEASUREMENT_ITERATIONS * (long) threads * opsPerThread));
+    }
+
+    private static long runThreads(int threads, final int opsPerThread, final Operation operation,
+                                   final long[] bytes) throws Exception {
+        final Thread[] workers = new Thread[threads];
+        final Throwable[] errors = new Throwable[1];
+        for (int t = 0; t < threads; t++) {
+            final int slot = t;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long threadId = Thread.currentThread().getId();
+                    long before = allocatedBytes(threadId);
+                    try {
+                        for (int j = 0; j < opsPerThread; j++) {
+                            operation.run(slot * opsPerThread + j);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors[0] = e;
+                        }
+                    }
+                    if (bytes != null) {
+                        bytes[slot] = allocatedBytes(threadId) - before;
+                    }
+                }
+            }, "benchmark-" + t);
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (errors[0] != null) {
+            throw new IllegalStateException("benchmark thread failed", errors[0]);
+        }
+        return elapsed;
+    }
+
+    /**
+     * 记录一个不需要计时的确定值，例如视图层级深度
+     *
+     * @param name
+     * @param value
+     * @param unit  单位
+     * @return
+     */
+    Result recordValue(String name, double value, String unit) {
+        Result result = new Result(mClassName + "." + name, 1, new double[]{value}, unit, Double.NaN);
+        mResults.add(result);
+        System.out.println(String.format(Locale.US, "%-70s %12.1f %s", result.mName, result.mScore, unit));
+        return result;
+    }
+
+    private Result record(String name, int threads, double[] nanosPerOp, double bytesPerOp) {
+        Result result = new Result(mClassName + "." + name, threads, nanosPerOp, "ns/op", bytesPerOp);
+        mResults.add(result);
+        System.out.println(String.format(Locale.US, "%-70s %12.1f ns/op %10.1f B/op",
+                result.mName, result.mScore, result.mBytesPerOp));
+        return result;
+    }
+
+    /**
+     * 写出JMH格式的json结果，输出目录由系统属性benchmark.outputDir指定，未指定时只打印不写文件
+     */
+    void writeResults() throws IOException {
+        String dir = System.getProperty("benchmark.outputDir");
+        if (dir == null) {
+            return;
+        }
+        File outputDir = new File(dir);
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("cannot create " + outputDir);
+        }
+        String simpleName = mClassName.substring(mClassName.lastIndexOf('.') + 1);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(outputDir, simpleName + ".json")), "UTF-8");
+        try {
+            writer.write("[\n");
+            for (int i = 0; i < mResults.size(); i++) {
+                mResults.get(i).writeJson(writer);
+                writer.write(i < mResults.size() - 1 ? ",\n" : "\n");
+            }
+            writer.write("]\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static long allocatedBytes(long threadId) {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(threadId);
+    }
+
+    static final class Result {
+
+        final String mName;
+        final int mThreads;
+        final double[] mRawNanosPerOp;
+        final String mUnit;
+        final double mScore;// 平均耗时:ns/op
+        final double mError;// 99.9%置信区间的半宽，按正态分布近似
+        final double mBytesPerOp;// NaN表示没有统计分配
+
+        Result(String name, int threads, double[] rawNanosPerOp, String unit, double bytesPerOp) {
+            mName = name;
+            mThreads = threads;
+            mRawNanosPerOp = rawNanosPerOp;
+            mUnit = unit;
+            mBytesPerOp = bytesPerOp;
+            double sum = 0;
+            for (double value : rawNanosPerOp) {
+                sum += value;
+            }
+            mScore = sum / rawNanosPerOp.length;
+            double variance = 0;
+            for (double value : rawNanosPerOp) {
+                variance += (value - mScore) * (value - mScore);
+            }
+            variance /= Math.max(1, rawNanosPerOp.length - 1);
+            mError = 3.29 * Math.sqrt(variance / rawNanosPerOp.length);
+        }
+
+        void writeJson(Writer writer) throws IOException {
+            StringBuilder raw = new StringBuilder();
+            for (int i = 0; i < mRawNanosPerOp.length; i++) {
+                if (i > 0) {
+                    raw.append(", ");
+                }
+                raw.append(format(mRawNanosPerOp[i]));
+            }
+            writer.write("  {\n"
+                    + "    \"benchmark\": \"" + mName + "\",\n"
+                    + "    \"mode\": \"avgt\",\n"
+                    + "    \"threads\": " + mThreads + ",\n"
+                    + "    \"forks\": 0,\n"
+                    + "    \"warmupIterations\": " + WARMUP_ITERATIONS + ",\n"
+                    + "    \"measurementIterations\": " + MEASUREMENT_ITERATIONS + ",\n"
+                    + "    \"primaryMetric\": {\n"
+                    + "      \"score\": " + format(mScore) + ",\n"
+                    + "      \"scoreError\": " + format(mError) + ",\n"
+                    + "      \"scoreUnit\": \"" + mUnit + "\",\n"
+                    + "      \"rawData\": [[" + raw + "]]\n"
+                    + "    },\n");
+            if (Double.isNaN(mBytesPerOp)) {
+                writer.write("    \"secondaryMetrics\": {}\n  }");
+                return;
+            }
+            writer.write("    \"secondaryMetrics\": {\n"
+                    + "      \"·gc.alloc.rate.norm\": {\n"
+                    + "        \"score\": " + format(mBytesPerOp) + ",\n"
+                    + "        \"scoreError\": \"NaN\",\n"
+                    + "        \"scoreUnit\": \"B/op\"\n"
+                    + "      }\n"
+                    + "    }\n"
+                    + "  }");
+        }
+
+        private static String format(double value) {
+            return String.format(Locale.US, "%.3f", value);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.xiongit.customview.benchmark;
+
+import android.view.View;
+
+import com.xiongit.customview.BuildConfig;
+import com.xiongit.customview.view.DownloadButton;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * DownloadButton在各个状态下的measure、layout、draw，以及多线程高频setProgress
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DownloadButtonBenchmark {
+
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 100;
+    private static final int OPS = 2000;
+    private static final int THREADS = 4;
+    private static final int OPS_PER_THREAD = 20000;
+
+    private static Benchmarks sBenchmarks;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        sBenchmarks = new Benchmarks(DownloadButtonBenchmark.class);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        sBenchmarks.writeResults();
+    }
+
+    @Test
+    public void measureLayoutDrawInEveryState() throws Exception {
+        final int widthSpec = View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY);
+        final int heightSpec = View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY);
+        final NoOpCanvas canvas = new NoOpCanvas(WIDTH, HEIGHT);
+
+        for (DownloadButton.DownloadState state : DownloadButton.DownloadState.values()) {
+            final DownloadButton button = newButton(state);
+            button.measure(widthSpec, heightSpec);
+            button.layout(0, 0, WIDTH, HEIGHT);
+
+            sBenchmarks.measure("measure_" + state, OPS, new Benchmarks.Operation() {
+                @Override
+                public void run(int index) {
+                    button.forceLayout();
+                    button.measure(widthSpec, heightSpec);
+                }
+            });
+            sBenchmarks.measure("layout_" + state, OPS, new Benchmarks.Operation() {
+                @Override
+                public void run(int index) {
+                    button.forceLayout();
+                    button.measure(widthSpec, heightSpec);
+                    button.layout(0, 0, WIDTH, HEIGHT);
+                }
+            });
+            sBenchmarks.measure("draw_" + state, OPS, new Benchmarks.Operation() {
+                @Override
+                public void run(int index) {
+                    // 下载中每次绘制前进度都变化，其他状态只重绘
+                    if (button.getDownloadState() == DownloadButton.DownloadState.STARTED) {
+                        button.setProgress(index % 101);
+                    }
+                    button.draw(canvas);
+                }
+            });
+        }
+    }
+
+    /**
+     * 列表复用时的wrap_content测量：每次绑定新数据后requestLayout再测量
+     */
+    @Test
+    public void wrapContentMeasure() throws Exception {
+        final int widthSpec = View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.AT_MOST);
+        final int heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        int[] modes = {DownloadButton.MEASURE_MODE_TEXT_VIEW, DownloadButton.MEASURE_MODE_LABELS};
+        String[] names = {"rebindMeasure_textview", "rebindMeasure_labels"};
+        for (int i = 0; i < modes.length; i++) {
+            final DownloadButton button = newButton(DownloadButton.DownloadState.STARTED);
+            button.setMeasureMode(modes[i]);
+            sBenchmarks.measure(names[i], OPS, new Benchmarks.Operation() {
+                @Override
+                public void run(int index) {
+                    button.setProgress(index % 101);
+                    button.requestLayout();
+                    button.measure(widthSpec, heightSpec);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void concurrentSetProgress() throws Exception {
+        int[] modes = {DownloadButton.UPDATE_MODE_IMMEDIATE, DownloadButton.UPDATE_MODE_FRAME};
+        String[] names = {"setProgress_immediate", "setProgress_frame"};
+        for (int i = 0; i < modes.length; i++) {
+            final DownloadButton button = newButton(DownloadButton.DownloadState.STARTED);
+            button.setProgressUpdateMode(modes[i]);
+            button.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+            button.layout(0, 0, WIDTH, HEIGHT);
+            sBenchmarks.measureConcurrent(names[i], THREADS, OPS_PER_THREAD, new Benchmarks.Operation() {
+                @Override
+                public void run(int index) {
+                    button.setProgress(index % 101);
+                }
+            });
+        }
+    }
+
+    private static DownloadButton newButton(DownloadButton.DownloadState state) {
+        DownloadButton button = new DownloadButton(RuntimeEnvironment.application);
+        button.setButtonText("下载");
+        if (state == DownloadButton.DownloadState.STOPPED || state == DownloadButton.DownloadState.FINISHED) {
+            // 从下载中切换过去，保证外观按对应状态设置
+            button.setDownloadState(DownloadButton.DownloadState.STARTED);
+        }
+        button.setDownloadState(state);
+        if (state == DownloadButton.DownloadState.STARTED || state == DownloadButton.DownloadState.STOPPED) {
+            button.setProgress(50);
+        }
+        return button;
+    }
+}
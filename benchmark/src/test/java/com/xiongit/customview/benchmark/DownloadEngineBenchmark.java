@@ -0,0 +1,95 @@
+package com.xiongit.customview.benchmark;
+
+import com.xiongit.customview.download.DownloadEngine;
+import com.xiongit.customview.download.DownloadListener;
+import com.xiongit.customview.download.DownloadTask;
+import com.xiongit.customview.view.DownloadButton;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下载引擎吞吐量：在进程内HTTP服务器上分别用不同的分段数和缓冲区大小下载同一个文件，记录最好一轮的MB/s
+ * 不依赖Android，直接在JVM上运行
+ */
+public class DownloadEngineBenchmark {
+
+    private static final int LENGTH = 64 * 1024 * 1024;
+    private static final int[] SEGMENT_COUNTS = {1, 2, 4, 8};
+    private static final int[] BUFFER_SIZES = {4 * 1024, 16 * 1024, 64 * 1024};
+    private static final int ROUNDS = 3;
+
+    private static Benchmarks sBenchmarks;
+    private static LocalHttpServer sServer;
+    private static DownloadEngine sEngine;
+    private static File sFile;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        sBenchmarks = new Benchmarks(DownloadEngineBenchmark.class);
+        byte[] content = new byte[LENGTH];
+        new Random(42).nextBytes(content);
+        sServer = new LocalHttpServer(content);
+        sEngine = new DownloadEngine(8);
+        sFile = File.createTempFile("download-benchmark", ".bin");
+        // 预热
+        download(4, 16 * 1024);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        sEngine.shutdown();
+        sServer.stop();
+        sFile.delete();
+        sBenchmarks.writeResults();
+    }
+
+    @Test
+    public void throughput() throws Exception {
+        for (int segments : SEGMENT_COUNTS) {
+            for (int bufferSize : BUFFER_SIZES) {
+                long best = Long.MAX_VALUE;
+                for (int i = 0; i < ROUNDS; i++) {
+                    best = Math.min(best, download(segments, bufferSize));
+                }
+                double mbPerSecond = LENGTH / (1024.0 * 1024.0) / (best / 1e9);
+                sBenchmarks.recordValue("download_segments" + segments + "_buffer" + bufferSize / 1024 + "k",
+                        mbPerSecond, "MB/s");
+            }
+        }
+    }
+
+    /**
+     * @return 耗时:ns
+     */
+    private static long download(int segments, int bufferSize) throws InterruptedException {
+        sFile.delete();
+        new File(sFile.getPath() + ".ckpt").delete();
+        DownloadTask task = sEngine.newTask(sServer.url(), sFile).setSegmentCount(segments).setBufferSize(bufferSize);
+        final CountDownLatch done = new CountDownLatch(1);
+        task.addListener(new DownloadListener() {
+            @Override
+            public void onPrepared(DownloadTask task) {
+            }
+
+            @Override
+            public void onStateChanged(DownloadTask task, DownloadButton.DownloadState state) {
+                if (state == DownloadButton.DownloadState.FINISHED || state == DownloadButton.DownloadState.ERROR) {
+                    done.countDown();
+                }
+            }
+        });
+        long start = System.nanoTime();
+        sEngine.start(task);
+        if (!done.await(5, TimeUnit.MINUTES) || task.getState() != DownloadButton.DownloadState.FINISHED) {
+            throw new IllegalStateException("download failed: " + task.getError());
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,169 @@
+package com.xiongit.customview.benchmark;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.xiongit.customview.BuildConfig;
+import com.xiongit.customview.download.DownloadEngine;
+import com.xiongit.customview.download.DownloadTask;
+import com.xiongit.customview.download.FileCheckpointStore;
+import com.xiongit.customview.download.MappedDownloadJournal;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+
+/**
+ * 保存一次断点（文件长度和3段已下载长度）的吞吐量：
+ * MappedDownloadJournal、FileCheckpointStore、SharedPreferences（apply和commit）、SQLite
+ * Robolectric中SharedPreferences和SQLite的实现与设备不同，只用于同一环境下的相对比较
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DownloadJournalBenchmark {
+
+    private static final int OPS = 2000;
+    private static final int THREADS = 3;// 与默认分段数相同，模拟各分段线程同时保存
+    private static final long LENGTH = 64L * 1024 * 1024;
+
+    private static Benchmarks sBenchmarks;
+
+    private File mDir;
+    private DownloadTask mTask;
+    private final long[] mSegments = new long[DownloadTask.DEFAULT_SEGMENT_COUNT];
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        sBenchmarks = new Benchmarks(DownloadJournalBenchmark.class);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        sBenchmarks.writeResults();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = new File(RuntimeEnvironment.application.getCacheDir(), "journal-benchmark");
+        mDir.mkdirs();
+        mTask = new DownloadEngine(1).newTask("http://localhost/app.apk", new File(mDir, "app.apk"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private void advance(int index) {
+        for (int i = 0; i < mSegments.length; i++) {
+            mSegments[i] = (long) index * 4096 + i;
+        }
+    }
+
+    @Test
+    public void mappedJournal() throws Exception {
+        final MappedDownloadJournal journal = new MappedDownloadJournal(new File(mDir, "downloads.journal"));
+        try {
+            sBenchmarks.measure("checkpoint_mappedJournal", OPS, new Benchmarks.Operation() {
+                @Override
+                public void run(int index) throws Exception {
+                    advance(index);
+                    journal.save(mTask, LENGTH, mSegments);
+                }
+            });
+            sBenchmarks.measureConcurrent("checkpoint_mappedJournal_concurrent", THREADS, OPS,
+                    new Benchmarks.Operation() {
+                        private final long[] mConcurrentSegments = new long[]{1, 2, 3};
+
+                        @Override
+                        public void run(int index) throws Exception {
+                            journal.save(mTask, LENGTH, mConcurrentSegments);
+                        }
+                    });
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void checkpointFile() throws Exception {
+        final FileCheckpointStore store = new FileCheckpointStore();
+        sBenchmarks.measure("checkpoint_file", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) throws Exception {
+                advance(index);
+                store.save(mTask, LENGTH, mSegments);
+            }
+        });
+    }
+
+    @Test
+    public void sharedPreferences() throws Exception {
+        final SharedPreferences preferences = RuntimeEnvironment.application
+                .getSharedPreferences("download-checkpoints", Context.MODE_PRIVATE);
+        sBenchmarks.measure("checkpoint_sharedPreferences_apply", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                advance(index);
+                putCheckpoint(preferences).apply();
+            }
+        });
+        sBenchmarks.measure("checkpoint_sharedPreferences_commit", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                advance(index);
+                putCheckpoint(preferences).commit();
+            }
+        });
+    }
+
+    private SharedPreferences.Editor putCheckpoint(SharedPreferences preferences) {
+        String key = mTask.getFile().getPath();
+        SharedPreferences.Editor editor = preferences.edit().putLong(key + ".length", LENGTH);
+        for (int i = 0; i < mSegments.length; i++) {
+            editor.putLong(key + ".segment" + i, mSegments[i]);
+        }
+        return editor;
+    }
+
+    @Test
+    public void sqlite() throws Exception {
+        final SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(new File(mDir, "checkpoints.db"), null);
+        try {
+            db.execSQL("CREATE TABLE IF NOT EXISTS checkpoint (path TEXT PRIMARY KEY, length INTEGER,"
+                    + " segment0 INTEGER, segment1 INTEGER, segment2 INTEGER)");
+            final SQLiteStatement statement = db.compileStatement(
+                    "INSERT OR REPLACE INTO checkpoint VALUES (?, ?, ?, ?, ?)");
+            sBenchmarks.measure("checkpoint_sqlite", OPS, new Benchmarks.Operation() {
+                @Override
+                public void run(int index) {
+                    advance(index);
+                    statement.bindString(1, mTask.getFile().getPath());
+                    statement.bindLong(2, LENGTH);
+                    for (int i = 0; i < mSegments.length; i++) {
+                        statement.bindLong(3 + i, mSegments[i]);
+                    }
+                    statement.executeInsert();
+                }
+            });
+            statement.close();
+        } finally {
+            db.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.xiongit.customview.benchmark;
+
+import android.view.View;
+import android.widget.LinearLayout;
+
+import com.xiongit.customview.BuildConfig;
+import com.xiongit.customview.view.DownloadButton;
+import com.xiongit.customview.viewgroup.DownloadListView;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * DownloadListView在下载项从100增加到10万时的创建和每帧开销，并与每项一个DownloadButton的LinearLayout对比
+ * 每帧模拟：列表滚动一段距离，同时下载服务更新一批正在下载的项的进度
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DownloadListViewBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int ROW_HEIGHT = 150;
+    private static final int[] ITEM_COUNTS = {100, 1000, 10000, 100000};
+    private static final int[] EAGER_ITEM_COUNTS = {100, 1000};// 每项一个按钮时数量再大就跑不完了
+    private static final int ACTIVE_DOWNLOADS = 32;// 每帧更新进度的下载项数
+    private static final int SCROLL_PER_FRAME = 37;
+    private static final int FRAME_OPS = 500;
+
+    private static final int WIDTH_SPEC = View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY);
+    private static final int HEIGHT_SPEC = View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY);
+
+    private static Benchmarks sBenchmarks;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        sBenchmarks = new Benchmarks(DownloadListViewBenchmark.class);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        sBenchmarks.writeResults();
+    }
+
+    @Test
+    public void create() throws Exception {
+        for (final int count : ITEM_COUNTS) {
+            sBenchmarks.measure("create_list_" + count, 20, new Benchmarks.Operation() {
+                @Override
+                public void run(int index) {
+                    newListView(count);
+                }
+            });
+        }
+        for (final int count : EAGER_ITEM_COUNTS) {
+            sBenchmarks.measure("create_eager_" + count, Math.max(1, 2000 / count), new Benchmarks.Operation() {
+                @Override
+                public void run(int index) {
+                    newEagerList(count);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void frame() throws Exception {
+        for (final int count : ITEM_COUNTS) {
+            final DownloadListView listView = newListView(count);
+            final int[] active = activePositions(count);
+            sBenchmarks.measure("frame_list_" + count, FRAME_OPS, new Benchmarks.Operation() {
+                @Override
+                public void run(int index) {
+                    if (listView.getLastVisiblePosition() == count - 1) {
+                        listView.scrollTo(0, 0);
+                    } else {
+                        listView.scrollBy(0, SCROLL_PER_FRAME);
+                    }
+                    for (int position : active) {
+                        listView.setProgress(position, index % 101);
+                    }
+                }
+            });
+            sBenchmarks.recordValue("rowViews_" + count,
+                    listView.getChildCount() + listView.getScrapRowCount(), "views");
+        }
+        for (final int count : EAGER_ITEM_COUNTS) {
+            final LinearLayout list = newEagerList(count);
+            final int[] active = activePositions(count);
+            final int maxScroll = count * ROW_HEIGHT - HEIGHT;
+            sBenchmarks.measure("frame_eager_" + count, FRAME_OPS, new Benchmarks.Operation() {
+                @Override
+                public void run(int index) {
+                    list.scrollTo(0, (list.getScrollY() + SCROLL_PER_FRAME) % maxScroll);
+                    for (int position : active) {
+                        ((DownloadButton) list.getChildAt(position)).setProgress(index % 101);
+                    }
+                }
+            });
+            sBenchmarks.recordValue("rowViews_eager_" + count, list.getChildCount(), "views");
+        }
+    }
+
+    /**
+     * 正在下载的项均匀分布在整个列表中，大部分不在屏幕上
+     */
+    private static int[] activePositions(int count) {
+        int[] positions = new int[Math.min(ACTIVE_DOWNLOADS, count)];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = (int) ((long) i * count / positions.length);
+        }
+        return positions;
+    }
+
+    private static DownloadListView newListView(int count) {
+        DownloadListView listView = new DownloadListView(RuntimeEnvironment.application);
+        listView.setRowHeight(ROW_HEIGHT);
+        listView.setItemCount(count);
+        for (int position : activePositions(count)) {
+            listView.setItem(position, DownloadButton.DownloadState.STARTED, 0);
+        }
+        listView.measure(WIDTH_SPEC, HEIGHT_SPEC);
+        listView.layout(0, 0, WIDTH, HEIGHT);
+        return listView;
+    }
+
+    private static LinearLayout newEagerList(int count) {
+        LinearLayout list = new LinearLayout(RuntimeEnvironment.application);
+        list.setOrientation(LinearLayout.VERTICAL);
+        for (int i = 0; i < count; i++) {
+            DownloadButton button = new DownloadButton(RuntimeEnvironment.application);
+            list.addView(button, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, ROW_HEIGHT));
+        }
+        for (int position : activePositions(count)) {
+            ((DownloadButton) list.getChildAt(position)).setDownloadState(DownloadButton.DownloadState.STARTED);
+        }
+        list.measure(WIDTH_SPEC, View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        list.layout(0, 0, WIDTH, list.getMeasuredHeight());
+        return list;
+    }
+}
@@ -0,0 +1,106 @@
+package com.xiongit.customview.benchmark;
+
+import android.graphics.Canvas;
+import android.view.View;
+
+import com.xiongit.customview.BuildConfig;
+import com.xiongit.customview.view.DownloadButton;
+import com.xiongit.customview.view.DownloadProgressView;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.reflect.Method;
+
+/**
+ * 对比继承TextView的DownloadButton和基于Drawable的DownloadProgressView在下载中的measure、layout、draw
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class DownloadProgressBenchmark {
+
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 100;
+    private static final int OPS = 2000;
+
+    private static Benchmarks sBenchmarks;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        sBenchmarks = new Benchmarks(DownloadProgressBenchmark.class);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        sBenchmarks.writeResults();
+    }
+
+    @Test
+    public void compareMeasureLayoutDraw() throws Exception {
+        DownloadButton button = new DownloadButton(RuntimeEnvironment.application);
+        button.setButtonText("暂停中");
+        button.setDownloadState(DownloadButton.DownloadState.STARTED);
+        run("downloadButton", button, new ProgressSetter() {
+            @Override
+            public void set(View v, int progress) {
+                ((DownloadButton) v).setProgress(progress);
+            }
+        });
+
+        DownloadProgressView view = new DownloadProgressView(RuntimeEnvironment.application);
+        view.setText("暂停中");
+        view.setDownloadState(DownloadButton.DownloadState.STARTED);
+        run("downloadProgressView", view, new ProgressSetter() {
+            @Override
+            public void set(View v, int progress) {
+                ((DownloadProgressView) v).setProgress(progress);
+            }
+        });
+    }
+
+    private static void run(String name, final View view, final ProgressSetter setter) throws Exception {
+        final int widthSpec = View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY);
+        final int heightSpec = View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY);
+        view.measure(widthSpec, heightSpec);
+        view.layout(0, 0, WIDTH, HEIGHT);
+
+        sBenchmarks.measure(name + "_measure", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                setter.set(view, index % 100);
+                view.forceLayout();
+                view.measure(widthSpec, heightSpec);
+            }
+        });
+        sBenchmarks.measure(name + "_layout", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                setter.set(view, index % 100);
+                view.forceLayout();
+                view.measure(widthSpec, heightSpec);
+                view.layout(0, 0, WIDTH, HEIGHT);
+            }
+        });
+
+        // Robolectric的View.draw(Canvas)只画背景、不调用onDraw，这里通过反射直接调用onDraw，参数数组复用
+        final Method onDraw = View.class.getDeclaredMethod("onDraw", Canvas.class);
+        onDraw.setAccessible(true);
+        final Object[] args = {new NoOpCanvas(WIDTH, HEIGHT)};
+        sBenchmarks.measure(name + "_draw", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) throws Exception {
+                setter.set(view, index % 100);
+                onDraw.invoke(view, args);
+            }
+        });
+    }
+
+    private interface ProgressSetter {
+        void set(View view, int progress);
+    }
+}
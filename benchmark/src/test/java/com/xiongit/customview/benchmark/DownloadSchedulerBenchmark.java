@@ -0,0 +1,157 @@
+package com.xiongit.customview.benchmark;
+
+import com.xiongit.customview.download.DownloadEngine;
+import com.xiongit.customview.download.DownloadScheduler;
+import com.xiongit.customview.download.DownloadTask;
+import com.xiongit.customview.view.DownloadButton;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 调度器模拟：进程内HTTP服务器作为本地传输，在总带宽受限的情况下，
+ * 已有一个大文件和一批普通任务在下载或排队时，再加入一个高优先级任务，记录它的首字节时间和完成时间
+ * 场景：fifo普通优先级排队；visible按可见优先级排队；tapped用户点击抢占；unlimited不限同时下载数，点击的任务只分到平均带宽
+ * 每个场景跑几轮取最好的一次，不依赖Android，直接在JVM上运行
+ */
+public class DownloadSchedulerBenchmark {
+
+    private static final int LARGE_LENGTH = 16 * 1024 * 1024;
+    private static final int NORMAL_LENGTH = 2 * 1024 * 1024;
+    private static final int HOT_LENGTH = 1024 * 1024;
+    private static final int NORMAL_COUNT = 8;
+    private static final int MAX_CONCURRENT = 3;
+    private static final long BANDWIDTH = 8 * 1024 * 1024;
+    private static final long WARM_UP_MILLIS = 300;// 加入高优先级任务前先让负载跑起来
+    private static final int ROUNDS = 3;
+
+    private static Benchmarks sBenchmarks;
+    private static LocalHttpServer sLarge;
+    private static LocalHttpServer sNormal;
+    private static LocalHttpServer sHot;
+    private static File sDir;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        sBenchmarks = new Benchmarks(DownloadSchedulerBenchmark.class);
+        Random random = new Random(42);
+        sLarge = new LocalHttpServer(randomBytes(random, LARGE_LENGTH));
+        sNormal = new LocalHttpServer(randomBytes(random, NORMAL_LENGTH));
+        sHot = new LocalHttpServer(randomBytes(random, HOT_LENGTH));
+        sDir = File.createTempFile("scheduler-benchmark", "");
+        sDir.delete();
+        sDir.mkdirs();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        sLarge.stop();
+        sNormal.stop();
+        sHot.stop();
+        deleteFiles(sDir);
+        sDir.delete();
+        sBenchmarks.writeResults();
+    }
+
+    @Test
+    public void fifo() throws Exception {
+        record("fifo");
+    }
+
+    @Test
+    public void visible() throws Exception {
+        record("visible");
+    }
+
+    @Test
+    public void tapped() throws Exception {
+        record("tapped");
+    }
+
+    @Test
+    public void unlimited() throws Exception {
+        record("unlimited");
+    }
+
+    private static void record(String scenario) throws Exception {
+        long bestTtfb = Long.MAX_VALUE;
+        long bestComplete = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long[] result = run(scenario);
+            bestTtfb = Math.min(bestTtfb, result[0]);
+            bestComplete = Math.min(bestComplete, result[1]);
+        }
+        sBenchmarks.recordValue("ttfb_" + scenario, TimeUnit.NANOSECONDS.toMillis(bestTtfb), "ms");
+        sBenchmarks.recordValue("complete_" + scenario, TimeUnit.NANOSECONDS.toMillis(bestComplete), "ms");
+    }
+
+    /**
+     * @return {首字节时间, 完成时间}:ns，都从加入高优先级任务时算起
+     */
+    private static long[] run(String scenario) throws InterruptedException {
+        deleteFiles(sDir);
+        int maxConcurrent = "unlimited".equals(scenario) ? NORMAL_COUNT + 2 : MAX_CONCURRENT;
+        DownloadEngine engine = new DownloadEngine(maxConcurrent * DownloadTask.DEFAULT_SEGMENT_COUNT + 8);
+        DownloadScheduler scheduler = new DownloadScheduler(engine, maxConcurrent, BANDWIDTH);
+        try {
+            List<DownloadTask> load = new ArrayList<DownloadTask>();
+            load.add(engine.newTask(sLarge.url(), new File(sDir, "large.bin")).setSegmentCount(8));
+            for (int i = 0; i < NORMAL_COUNT; i++) {
+                load.add(engine.newTask(sNormal.url(), new File(sDir, "normal" + i + ".bin")));
+            }
+            for (DownloadTask task : load) {
+                scheduler.enqueue(task);
+            }
+            Thread.sleep(WARM_UP_MILLIS);
+
+            DownloadTask task = engine.newTask(sHot.url(), new File(sDir, "hot.bin"));
+            long start = System.nanoTime();
+            if ("fifo".equals(scenario)) {
+                scheduler.enqueue(task);
+            } else if ("visible".equals(scenario)) {
+                scheduler.enqueue(task);
+                scheduler.setVisible(task, true);
+            } else {
+                scheduler.promote(task);
+            }
+            long ttfb = -1;
+            long deadline = start + TimeUnit.MINUTES.toNanos(5);
+            while (task.getState() != DownloadButton.DownloadState.FINISHED) {
+                if (task.getState() == DownloadButton.DownloadState.ERROR || System.nanoTime() > deadline) {
+                    throw new IllegalStateException("download failed: " + task.getError());
+                }
+                if (ttfb < 0 && task.getProgress() != null && task.getProgress().getProgress() > 0) {
+                    ttfb = System.nanoTime() - start;
+                }
+                LockSupport.parkNanos(100000);
+            }
+            long complete = System.nanoTime() - start;
+            return new long[]{ttfb < 0 ? complete : ttfb, complete};
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] content = new byte[length];
+        random.nextBytes(content);
+        return content;
+    }
+
+    private static void deleteFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.xiongit.customview.benchmark;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import com.xiongit.customview.BuildConfig;
+import com.xiongit.customview.viewgroup.FlowLayout;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * FlowLayout与嵌套LinearLayout（竖向LinearLayout里放若干横向LinearLayout，每行固定个数）的measure+layout耗时，
+ * 子控件数量逐步增加，分两种情况：父布局整体重新布局、只有一个标签的文字变化
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class FlowLayoutBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int[] CHILD_COUNTS = {10, 50, 100, 500};
+    private static final int CHIPS_PER_ROW = 5;// 嵌套LinearLayout每行的标签数
+    private static final int TOTAL_CHILD_OPS = 20000;// 每轮测量的子控件总数，子控件越多操作次数越少
+
+    private static final int WIDTH_SPEC = View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY);
+    private static final int HEIGHT_SPEC = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+
+    private static Benchmarks sBenchmarks;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        sBenchmarks = new Benchmarks(FlowLayoutBenchmark.class);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        sBenchmarks.writeResults();
+    }
+
+    @Test
+    public void relayout() throws Exception {
+        for (int count : CHILD_COUNTS) {
+            measureRelayout("relayout_flow_" + count, newFlowLayout(count));
+            measureRelayout("relayout_nested_" + count, newNestedLinearLayout(count));
+        }
+    }
+
+    @Test
+    public void oneChipChanged() throws Exception {
+        for (int count : CHILD_COUNTS) {
+            FlowLayout flowLayout = newFlowLayout(count);
+            measureChipChanged("chipChanged_flow_" + count, flowLayout, (TextView) flowLayout.getChildAt(count / 2));
+            ViewGroup nested = newNestedLinearLayout(count);
+            ViewGroup row = (ViewGroup) nested.getChildAt(count / 2 / CHIPS_PER_ROW);
+            measureChipChanged("chipChanged_nested_" + count, nested,
+                    (TextView) row.getChildAt(count / 2 % CHIPS_PER_ROW));
+        }
+    }
+
+    private static void measureRelayout(String name, final ViewGroup root) throws Exception {
+        measureAndLayout(root);
+        sBenchmarks.measure(name, opsFor(root), new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                root.forceLayout();
+                measureAndLayout(root);
+            }
+        });
+    }
+
+    private static void measureChipChanged(String name, final ViewGroup root, final TextView chip) throws Exception {
+        measureAndLayout(root);
+        sBenchmarks.measure(name, opsFor(root), new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                chip.setText(index % 2 == 0 ? "分类已更新" : "分类");
+                measureAndLayout(root);
+            }
+        });
+    }
+
+    private static void measureAndLayout(ViewGroup root) {
+        root.measure(WIDTH_SPEC, HEIGHT_SPEC);
+        root.layout(0, 0, root.getMeasuredWidth(), root.getMeasuredHeight());
+    }
+
+    private static int opsFor(ViewGroup root) {
+        int children = root instanceof FlowLayout ? root.getChildCount() : root.getChildCount() * CHIPS_PER_ROW;
+        return Math.max(10, TOTAL_CHILD_OPS / children);
+    }
+
+    private static FlowLayout newFlowLayout(int count) {
+        FlowLayout layout = new FlowLayout(RuntimeEnvironment.application);
+        layout.setHorizontalSpacing(16);
+        layout.setVerticalSpacing(16);
+        for (int i = 0; i < count; i++) {
+            layout.addView(newChip(i));
+        }
+        return layout;
+    }
+
+    private static ViewGroup newNestedLinearLayout(int count) {
+        LinearLayout root = new LinearLayout(RuntimeEnvironment.application);
+        root.setOrientation(LinearLayout.VERTICAL);
+        LinearLayout row = null;
+        for (int i = 0; i < count; i++) {
+            if (i % CHIPS_PER_ROW == 0) {
+                row = new LinearLayout(RuntimeEnvironment.application);
+                row.setOrientation(LinearLayout.HORIZONTAL);
+                LinearLayout.LayoutParams rowParams = new LinearLayout.LayoutParams(
+                        ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+                rowParams.topMargin = i == 0 ? 0 : 16;
+                root.addView(row, rowParams);
+            }
+            LinearLayout.LayoutParams chipParams = new LinearLayout.LayoutParams(
+                    ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+            chipParams.leftMargin = i % CHIPS_PER_ROW == 0 ? 0 : 16;
+            row.addView(newChip(i), chipParams);
+        }
+        return root;
+    }
+
+    private static TextView newChip(int index) {
+        TextView chip = new TextView(RuntimeEnvironment.application);
+        chip.setText("分类" + index);
+        chip.setPadding(24, 12, 24, 12);
+        return chip;
+    }
+}
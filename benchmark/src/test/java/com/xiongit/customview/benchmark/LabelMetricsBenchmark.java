@@ -0,0 +1,99 @@
+package com.xiongit.customview.benchmark;
+
+import android.graphics.Paint;
+
+import com.xiongit.customview.BuildConfig;
+import com.xiongit.customview.view.DownloadButton;
+import com.xiongit.customview.view.DownloadProgressDrawable;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * 下载中每帧文字的开销：每帧直接测量文字，与DownloadProgressDrawable使用共享的文字测量缓存对比
+ * 以及字号变化时查找测量缓存的开销，分为命中和超出缓存上限后每次都重新测量两种情况
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class LabelMetricsBenchmark {
+
+    private static final int WIDTH = 240;
+    private static final int HEIGHT = 100;
+    private static final int OPS = 20000;
+    private static final int EVICTING_SIZES = 40;// 超过测量缓存的上限（32组）
+
+    private static final String[] PERCENT_TEXTS = new String[101];
+
+    static {
+        for (int i = 0; i < PERCENT_TEXTS.length; i++) {
+            PERCENT_TEXTS[i] = i + "%";
+        }
+    }
+
+    private static Benchmarks sBenchmarks;
+
+    private float mSink;// 防止结果被优化掉
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        sBenchmarks = new Benchmarks(LabelMetricsBenchmark.class);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        sBenchmarks.writeResults();
+    }
+
+    @Test
+    public void textCostPerFrame() throws Exception {
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(42);
+        // 使用缓存前drawProgressText每帧的做法
+        sBenchmarks.measure("percentText_measurePerFrame", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                String text = PERCENT_TEXTS[index % 101];
+                mSink += paint.measureText(text) - (paint.descent() / 2 + paint.ascent() / 2);
+            }
+        });
+
+        final DownloadProgressDrawable drawable = newDrawable();
+        final NoOpCanvas canvas = new NoOpCanvas(WIDTH, HEIGHT);
+        sBenchmarks.measure("percentText_cachedDraw", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                drawable.setProgress(index % 101);
+                drawable.draw(canvas);
+            }
+        });
+    }
+
+    @Test
+    public void metricsLookup() throws Exception {
+        final DownloadProgressDrawable drawable = newDrawable();
+        sBenchmarks.measure("setTextSize_cacheHit", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                drawable.setTextSize(index % 2 == 0 ? 42 : 36);
+            }
+        });
+        sBenchmarks.measure("setTextSize_evicting", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                drawable.setTextSize(20 + index % EVICTING_SIZES);
+            }
+        });
+    }
+
+    private static DownloadProgressDrawable newDrawable() {
+        DownloadProgressDrawable drawable = new DownloadProgressDrawable();
+        drawable.setBounds(0, 0, WIDTH, HEIGHT);
+        drawable.setTextSize(42);
+        drawable.setDownloadState(DownloadButton.DownloadState.STARTED);
+        return drawable;
+    }
+}
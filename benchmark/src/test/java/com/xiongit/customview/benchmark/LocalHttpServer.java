@@ -0,0 +1,81 @@
+package com.xiongit.customview.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 基准测试用的进程内HTTP服务器，提供一个固定内容的文件，支持HEAD和Range请求，作为下载的本地传输
+ */
+class LocalHttpServer {
+
+    private final byte[] mContent;
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    LocalHttpServer(byte[] content) throws IOException {
+        mContent = content;
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/file", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/file";
+    }
+
+    void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(mContent.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            long start = 0;
+            long end = mContent.length - 1;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null && range.startsWith("bytes=")) {
+                String[] parts = range.substring(6).split("-");
+                start = Long.parseLong(parts[0]);
+                if (parts.length > 1 && !parts[1].isEmpty()) {
+                    end = Math.min(end, Long.parseLong(parts[1]));
+                }
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + mContent.length);
+            }
+            long length = end - start + 1;
+            exchange.sendResponseHeaders(range != null ? 206 : 200, length);
+
+            OutputStream out = exchange.getResponseBody();
+            int offset = (int) start;
+            int remaining = (int) length;
+            while (remaining > 0) {
+                int n = Math.min(remaining, 8192);
+                out.write(mContent, offset, n);
+                offset += n;
+                remaining -= n;
+            }
+            out.flush();
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.xiongit.customview.benchmark;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.xiongit.customview.BuildConfig;
+import com.xiongit.customview.compositeview.PasswordEditText;
+import com.xiongit.customview.view.FlatPasswordEditText;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * PasswordEditText的创建（包含布局inflate）和小眼睛切换，并与扁平实现FlatPasswordEditText对比
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class PasswordEditTextBenchmark {
+
+    private static final int OPS = 500;
+
+    private static Benchmarks sBenchmarks;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        sBenchmarks = new Benchmarks(PasswordEditTextBenchmark.class);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        sBenchmarks.writeResults();
+    }
+
+    @Test
+    public void inflate() throws Exception {
+        sBenchmarks.measure("inflate", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                new PasswordEditText(RuntimeEnvironment.application);
+            }
+        });
+    }
+
+    @Test
+    public void toggleEye() throws Exception {
+        final PasswordEditText editText = new PasswordEditText(RuntimeEnvironment.application);
+        editText.setText("password123");
+        sBenchmarks.measure("toggleEye", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                editText.setEyeState(index % 2 == 0);
+            }
+        });
+    }
+
+    @Test
+    public void inflateFlat() throws Exception {
+        sBenchmarks.measure("inflate_flat", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                new FlatPasswordEditText(RuntimeEnvironment.application);
+            }
+        });
+    }
+
+    @Test
+    public void toggleEyeFlat() throws Exception {
+        final FlatPasswordEditText editText = new FlatPasswordEditText(RuntimeEnvironment.application);
+        editText.setText("password123");
+        sBenchmarks.measure("toggleEye_flat", OPS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                editText.setEyeState(index % 2 == 0);
+            }
+        });
+    }
+
+    @Test
+    public void hierarchy() throws Exception {
+        View composite = new PasswordEditText(RuntimeEnvironment.application);
+        View flat = new FlatPasswordEditText(RuntimeEnvironment.application);
+        sBenchmarks.recordValue("hierarchyDepth", depthOf(composite), "levels");
+        sBenchmarks.recordValue("hierarchyDepth_flat", depthOf(flat), "levels");
+        sBenchmarks.recordValue("viewCount", countOf(composite), "views");
+        sBenchmarks.recordValue("viewCount_flat", countOf(flat), "views");
+    }
+
+    private static int depthOf(View view) {
+        int depth = 0;
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                depth = Math.max(depth, depthOf(group.getChildAt(i)));
+            }
+        }
+        return depth + 1;
+    }
+
+    private static int countOf(View view) {
+        int count = 1;
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                count += countOf(group.getChildAt(i));
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,101 @@
+package com.xiongit.customview.benchmark;
+
+import com.xiongit.customview.compositeview.PasswordStrengthAnalyzer;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * 回放一段很长的随机编辑序列（任意位置插入或删除一个字符），对比增量分析和每次从头统计
+ * 不依赖Android，直接在JVM上运行
+ */
+public class PasswordStrengthBenchmark {
+
+    private static final int EDITS = 20000;
+    private static final int MAX_LENGTH = 64;
+    private static final String ALPHABET = "abcxyzABCXYZ0123789!@#";
+
+    private static Benchmarks sBenchmarks;
+    // 预先生成的编辑序列：位置，插入的字符，'\0'表示删除该位置的字符
+    private static final int[] sPositions = new int[EDITS];
+    private static final char[] sChars = new char[EDITS];
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        sBenchmarks = new Benchmarks(PasswordStrengthBenchmark.class);
+        Random random = new Random(7);
+        int length = 0;
+        for (int i = 0; i < EDITS; i++) {
+            boolean insert = length == 0 || (length < MAX_LENGTH && random.nextInt(3) != 0);
+            if (insert) {
+                sPositions[i] = random.nextInt(length + 1);
+                sChars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                length++;
+            } else {
+                sPositions[i] = random.nextInt(length);
+                sChars[i] = '\0';
+                length--;
+            }
+        }
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        sBenchmarks.writeResults();
+    }
+
+    @Test
+    public void incremental() throws Exception {
+        final PasswordStrengthAnalyzer analyzer = new PasswordStrengthAnalyzer();
+        final StringBuilder text = new StringBuilder(MAX_LENGTH * 2);
+        sBenchmarks.measure("replayEdits_incremental", EDITS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                int edit = index % EDITS;
+                if (edit == 0) {
+                    text.setLength(0);
+                    analyzer.reset();
+                }
+                int position = sPositions[edit];
+                char c = sChars[edit];
+                if (c != '\0') {
+                    analyzer.beforeTextChanged(text, position, 0, 1);
+                    text.insert(position, c);
+                    analyzer.onTextChanged(text, position, 0, 1);
+                } else {
+                    analyzer.beforeTextChanged(text, position, 1, 0);
+                    text.deleteCharAt(position);
+                    analyzer.onTextChanged(text, position, 1, 0);
+                }
+                analyzer.getLevel();
+            }
+        });
+    }
+
+    @Test
+    public void fullRescan() throws Exception {
+        final PasswordStrengthAnalyzer analyzer = new PasswordStrengthAnalyzer();
+        final StringBuilder text = new StringBuilder(MAX_LENGTH * 2);
+        sBenchmarks.measure("replayEdits_fullRescan", EDITS, new Benchmarks.Operation() {
+            @Override
+            public void run(int index) {
+                int edit = index % EDITS;
+                if (edit == 0) {
+                    text.setLength(0);
+                }
+                int position = sPositions[edit];
+                char c = sChars[edit];
+                if (c != '\0') {
+                    text.insert(position, c);
+                } else {
+                    text.deleteCharAt(position);
+                }
+                analyzer.analyze(text);
+                analyzer.getLevel();
+            }
+        });
+    }
+}